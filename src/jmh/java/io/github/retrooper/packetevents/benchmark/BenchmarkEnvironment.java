@@ -0,0 +1,114 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayInFlying;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutEntityMetadata;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutMapChunk;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.packettype.PacketTypeClasses;
+import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
+import io.github.retrooper.packetevents.utils.server.ServerVersion;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.logging.Logger;
+
+/**
+ * Minimal PacketEvents environment for the benchmarks.
+ * There is no server running, so instead of loading PacketEvents we only set up
+ * what the packet pipeline needs and register the stub NMS packets.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public final class BenchmarkEnvironment {
+    private static boolean setUp;
+
+    private BenchmarkEnvironment() {
+    }
+
+    public static synchronized void setUp() {
+        if (setUp) {
+            return;
+        }
+        //The server version resolves the craftbukkit package from the server class.
+        Bukkit.setServer(createStub(Server.class));
+        try {
+            Field versionField = ServerVersion.class.getDeclaredField("cachedVersion");
+            versionField.setAccessible(true);
+            versionField.set(null, ServerVersion.v_1_8_8);
+            WrappedPacket.version = ServerVersion.v_1_8_8;
+
+            Field instanceField = PacketEvents.class.getDeclaredField("instance");
+            instanceField.setAccessible(true);
+            instanceField.set(null, new PacketEvents());
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Failed to set up the benchmark environment.", ex);
+        }
+        PacketTypeClasses.Play.Client.FLYING = PacketPlayInFlying.class;
+        PacketType.packetIDMap.put(PacketPlayInFlying.class, PacketType.Play.Client.FLYING);
+        PacketType.packetIDMap.put(PacketPlayInFlying.PacketPlayInPosition.class, PacketType.Play.Client.POSITION);
+        PacketType.packetIDMap.put(PacketPlayOutEntityMetadata.class, PacketType.Play.Server.ENTITY_METADATA);
+        PacketType.packetIDMap.put(PacketPlayOutMapChunk.class, PacketType.Play.Server.MAP_CHUNK);
+        setUp = true;
+    }
+
+    /**
+     * Player stub, every method returns null (or zero).
+     * The pipeline only uses the player to figure out that the packet is a PLAY packet.
+     *
+     * @return Player stub.
+     */
+    public static Player createPlayer() {
+        return createStub(Player.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T createStub(Class<T> type) {
+        Logger logger = Logger.getLogger("packetevents-benchmark");
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return type.getSimpleName() + "Stub";
+                        default:
+                            break;
+                    }
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == Logger.class) {
+                        return logger;
+                    } else if (returnType == boolean.class) {
+                        return false;
+                    } else if (returnType.isPrimitive() && returnType != void.class) {
+                        return 0;
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayInFlying;
+import io.github.retrooper.packetevents.event.PacketListenerAbstract;
+import io.github.retrooper.packetevents.event.PacketListenerPriority;
+import io.github.retrooper.packetevents.event.impl.PacketPlayReceiveEvent;
+import io.github.retrooper.packetevents.event.manager.EventManager;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatching a PLAY packet event to N listeners.
+ * The filtered variant registers listeners that only listen to another packet,
+ * so the dispatched FLYING event should barely cost anything.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventDispatchBenchmark {
+    @Param({"1", "10", "50"})
+    public int listeners;
+
+    @Param({"false", "true"})
+    public boolean filtered;
+
+    private EventManager eventManager;
+    private Object channel;
+    private NMSPacket packet;
+    private PacketPlayReceiveEvent event;
+    //Written by the listeners, so their work can't be optimized away
+    public long consumed;
+
+    @Setup
+    public void setUp() {
+        BenchmarkEnvironment.setUp();
+        eventManager = PacketEvents.get().getEventManager();
+        PacketListenerPriority[] priorities = PacketListenerPriority.values();
+        for (int i = 0; i < listeners; i++) {
+            PacketListenerAbstract listener = new PacketListenerAbstract(priorities[i % priorities.length]) {
+                @Override
+                public void onPacketPlayReceive(PacketPlayReceiveEvent event) {
+                    consumed += event.getPacketId();
+                }
+            };
+            if (filtered) {
+                listener.addClientSidedPlayFilter(PacketType.Play.Client.USE_ENTITY);
+            }
+            eventManager.registerListener(listener);
+        }
+        channel = new Object();
+        packet = new NMSPacket(new PacketPlayInFlying.PacketPlayInPosition(1.0, 64.0, 1.0, true));
+        event = new PacketPlayReceiveEvent(BenchmarkEnvironment.createPlayer(), channel, packet);
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventManager.unregisterAllListeners();
+    }
+
+    @Benchmark
+    public boolean callEvent() {
+        eventManager.callEvent(event);
+        return event.isCancelled();
+    }
+
+    @Benchmark
+    public boolean constructAndCallEvent() {
+        PacketPlayReceiveEvent event = new PacketPlayReceiveEvent(null, channel, packet);
+        eventManager.callEvent(event);
+        return event.isCancelled();
+    }
+
+    @Benchmark
+    public boolean hasListeners() {
+        return eventManager.hasListeners(event.getFilterType(), PacketType.Play.Client.POSITION);
+    }
+}
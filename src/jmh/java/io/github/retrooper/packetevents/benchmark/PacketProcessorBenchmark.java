@@ -0,0 +1,119 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayInFlying;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutMapChunk;
+import io.github.retrooper.packetevents.event.PacketListenerAbstract;
+import io.github.retrooper.packetevents.event.impl.PacketPlayReceiveEvent;
+import io.github.retrooper.packetevents.event.impl.PacketPlaySendEvent;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.processor.PacketProcessorInternal;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import io.github.retrooper.packetevents.packetwrappers.play.in.flying.WrappedPacketInFlying;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full packet cycles through the internal packet processor, the way the channel handlers run them.
+ * The inbound cycle is read, event and postRead, the outbound one is write, event and postWrite.
+ * A FLYING listener reads the position, nobody listens to MAP_CHUNK.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketProcessorBenchmark {
+    @Param({"false", "true"})
+    public boolean pooledEvents;
+
+    private PacketProcessorInternal processor;
+    private Player player;
+    private Object channel;
+    private Object flying;
+    private Object mapChunk;
+    private PacketListenerAbstract listener;
+    //Written by the listener, so its work can't be optimized away
+    public long consumed;
+
+    @Setup
+    public void setUp() {
+        BenchmarkEnvironment.setUp();
+        processor = PacketEvents.get().getInternalPacketProcessor();
+        processor.setPooledEvents(pooledEvents, false);
+        player = BenchmarkEnvironment.createPlayer();
+        channel = new Object();
+        flying = new PacketPlayInFlying.PacketPlayInPosition(1.0, 64.0, 1.0, true);
+        mapChunk = new PacketPlayOutMapChunk(3, -7, 16384);
+        listener = new PacketListenerAbstract() {
+            @Override
+            public void onPacketPlayReceive(PacketPlayReceiveEvent event) {
+                if (event.getPacketId() == PacketType.Play.Client.POSITION) {
+                    Vector3d position = new WrappedPacketInFlying(event.getNMSPacket()).getPosition();
+                    consumed += (long) position.x;
+                }
+            }
+
+            @Override
+            public void onPacketPlaySend(PacketPlaySendEvent event) {
+                consumed += event.getPacketId();
+            }
+        };
+        listener.addClientSidedPlayFilter(PacketType.Play.Client.POSITION);
+        listener.addServerSidedPlayFilter(PacketType.Play.Server.ENTITY_METADATA);
+        PacketEvents.get().getEventManager().registerListener(listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        PacketEvents.get().getEventManager().unregisterListener(listener);
+        processor.setPooledEvents(false, false);
+    }
+
+    @Benchmark
+    public Object readCycle() {
+        if (!processor.isReadProcessed(player, flying)) {
+            return flying;
+        }
+        Object packet = processor.read(player, channel, flying).packet;
+        if (packet != null) {
+            processor.postRead(player, channel, packet);
+        }
+        return packet;
+    }
+
+    @Benchmark
+    public Object writeCycleWithoutListeners() {
+        if (!processor.isWriteProcessed(player, mapChunk)) {
+            return mapChunk;
+        }
+        PacketProcessorInternal.PacketData data = processor.write(player, channel, mapChunk);
+        Object packet = data.packet;
+        if (packet != null) {
+            processor.postWrite(player, channel, packet);
+        }
+        return packet;
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.benchmark;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayInFlying;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutEntityMetadata;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutMapChunk;
+import io.github.retrooper.packetevents.benchmark.nms.ReplayPacket;
+import io.github.retrooper.packetevents.event.PacketListenerAbstract;
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.processor.PacketProcessorInternal;
+import io.github.retrooper.packetevents.utils.capture.PacketCapture;
+import io.github.retrooper.packetevents.utils.capture.PacketCaptureReader;
+import io.github.retrooper.packetevents.utils.metrics.PacketMetrics;
+import io.github.retrooper.packetevents.utils.metrics.PacketMetricsSnapshot;
+import io.github.retrooper.packetevents.utils.player.User;
+import org.bukkit.entity.Player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a packet capture through the internal packet processor and the event manager, without a server or a network.
+ * Every captured connection gets its own stub channel, user and player, the captured packets are replaced by stub NMS packets
+ * with the same packet ID and run through the same read and write cycles the channel handlers run.
+ * HANDSHAKING and LOGIN packets are skipped, PacketEvents processes them internally and that needs the real packet fields.
+ * The packets can be replayed at the recorded speed or as fast as possible.
+ * Afterwards the harness reports the throughput and the latency of every listener, so the performance of listener plugins
+ * can be compared against real traffic shapes.
+ * <pre>{@code java ReplayHarness <capture directory> [--realtime] [listener class...]}</pre>
+ *
+ * @author retrooper
+ * @see PacketCapture
+ * @since 1.8
+ */
+public final class ReplayHarness {
+    private final List<PacketCaptureReader.Record> records;
+    private final Object[] stubPackets = new Object[256];
+    private boolean realTime;
+
+    public ReplayHarness(List<PacketCaptureReader.Record> records) {
+        this.records = records;
+    }
+
+    /**
+     * Should the packets be replayed at the recorded speed?
+     *
+     * @param realTime Replay at the recorded speed instead of as fast as possible?
+     * @return Same harness instance.
+     */
+    public ReplayHarness realTime(boolean realTime) {
+        this.realTime = realTime;
+        return this;
+    }
+
+    /**
+     * Replay the capture to the given listeners.
+     *
+     * @param listeners Listeners processing the replayed packets.
+     * @return Result of the replay.
+     */
+    public Result run(PacketListenerAbstract... listeners) {
+        BenchmarkEnvironment.setUp();
+        PacketProcessorInternal processor = PacketEvents.get().getInternalPacketProcessor();
+        PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+        metrics.reset();
+        metrics.setEnabled(true);
+        PacketEvents.get().getEventManager().registerListeners(listeners);
+        Map<Integer, Connection> connections = new HashMap<>();
+        Map<Byte, long[]> recordedDispatches = new HashMap<>();
+        long packets = 0;
+        long skipped = 0;
+        long start = System.nanoTime();
+        long nanos;
+        PacketMetricsSnapshot snapshot;
+        try {
+            for (PacketCaptureReader.Record record : records) {
+                if (record.getType() == PacketCapture.RECORD_DISPATCH) {
+                    long[] dispatch = recordedDispatches.computeIfAbsent(record.getPacketId(), id -> new long[2]);
+                    dispatch[0]++;
+                    dispatch[1] += record.getDispatchNanos();
+                    continue;
+                }
+                PacketState state = record.getState();
+                if (record.getType() != PacketCapture.RECORD_PACKET || state == null) {
+                    continue;
+                }
+                if (state == PacketState.HANDSHAKING || state == PacketState.LOGIN) {
+                    skipped++;
+                    continue;
+                }
+                if (realTime) {
+                    long delay = record.getTimestamp() - (System.nanoTime() - start);
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                }
+                Connection connection = connections.computeIfAbsent(record.getConnectionId(), id -> new Connection());
+                connection.user.setState(state);
+                Player player = state == PacketState.PLAY ? connection.player : null;
+                Object packet = getStubPacket(record.getPacketId());
+                if (record.isServerBound()) {
+                    read(processor, connection, player, packet);
+                } else {
+                    write(processor, connection, player, packet);
+                }
+                packets++;
+            }
+            nanos = System.nanoTime() - start;
+            //The metrics of the listeners are dropped once they are unregistered.
+            snapshot = metrics.snapshot();
+        } finally {
+            PacketEvents.get().getEventManager().unregisterListeners(listeners);
+            metrics.setEnabled(false);
+        }
+        return new Result(snapshot, packets, skipped, nanos, recordedDispatches);
+    }
+
+    private static void read(PacketProcessorInternal processor, Connection connection, Player player, Object packet) {
+        processor.recordRead(connection.user, player, packet);
+        if (!processor.isReadProcessed(connection.user, player, packet)) {
+            return;
+        }
+        Object processedPacket = processor.read(connection.user, player, connection.channel, packet).packet;
+        if (processedPacket != null) {
+            processor.postRead(connection.user, player, connection.channel, processedPacket);
+        }
+    }
+
+    private static void write(PacketProcessorInternal processor, Connection connection, Player player, Object packet) {
+        processor.recordWrite(connection.user, player, packet);
+        if (!processor.isWriteProcessed(connection.user, player, packet)) {
+            return;
+        }
+        PacketProcessorInternal.PacketData data = processor.write(connection.user, player, connection.channel, packet);
+        Object processedPacket = data.packet;
+        if (data.postAction != null) {
+            data.postAction.run();
+        }
+        if (processedPacket != null) {
+            processor.postWrite(connection.user, player, connection.channel, processedPacket);
+        }
+    }
+
+    /**
+     * Get the stub NMS packet of a packet ID.
+     * The packet types we have a stub with the real field layout for use that stub.
+     *
+     * @param packetID Packet ID.
+     * @return Stub NMS packet.
+     */
+    private Object getStubPacket(byte packetID) {
+        Object packet = stubPackets[packetID & 0xFF];
+        if (packet == null) {
+            if (packetID == PacketType.Play.Client.FLYING) {
+                packet = new PacketPlayInFlying();
+            } else if (packetID == PacketType.Play.Client.POSITION) {
+                packet = new PacketPlayInFlying.PacketPlayInPosition(0.5, 64.0, 0.5, true);
+            } else if (packetID == PacketType.Play.Server.ENTITY_METADATA) {
+                packet = new PacketPlayOutEntityMetadata(1, 4);
+            } else if (packetID == PacketType.Play.Server.MAP_CHUNK) {
+                packet = new PacketPlayOutMapChunk(0, 0, 16384);
+            } else {
+                packet = defineReplayPacket(packetID);
+            }
+            stubPackets[packetID & 0xFF] = packet;
+        }
+        return packet;
+    }
+
+    private static Object defineReplayPacket(byte packetID) {
+        String name = ReplayPacket.class.getName();
+        byte[] bytes;
+        try (InputStream in = ReplayPacket.class.getResourceAsStream("/" + name.replace('.', '/') + ".class")) {
+            if (in == null) {
+                throw new IllegalStateException("Failed to find the replay packet class.");
+            }
+            bytes = readFully(in);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read the replay packet class.", ex);
+        }
+        //Every class loader defines its own copy of the class, so every packet ID gets its own class.
+        Class<?> packetClass = new ClassLoader(ReplayHarness.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        }.define();
+        PacketType.packetIDMap.put(packetClass, packetID);
+        try {
+            return packetClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Failed to construct a replay packet.", ex);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                byte[] grown = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, length);
+                buffer = grown;
+            }
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    private static final class Connection {
+        private final Object channel = new Object();
+        private final User user = new User(channel);
+        private final Player player = BenchmarkEnvironment.createPlayer();
+
+        private Connection() {
+            user.setPlayer(player);
+        }
+    }
+
+    /**
+     * Result of a replay.
+     */
+    public static final class Result {
+        private final PacketMetricsSnapshot metrics;
+        private final long packets;
+        private final long skippedPackets;
+        private final long nanos;
+        private final Map<Byte, long[]> recordedDispatches;
+
+        private Result(PacketMetricsSnapshot metrics, long packets, long skippedPackets, long nanos, Map<Byte, long[]> recordedDispatches) {
+            this.metrics = metrics;
+            this.packets = packets;
+            this.skippedPackets = skippedPackets;
+            this.nanos = nanos;
+            this.recordedDispatches = recordedDispatches;
+        }
+
+        /**
+         * Packet metrics recorded during the replay, including the time every listener spent.
+         *
+         * @return Metrics snapshot.
+         */
+        public PacketMetricsSnapshot getMetrics() {
+            return metrics;
+        }
+
+        public long getPackets() {
+            return packets;
+        }
+
+        /**
+         * Amount of HANDSHAKING and LOGIN packets that haven't been replayed.
+         *
+         * @return Skipped packets.
+         */
+        public long getSkippedPackets() {
+            return skippedPackets;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public void print(PrintStream out) {
+            double seconds = nanos / 1.0E9;
+            out.printf("Replayed %d packets in %.3f s (%.0f packets/s), skipped %d packets%n",
+                    packets, seconds, packets / Math.max(seconds, 1.0E-9), skippedPackets);
+            out.println("Listener                                  calls   avg ns   calls/s of listener time  cancelled");
+            for (PacketMetricsSnapshot.ListenerEntry entry : metrics.getListeners().values()) {
+                long calls = entry.getCalls();
+                double avg = calls == 0 ? 0 : (double) entry.getNanos() / calls;
+                double throughput = entry.getNanos() == 0 ? 0 : calls / (entry.getNanos() / 1.0E9);
+                out.printf("%-40s %8d %8.0f %26.0f %10d%n", entry.getListener().getClass().getName(),
+                        calls, avg, throughput, entry.getCancelled());
+            }
+            out.println("Packet (state, direction, ID)                dispatched   p50 ns   p99 ns   recorded avg ns");
+            for (PacketMetricsSnapshot.PacketEntry entry : metrics.getPackets()) {
+                if (entry.getDispatched() == 0) {
+                    continue;
+                }
+                long[] recorded = recordedDispatches.get(entry.getPacketId());
+                String recordedAvg = recorded == null || recorded[0] == 0 ? "-" : String.valueOf(recorded[1] / recorded[0]);
+                out.printf("%-10s %-11s %4d %25d %8d %8d %17s%n", entry.getState(), entry.isServerBound() ? "serverbound" : "clientbound",
+                        entry.getPacketId(), entry.getDispatched(), entry.getPercentileNanos(50),
+                        entry.getPercentileNanos(99), recordedAvg);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayHarness <capture directory> [--realtime] [listener class...]");
+            return;
+        }
+        boolean realTime = false;
+        List<PacketListenerAbstract> listeners = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--realtime")) {
+                realTime = true;
+            } else {
+                listeners.add((PacketListenerAbstract) Class.forName(args[i]).getConstructor().newInstance());
+            }
+        }
+        List<PacketCaptureReader.Record> records = PacketCaptureReader.read(new File(args[0]));
+        new ReplayHarness(records).realTime(realTime)
+                .run(listeners.toArray(new PacketListenerAbstract[0]))
+                .print(System.out);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark;
+
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayInFlying;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutEntityMetadata;
+import io.github.retrooper.packetevents.benchmark.nms.PacketPlayOutMapChunk;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
+import io.github.retrooper.packetevents.packetwrappers.PacketWrapperRegistry;
+import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
+import io.github.retrooper.packetevents.packetwrappers.play.in.flying.WrappedPacketInFlying;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wrapper read and write throughput on packets shaped like FLYING, ENTITY_METADATA and MAP_CHUNK.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WrapperBenchmark {
+    private static final int LISTENERS = 5;
+    private NMSPacket flying;
+    private NMSPacket entityMetadata;
+    private NMSPacket mapChunk;
+    private Vector3d position;
+
+    @Setup
+    public void setUp() {
+        BenchmarkEnvironment.setUp();
+        flying = new NMSPacket(new PacketPlayInFlying.PacketPlayInPosition(1.0, 64.0, 1.0, true));
+        entityMetadata = new NMSPacket(new PacketPlayOutEntityMetadata(42, 8));
+        mapChunk = new NMSPacket(new PacketPlayOutMapChunk(3, -7, 16384));
+        position = new Vector3d(2.0, 65.0, 2.0);
+    }
+
+    @Benchmark
+    public Vector3d readFlyingPosition() {
+        return new WrappedPacketInFlying(flying).getPosition();
+    }
+
+    @Benchmark
+    public void readFlying(Blackhole blackhole) {
+        WrappedPacketInFlying wrapper = new WrappedPacketInFlying(flying);
+        blackhole.consume(wrapper.getPosition());
+        blackhole.consume(wrapper.getYaw());
+        blackhole.consume(wrapper.getPitch());
+        blackhole.consume(wrapper.isOnGround());
+        blackhole.consume(wrapper.isMoving());
+        blackhole.consume(wrapper.isRotating());
+    }
+
+    @Benchmark
+    public void readFlyingPerListener(Blackhole blackhole) {
+        for (int i = 0; i < LISTENERS; i++) {
+            WrappedPacketInFlying wrapper = new WrappedPacketInFlying(flying);
+            blackhole.consume(wrapper.getPosition());
+            blackhole.consume(wrapper.getYaw());
+            blackhole.consume(wrapper.isOnGround());
+        }
+    }
+
+    @Benchmark
+    public void readFlyingShared(Blackhole blackhole) {
+        WrappedPacketInFlying wrapper = (WrappedPacketInFlying) PacketWrapperRegistry.wrap(PacketType.Play.Client.POSITION, flying);
+        for (int i = 0; i < LISTENERS; i++) {
+            blackhole.consume(wrapper.getPosition());
+            blackhole.consume(wrapper.getYaw());
+            blackhole.consume(wrapper.isOnGround());
+        }
+    }
+
+    @Benchmark
+    public void readFlyingFlyweight(Blackhole blackhole) {
+        WrappedPacketInFlying wrapper = WrappedPacketInFlying.flyweight(flying);
+        blackhole.consume(wrapper.getX());
+        blackhole.consume(wrapper.getY());
+        blackhole.consume(wrapper.getZ());
+        blackhole.consume(wrapper.getYaw());
+        blackhole.consume(wrapper.getPitch());
+        blackhole.consume(wrapper.isOnGround());
+    }
+
+    @Benchmark
+    public void writeFlyingPosition() {
+        new WrappedPacketInFlying(flying).setPosition(position);
+    }
+
+    @Benchmark
+    public void readEntityMetadata(Blackhole blackhole) {
+        WrappedPacket wrapper = new WrappedPacket(entityMetadata);
+        blackhole.consume(wrapper.readInt(0));
+        List<Object> watchableObjects = wrapper.readList(0);
+        for (Object watchableObject : watchableObjects) {
+            WrappedPacket watchableObjectWrapper = new WrappedPacket(new NMSPacket(watchableObject));
+            blackhole.consume(watchableObjectWrapper.readInt(0));
+            blackhole.consume(watchableObjectWrapper.readAnyObject(1));
+        }
+    }
+
+    @Benchmark
+    public void readMapChunk(Blackhole blackhole) {
+        WrappedPacket wrapper = new WrappedPacket(mapChunk);
+        blackhole.consume(wrapper.readInt(0));
+        blackhole.consume(wrapper.readInt(1));
+        blackhole.consume(wrapper.readBoolean(0));
+        WrappedPacket chunkMapWrapper = new WrappedPacket(new NMSPacket(wrapper.readAnyObject(2)));
+        blackhole.consume(chunkMapWrapper.readByteArray(0));
+        blackhole.consume(chunkMapWrapper.readInt(0));
+    }
+
+    @Benchmark
+    public void writeMapChunk() {
+        WrappedPacket wrapper = new WrappedPacket(mapChunk);
+        wrapper.writeInt(0, 4);
+        wrapper.writeInt(1, -8);
+        wrapper.writeBoolean(0, false);
+    }
+}
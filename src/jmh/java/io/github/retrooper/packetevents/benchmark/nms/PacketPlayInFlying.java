@@ -0,0 +1,47 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark.nms;
+
+/**
+ * Stub of the 1.8 PacketPlayInFlying packet, with the same field layout.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public class PacketPlayInFlying {
+    protected double x;
+    protected double y;
+    protected double z;
+    protected float yaw;
+    protected float pitch;
+    protected boolean f;
+    protected boolean hasPos;
+    protected boolean hasLook;
+
+    public static class PacketPlayInPosition extends PacketPlayInFlying {
+        public PacketPlayInPosition(double x, double y, double z, boolean onGround) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.f = onGround;
+            this.hasPos = true;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark.nms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stub of the 1.8 PacketPlayOutEntityMetadata packet, with the same field layout.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public class PacketPlayOutEntityMetadata {
+    private int a;
+    private List<Object> b;
+
+    public PacketPlayOutEntityMetadata(int entityID, int watchableObjects) {
+        this.a = entityID;
+        this.b = new ArrayList<>(watchableObjects);
+        for (int i = 0; i < watchableObjects; i++) {
+            b.add(new WatchableObject(i, (byte) 0));
+        }
+    }
+
+    public static class WatchableObject {
+        private final int a;
+        private Object b;
+
+        public WatchableObject(int index, Object value) {
+            this.a = index;
+            this.b = value;
+        }
+    }
+}
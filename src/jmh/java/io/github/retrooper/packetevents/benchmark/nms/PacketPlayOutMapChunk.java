@@ -0,0 +1,47 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.benchmark.nms;
+
+/**
+ * Stub of the 1.8 PacketPlayOutMapChunk packet, with the same field layout.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public class PacketPlayOutMapChunk {
+    private int a;
+    private int b;
+    private ChunkMap c;
+    private boolean d;
+
+    public PacketPlayOutMapChunk(int chunkX, int chunkZ, int dataSize) {
+        this.a = chunkX;
+        this.b = chunkZ;
+        this.c = new ChunkMap();
+        this.c.a = new byte[dataSize];
+        this.c.b = 0xFFFF;
+        this.d = true;
+    }
+
+    public static class ChunkMap {
+        public byte[] a;
+        public int b;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.benchmark.nms;
+
+/**
+ * Stub packet for the packet types without a stub of their own.
+ * The replay harness defines a copy of this class for every packet ID, so every copy can be mapped to its own packet ID.
+ * It has no fields, listeners reading the packet through a wrapper won't find anything.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public class ReplayPacket {
+}
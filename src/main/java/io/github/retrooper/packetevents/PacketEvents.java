@@ -33,7 +33,8 @@ import io.github.retrooper.packetevents.processor.PacketProcessorInternal;
 import io.github.retrooper.packetevents.settings.PacketEventsSettings;
 import io.github.retrooper.packetevents.updatechecker.UpdateChecker;
 import io.github.retrooper.packetevents.utils.entityfinder.EntityFinderUtils;
-import io.github.retrooper.packetevents.utils.guava.GuavaUtils;
+import io.github.retrooper.packetevents.utils.capture.PacketCapture;
+import io.github.retrooper.packetevents.utils.metrics.PacketMetrics;
 import io.github.retrooper.packetevents.utils.netty.bytebuf.ByteBufUtil;
 import io.github.retrooper.packetevents.utils.netty.bytebuf.ByteBufUtil_7;
 import io.github.retrooper.packetevents.utils.netty.bytebuf.ByteBufUtil_8;
@@ -63,6 +64,8 @@ public final class PacketEvents implements Listener, EventManager {
     private final ServerUtils serverUtils = new ServerUtils();
     private final PacketProcessorInternal packetProcessorInternal = new PacketProcessorInternal();
     private final BukkitEventProcessorInternal bukkitEventProcessorInternal = new BukkitEventProcessorInternal();
+    private final PacketMetrics packetMetrics = new PacketMetrics();
+    private final PacketCapture packetCapture = new PacketCapture();
     private final GlobalChannelInjector injector = new GlobalChannelInjector();
     private final AtomicBoolean injectorReady = new AtomicBoolean();
     private String handlerName;
@@ -125,8 +128,6 @@ public final class PacketEvents implements Listener, EventManager {
 
                 EntityFinderUtils.load();
 
-                getServerUtils().entityCache = GuavaUtils.makeMap();
-
                 if (version.isNewerThanOrEquals(ServerVersion.v_1_9)) {
                     for (WrappedPacketOutEntityEquipment.EquipmentSlot slot : WrappedPacketOutEntityEquipment.EquipmentSlot.values()) {
                         slot.id = (byte) slot.ordinal();
@@ -187,6 +188,15 @@ public final class PacketEvents implements Listener, EventManager {
             settings = packetEventsSettings;
             settings.lock();
 
+            packetProcessorInternal.setPooledEvents(settings.shouldPoolEvents(), settings.isPooledEventsDebugEnabled());
+            packetMetrics.setEnabled(settings.shouldRecordPacketMetrics());
+            packetProcessorInternal.setServerInfoCacheTime(settings.getServerInfoCacheTime());
+            playerUtils.setOutboundScheduling(settings.shouldScheduleOutboundPackets());
+            packetProcessorInternal.setEntityTracking(settings.shouldTrackEntities());
+            if (settings.isTickPacketBatchingEnabled()) {
+                playerUtils.startTickBatching(plugin);
+            }
+
             if (settings.shouldCheckForUpdates()) {
                 handleUpdateCheck();
             }
@@ -207,6 +217,7 @@ public final class PacketEvents implements Listener, EventManager {
 
             Runnable postInjectTask = () -> {
                 Bukkit.getPluginManager().registerEvents(bukkitEventProcessorInternal, plugin);
+                serverUtils.getEntityIndex().start(plugin);
                 for (final Player p : Bukkit.getOnlinePlayers()) {
                     try {
                         injector.injectPlayer(p);
@@ -242,6 +253,11 @@ public final class PacketEvents implements Listener, EventManager {
 
     public void terminate() {
         if (initialized && !terminating) {
+            //Send the packets we are still holding back
+            playerUtils.stopTickBatching();
+            serverUtils.getNPCEngine().stop();
+            serverUtils.getEntityIndex().stop();
+            packetCapture.stop();
             //Eject all players
             for (Player p : Bukkit.getOnlinePlayers()) {
                 injector.ejectPlayer(p);
@@ -318,6 +334,14 @@ public final class PacketEvents implements Listener, EventManager {
         return eventManager;
     }
 
+    public PacketMetrics getPacketMetrics() {
+        return packetMetrics;
+    }
+
+    public PacketCapture getPacketCapture() {
+        return packetCapture;
+    }
+
     public PlayerUtils getPlayerUtils() {
         return playerUtils;
     }
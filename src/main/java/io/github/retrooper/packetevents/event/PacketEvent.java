@@ -53,6 +53,20 @@ public abstract class PacketEvent implements CallableEvent {
         listener.onPacketEventExternal(this);
     }
 
+    /**
+     * Get a copy of this event for the asynchronous listeners.
+     * Events that are modified or recycled after they have been dispatched have to be copied,
+     * other events simply return themselves.
+     * Modifications and cancellations of a copy are ignored, the packet is sent or processed as it was after the synchronous listeners.
+     * The copy doesn't copy the packet though, it still refers to the same raw NMS packet,
+     * which might already be written or handled by the server while the asynchronous listeners read it.
+     *
+     * @return Event for the asynchronous listeners.
+     */
+    public PacketEvent copy() {
+        return this;
+    }
+
     public boolean isInbuilt() {
         return false;
     }
@@ -0,0 +1,71 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.event;
+
+import io.github.retrooper.packetevents.utils.immutableset.ImmutableSetCustom;
+
+/**
+ * The packet filter a packet event is dispatched through.
+ * Every filter type corresponds to one of the packet ID filters of a {@link PacketListenerAbstract}.
+ * The event manager precompiles these filters into a dispatch table, so a packet event is only
+ * processed by the listeners that are actually interested in its packet ID.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent#getFilterType()
+ * @since 1.8
+ */
+public enum PacketFilterType {
+    SERVER_SIDED_STATUS,
+    SERVER_SIDED_LOGIN,
+    SERVER_SIDED_PLAY,
+    CLIENT_SIDED_STATUS,
+    CLIENT_SIDED_HANDSHAKE,
+    CLIENT_SIDED_LOGIN,
+    CLIENT_SIDED_PLAY;
+
+    /**
+     * Get the packet ID allowance set of a listener for this filter type.
+     *
+     * @param listener Packet listener.
+     * @return Allowed packet IDs, null if the listener doesn't filter any packets.
+     * @deprecated Use {@link PacketListenerAbstract#getPacketIDFilter(PacketFilterType)}.
+     */
+    @Deprecated
+    public ImmutableSetCustom<Byte> getAllowance(PacketListenerAbstract listener) {
+        switch (this) {
+            case SERVER_SIDED_STATUS:
+                return listener.serverSidedStatusAllowance;
+            case SERVER_SIDED_LOGIN:
+                return listener.serverSidedLoginAllowance;
+            case SERVER_SIDED_PLAY:
+                return listener.serverSidedPlayAllowance;
+            case CLIENT_SIDED_STATUS:
+                return listener.clientSidedStatusAllowance;
+            case CLIENT_SIDED_HANDSHAKE:
+                return listener.clientSidedHandshakeAllowance;
+            case CLIENT_SIDED_LOGIN:
+                return listener.clientSidedLoginAllowance;
+            case CLIENT_SIDED_PLAY:
+                return listener.clientSidedPlayAllowance;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.event;
+
+import java.util.Arrays;
+
+/**
+ * A set of packet IDs.
+ * Packet IDs are bytes, so the set is stored as a 256 bit bitmap (four longs).
+ * Checking if a packet ID is in the filter doesn't box, hash or allocate anything.
+ *
+ * @author retrooper
+ * @see PacketListenerAbstract
+ * @since 1.8
+ */
+public final class PacketIDFilter {
+    private final long[] words = new long[4];
+
+    /**
+     * Create an empty filter.
+     */
+    public PacketIDFilter() {
+    }
+
+    /**
+     * Create a filter containing the specified packet IDs.
+     *
+     * @param packetIDs Packet IDs.
+     */
+    public PacketIDFilter(byte... packetIDs) {
+        for (byte packetID : packetIDs) {
+            add(packetID);
+        }
+    }
+
+    /**
+     * Create a copy of another filter.
+     *
+     * @param filter Filter to copy.
+     */
+    public PacketIDFilter(PacketIDFilter filter) {
+        System.arraycopy(filter.words, 0, words, 0, words.length);
+    }
+
+    /**
+     * Does this filter contain the packet ID?
+     *
+     * @param packetID Packet ID.
+     * @return Is the packet ID in the filter?
+     */
+    public boolean contains(byte packetID) {
+        int index = packetID & 0xFF;
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public void add(byte packetID) {
+        int index = packetID & 0xFF;
+        words[index >>> 6] |= 1L << index;
+    }
+
+    public void addAll(Byte... packetIDs) {
+        for (Byte packetID : packetIDs) {
+            if (packetID != null) {
+                add(packetID);
+            }
+        }
+    }
+
+    /**
+     * Add every packet ID of another filter to this filter.
+     *
+     * @param filter Other filter.
+     */
+    public void addAll(PacketIDFilter filter) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= filter.words[i];
+        }
+    }
+
+    public void remove(byte packetID) {
+        int index = packetID & 0xFF;
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    public void clear() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0L;
+        }
+    }
+
+    public boolean isEmpty() {
+        return (words[0] | words[1] | words[2] | words[3]) == 0L;
+    }
+
+    /**
+     * Amount of packet IDs in this filter.
+     *
+     * @return Packet ID count.
+     */
+    public int size() {
+        return Long.bitCount(words[0]) + Long.bitCount(words[1])
+                + Long.bitCount(words[2]) + Long.bitCount(words[3]);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PacketIDFilter)) {
+            return false;
+        }
+        long[] otherWords = ((PacketIDFilter) obj).words;
+        return words[0] == otherWords[0] && words[1] == otherWords[1]
+                && words[2] == otherWords[2] && words[3] == otherWords[3];
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+}
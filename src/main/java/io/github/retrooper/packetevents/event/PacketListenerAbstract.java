@@ -18,25 +18,75 @@
 
 package io.github.retrooper.packetevents.event;
 
+import io.github.retrooper.packetevents.PacketEvents;
 import io.github.retrooper.packetevents.event.impl.*;
 import io.github.retrooper.packetevents.event.priority.PacketEventPriority;
 import io.github.retrooper.packetevents.utils.immutableset.ImmutableSetCustom;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Abstract packet listener.
+ * Listeners are processed on the netty threads by default.
+ * Listeners that only observe packets (for example to analyze them) can be made asynchronous,
+ * see {@link #PacketListenerAbstract(PacketListenerPriority, boolean)}.
  *
  * @author retrooper
  * @since 1.8
  */
 public abstract class PacketListenerAbstract {
     private final PacketListenerPriority priority;
+    private final boolean async;
+    /**
+     * Packet ID filters indexed by the filter type ordinal, null if the listener doesn't filter that type.
+     * Guarded by this listener.
+     */
+    private final PacketIDFilter[] packetIDFilters = new PacketIDFilter[PacketFilterType.values().length];
+    /**
+     * Read-only view of the server-sided status filter, kept in sync by the filter methods.
+     * Assigning or modifying it has no effect.
+     *
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> serverSidedStatusAllowance;
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> serverSidedLoginAllowance;
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> serverSidedPlayAllowance;
 
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> clientSidedStatusAllowance;
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> clientSidedHandshakeAllowance;
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> clientSidedLoginAllowance;
+    /**
+     * @deprecated Use {@link #getPacketIDFilter(PacketFilterType)}.
+     * @see #serverSidedStatusAllowance
+     */
+    @Deprecated
     public ImmutableSetCustom<Byte> clientSidedPlayAllowance;
 
     @Deprecated
@@ -45,7 +95,26 @@ public abstract class PacketListenerAbstract {
     }
 
     public PacketListenerAbstract(PacketListenerPriority priority) {
+        this(priority, false);
+    }
+
+    /**
+     * Create a packet listener that is optionally processed asynchronously.
+     * Asynchronous listeners are observe-only, they are processed on PacketEvents' async listener threads
+     * after the synchronous listeners have processed the event.
+     * They receive a copy of the event, so cancelling or modifying it has no effect.
+     * The copy still shares the mutable raw NMS packet with the netty thread, which might write or handle it
+     * while the listener reads it, so read what you need from the wrapped packet and don't modify the raw packet.
+     * The events of one player are always processed in the order they were dispatched in.
+     * If the async listeners can't keep up, events are dropped instead of queued endlessly.
+     *
+     * @param priority Priority of the listener among the other (synchronous or asynchronous) listeners.
+     * @param async    Should the listener be processed asynchronously?
+     * @see io.github.retrooper.packetevents.event.manager.EventManager#getDroppedAsyncEvents()
+     */
+    public PacketListenerAbstract(PacketListenerPriority priority, boolean async) {
         this.priority = priority;
+        this.async = async;
         this.serverSidedStatusAllowance = null;
         this.serverSidedLoginAllowance = null;
         this.serverSidedPlayAllowance = null;
@@ -65,6 +134,15 @@ public abstract class PacketListenerAbstract {
         return priority;
     }
 
+    /**
+     * Is this listener processed asynchronously?
+     *
+     * @return Is the listener asynchronous?
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
     public void onPacketStatusReceive(PacketStatusReceiveEvent event) {
     }
 
@@ -111,97 +189,160 @@ public abstract class PacketListenerAbstract {
     }
 
     public final void addServerSidedStatusFilter(Byte... statusPacketIDs) {
-        if (this.serverSidedStatusAllowance == null) {
-            this.serverSidedStatusAllowance = new ImmutableSetCustom<>(statusPacketIDs);
-        } else {
-            this.serverSidedStatusAllowance.addAll(statusPacketIDs);
-        }
+        addFilter(PacketFilterType.SERVER_SIDED_STATUS, statusPacketIDs);
+        updateFilters();
     }
 
     public final void addServerSidedLoginFilter(Byte... loginPacketIDs) {
-        if (this.serverSidedLoginAllowance == null) {
-            this.serverSidedLoginAllowance = new ImmutableSetCustom<>(loginPacketIDs);
-        } else {
-            this.serverSidedLoginAllowance.addAll(loginPacketIDs);
-        }
+        addFilter(PacketFilterType.SERVER_SIDED_LOGIN, loginPacketIDs);
+        updateFilters();
     }
 
     public final void addServerSidedPlayFilter(Byte... playPacketIDs) {
-        if (this.serverSidedPlayAllowance == null) {
-            this.serverSidedPlayAllowance = new ImmutableSetCustom<>(playPacketIDs);
-        } else {
-            this.serverSidedPlayAllowance.addAll(playPacketIDs);
-        }
+        addFilter(PacketFilterType.SERVER_SIDED_PLAY, playPacketIDs);
+        updateFilters();
     }
 
     public final void addClientSidedStatusFilter(Byte... statusPacketIDs) {
-        if (this.clientSidedStatusAllowance == null) {
-            this.clientSidedStatusAllowance = new ImmutableSetCustom<>(statusPacketIDs);
-        } else {
-            this.clientSidedStatusAllowance.addAll(statusPacketIDs);
-        }
+        addFilter(PacketFilterType.CLIENT_SIDED_STATUS, statusPacketIDs);
+        updateFilters();
     }
 
     public final void addClientSidedHandshakeFilter(Byte... handshakePacketIDs) {
-        if (this.clientSidedHandshakeAllowance == null) {
-            this.clientSidedHandshakeAllowance = new ImmutableSetCustom<>(handshakePacketIDs);
-        } else {
-            this.clientSidedHandshakeAllowance.addAll(handshakePacketIDs);
-        }
+        addFilter(PacketFilterType.CLIENT_SIDED_HANDSHAKE, handshakePacketIDs);
+        updateFilters();
     }
 
     public final void addClientSidedLoginFilter(Byte... loginPacketIDs) {
-        if (this.clientSidedLoginAllowance == null) {
-            this.clientSidedLoginAllowance = new ImmutableSetCustom<>(loginPacketIDs);
-        } else {
-            this.clientSidedLoginAllowance.addAll(loginPacketIDs);
-        }
+        addFilter(PacketFilterType.CLIENT_SIDED_LOGIN, loginPacketIDs);
+        updateFilters();
     }
 
     public final void addClientSidedPlayFilter(Byte... playPacketIDs) {
-        if (this.clientSidedPlayAllowance == null) {
-            this.clientSidedPlayAllowance = new ImmutableSetCustom<>(playPacketIDs);
-        } else {
-            this.clientSidedPlayAllowance.addAll(playPacketIDs);
-        }
+        addFilter(PacketFilterType.CLIENT_SIDED_PLAY, playPacketIDs);
+        updateFilters();
     }
 
     public final void filterAll() {
-        filterServerSidedStatus();
-        filterServerSidedLogin();
-        filterServerSidedPlay();
-
-        filterClientSidedStatus();
-        filterClientSidedHandshake();
-        filterClientSidedLogin();
-        filterClientSidedPlay();
+        for (PacketFilterType filterType : PacketFilterType.values()) {
+            filter(filterType);
+        }
+        //The filters are recompiled once, not for every filter type.
+        updateFilters();
     }
 
     public final void filterServerSidedStatus() {
-        this.serverSidedStatusAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.SERVER_SIDED_STATUS);
+        updateFilters();
     }
 
     public final void filterServerSidedLogin() {
-        this.serverSidedLoginAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.SERVER_SIDED_LOGIN);
+        updateFilters();
     }
 
     public final void filterServerSidedPlay() {
-        this.serverSidedPlayAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.SERVER_SIDED_PLAY);
+        updateFilters();
     }
 
     public final void filterClientSidedStatus() {
-        this.clientSidedStatusAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.CLIENT_SIDED_STATUS);
+        updateFilters();
     }
 
     public final void filterClientSidedHandshake() {
-        this.clientSidedHandshakeAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.CLIENT_SIDED_HANDSHAKE);
+        updateFilters();
     }
 
     public final void filterClientSidedLogin() {
-        this.clientSidedLoginAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.CLIENT_SIDED_LOGIN);
+        updateFilters();
     }
 
     public final void filterClientSidedPlay() {
-        this.clientSidedPlayAllowance = new ImmutableSetCustom<>();
+        filter(PacketFilterType.CLIENT_SIDED_PLAY);
+        updateFilters();
+    }
+
+    /**
+     * Get the packet ID filter of this listener for a filter type.
+     * The event manager precompiles these filters, so the listener is only called for the packets it is interested in.
+     *
+     * @param filterType Packet filter type.
+     * @return Copy of the allowed packet IDs, null if the listener doesn't filter any packets of that type.
+     */
+    public synchronized PacketIDFilter getPacketIDFilter(PacketFilterType filterType) {
+        PacketIDFilter filter = packetIDFilters[filterType.ordinal()];
+        return filter != null ? new PacketIDFilter(filter) : null;
+    }
+
+    private synchronized void addFilter(PacketFilterType filterType, Byte... packetIDs) {
+        PacketIDFilter filter = packetIDFilters[filterType.ordinal()];
+        if (filter == null) {
+            filter = new PacketIDFilter();
+            packetIDFilters[filterType.ordinal()] = filter;
+        }
+        filter.addAll(packetIDs);
+        updateAllowance(filterType, filter);
+    }
+
+    private synchronized void filter(PacketFilterType filterType) {
+        PacketIDFilter filter = new PacketIDFilter();
+        packetIDFilters[filterType.ordinal()] = filter;
+        updateAllowance(filterType, filter);
+    }
+
+    /**
+     * Update the deprecated allowance set of a filter type.
+     *
+     * @param filterType Packet filter type.
+     * @param filter     Packet ID filter of the filter type.
+     */
+    @SuppressWarnings("deprecation")
+    private void updateAllowance(PacketFilterType filterType, PacketIDFilter filter) {
+        List<Byte> packetIDs = new ArrayList<>(filter.size());
+        for (int index = 0; index < 256; index++) {
+            if (filter.contains((byte) index)) {
+                packetIDs.add((byte) index);
+            }
+        }
+        ImmutableSetCustom<Byte> allowance = new ImmutableSetCustom<>(packetIDs);
+        switch (filterType) {
+            case SERVER_SIDED_STATUS:
+                serverSidedStatusAllowance = allowance;
+                break;
+            case SERVER_SIDED_LOGIN:
+                serverSidedLoginAllowance = allowance;
+                break;
+            case SERVER_SIDED_PLAY:
+                serverSidedPlayAllowance = allowance;
+                break;
+            case CLIENT_SIDED_STATUS:
+                clientSidedStatusAllowance = allowance;
+                break;
+            case CLIENT_SIDED_HANDSHAKE:
+                clientSidedHandshakeAllowance = allowance;
+                break;
+            case CLIENT_SIDED_LOGIN:
+                clientSidedLoginAllowance = allowance;
+                break;
+            case CLIENT_SIDED_PLAY:
+                clientSidedPlayAllowance = allowance;
+                break;
+        }
+    }
+
+    /**
+     * Recompile the filters of this listener in case it has already been registered.
+     * Packet events are dispatched using precompiled filters.
+     */
+    private void updateFilters() {
+        PacketEvents instance = PacketEvents.get();
+        //Filters may be set in the constructor before PacketEvents has been created, nothing can be registered yet.
+        if (instance != null) {
+            instance.getEventManager().updateListenerFilters(this);
+        }
     }
 }
@@ -29,13 +29,21 @@ public abstract class CancellableNMSPacketEvent extends NMSPacketEvent implement
         super(channel, packet);
     }
 
+    @Override
+    public void recycle(Object channel, NMSPacket packet) {
+        super.recycle(channel, packet);
+        cancelled = false;
+    }
+
     @Override
     public boolean isCancelled() {
+        checkReleased();
         return cancelled;
     }
 
     @Override
     public void setCancelled(boolean value) {
+        checkReleased();
         cancelled = value;
     }
 }
@@ -19,10 +19,16 @@
 package io.github.retrooper.packetevents.event.eventtypes;
 
 import io.github.retrooper.packetevents.event.PacketEvent;
+import io.github.retrooper.packetevents.event.PacketFilterType;
+import io.github.retrooper.packetevents.packettype.PacketClassInfo;
 import io.github.retrooper.packetevents.packettype.PacketType;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
+import io.github.retrooper.packetevents.packetwrappers.PacketWrapperRegistry;
+import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
 import io.github.retrooper.packetevents.utils.netty.channel.ChannelUtils;
+import io.github.retrooper.packetevents.utils.player.User;
 import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetSocketAddress;
 
@@ -35,16 +41,62 @@ import java.net.InetSocketAddress;
  * @since 1.8
  */
 public abstract class NMSPacketEvent extends PacketEvent implements CallableEvent {
-    private final Object channel;
-    private final InetSocketAddress socketAddress;
-    private final byte packetID;
+    private Object channel;
+    private InetSocketAddress socketAddress;
+    private User user;
+    private byte packetID;
     protected NMSPacket packet;
+    private WrappedPacket wrapper;
+    private boolean released;
 
     public NMSPacketEvent(Object channel, NMSPacket packet) {
+        init(channel, packet);
+    }
+
+    private void init(Object channel, NMSPacket packet) {
         this.channel = channel;
-        this.socketAddress = ChannelUtils.getSocketAddress(channel);
+        //The socket address is resolved lazily, most listeners never need it.
+        this.socketAddress = null;
+        this.user = null;
         this.packet = packet;
-        packetID = PacketType.packetIDMap.getOrDefault(packet.getRawNMSPacket().getClass(), PacketType.INVALID);
+        this.wrapper = null;
+        packetID = PacketClassInfo.of(packet.getRawNMSPacket()).getPacketId();
+    }
+
+    /**
+     * Re-initialize this event for another packet.
+     * This is only used by the pooled event mode, do NOT call this method.
+     * Pooled events are recycled after every listener has processed them,
+     * listeners must not keep a reference to the event (or its NMS packet) after their method returns.
+     *
+     * @param channel Netty channel of the new packet.
+     * @param packet  The new NMS packet.
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#pooledEvents(boolean)
+     */
+    public void recycle(Object channel, NMSPacket packet) {
+        init(channel, packet);
+        setTimestamp(System.currentTimeMillis());
+        released = false;
+    }
+
+    /**
+     * Mark this event as released.
+     * Accessing the event after it has been released results in an {@link IllegalStateException}.
+     * This is only used by the pooled event debug mode, do NOT call this method.
+     */
+    public void release() {
+        released = true;
+    }
+
+    /**
+     * Make sure no listener is accessing this event after it has been released.
+     * This only ever fails if the pooled event debug mode is enabled.
+     */
+    protected final void checkReleased() {
+        if (released) {
+            throw new IllegalStateException("A packet listener accessed a pooled " + getClass().getSimpleName()
+                    + " after it was recycled. Do not keep references to pooled events once your listener method returns!");
+        }
     }
 
     /**
@@ -53,14 +105,43 @@ public abstract class NMSPacketEvent extends PacketEvent implements CallableEven
      * @return Socket address of the associated player.
      */
     public final InetSocketAddress getSocketAddress() {
+        checkReleased();
+        if (socketAddress == null) {
+            socketAddress = ChannelUtils.getSocketAddress(channel);
+        }
         return socketAddress;
     }
 
+    /**
+     * Get the connection state of the associated channel.
+     * Store your per-connection data in the user's attachment slots instead of your own maps.
+     *
+     * @return User, null if PacketEvents hasn't injected the channel.
+     * @see User#get(io.github.retrooper.packetevents.utils.player.UserKey)
+     */
+    public User getUser() {
+        checkReleased();
+        if (user == null) {
+            user = ChannelUtils.getUser(channel);
+        }
+        return user;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param user Connection state of the associated channel.
+     */
+    public void setUser(User user) {
+        this.user = user;
+    }
+
     /**
      * Get the associated player's netty channel.
      * @return Netty channel
      */
     public Object getChannel() {
+        checkReleased();
         return channel;
     }
 
@@ -86,6 +167,7 @@ public abstract class NMSPacketEvent extends PacketEvent implements CallableEven
      * @return Get NMS packet.
      */
     public final NMSPacket getNMSPacket() {
+        checkReleased();
         return packet;
     }
 
@@ -95,7 +177,31 @@ public abstract class NMSPacketEvent extends PacketEvent implements CallableEven
      * @param packet NMS Object
      */
     public final void setNMSPacket(NMSPacket packet) {
+        checkReleased();
         this.packet = packet;
+        //The shared wrapper belongs to the previous packet.
+        this.wrapper = null;
+    }
+
+    /**
+     * Get the packet wrapper of the packet.
+     * The wrapper is constructed the first time a listener asks for it and then shared by every other listener,
+     * so the fields it has already decoded don't have to be read again.
+     * Modify the packet through this wrapper, so the listeners after you see your modifications.
+     * <pre>{@code WrappedPacketInFlying flying = event.getWrapper();}</pre>
+     *
+     * @param <T> Type of the packet wrapper.
+     * @return Shared packet wrapper, null if no wrapper is registered for the packet ID.
+     * @see PacketWrapperRegistry
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T extends WrappedPacket> T getWrapper() {
+        checkReleased();
+        if (wrapper == null) {
+            wrapper = PacketWrapperRegistry.wrap(packetID, packet);
+        }
+        return (T) wrapper;
     }
 
     /**
@@ -104,9 +210,20 @@ public abstract class NMSPacketEvent extends PacketEvent implements CallableEven
      * @return Packet ID.
      */
     public byte getPacketId() {
+        checkReleased();
         return packetID;
     }
 
+    /**
+     * Get the packet filter this event is dispatched through.
+     * The event manager only passes this event to listeners whose filter allows the packet ID.
+     *
+     * @return Packet filter type, null if every listener should process this event.
+     */
+    public PacketFilterType getFilterType() {
+        return null;
+    }
+
     @Override
     public boolean isInbuilt() {
         return true;
@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
@@ -35,10 +36,21 @@ public class PacketConfigReceiveEvent extends CancellableNMSPacketEvent {
         super(channel, packet);
     }
 
+    @Override
+    public PacketConfigReceiveEvent copy() {
+        PacketConfigReceiveEvent copy = new PacketConfigReceiveEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedLoginAllowance == null || listener.clientSidedLoginAllowance.contains(getPacketId())) {
-            listener.onPacketConfigReceive(this);
-        }
+        listener.onPacketConfigReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.CLIENT_SIDED_LOGIN;
     }
 }
@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.event.eventtypes.PostTaskEvent;
@@ -53,10 +54,21 @@ public class PacketConfigSendEvent extends CancellableNMSPacketEvent implements
         this.postTask = postTask;
     }
 
+    @Override
+    public PacketConfigSendEvent copy() {
+        PacketConfigSendEvent copy = new PacketConfigSendEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.serverSidedLoginAllowance == null || listener.serverSidedLoginAllowance.contains(getPacketId())) {
-            listener.onPacketConfigSend(this);
-        }
+        listener.onPacketConfigSend(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.SERVER_SIDED_LOGIN;
     }
 }
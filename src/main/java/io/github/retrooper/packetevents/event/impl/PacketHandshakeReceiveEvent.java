@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
@@ -34,15 +35,32 @@ import java.net.InetSocketAddress;
  * @since 1.8
  */
 public class PacketHandshakeReceiveEvent extends CancellableNMSPacketEvent {
+    /**
+     * Packet filter handshake events are dispatched through.
+     * Handshake packets have always been filtered with the client-sided login filter.
+     */
+    public static final PacketFilterType FILTER_TYPE = PacketFilterType.CLIENT_SIDED_LOGIN;
+
     public PacketHandshakeReceiveEvent(Object channel, NMSPacket packet) {
         super(channel, packet);
     }
 
+    @Override
+    public PacketHandshakeReceiveEvent copy() {
+        PacketHandshakeReceiveEvent copy = new PacketHandshakeReceiveEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedLoginAllowance == null || listener.clientSidedLoginAllowance.contains(getPacketId())) {
-            listener.onPacketHandshakeReceive(this);
-        }
+        listener.onPacketHandshakeReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return FILTER_TYPE;
     }
 }
 
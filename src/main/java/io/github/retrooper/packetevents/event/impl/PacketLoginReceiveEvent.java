@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
@@ -38,10 +39,21 @@ public class PacketLoginReceiveEvent extends CancellableNMSPacketEvent {
         super(channel, packet);
     }
 
+    @Override
+    public PacketLoginReceiveEvent copy() {
+        PacketLoginReceiveEvent copy = new PacketLoginReceiveEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedLoginAllowance == null || listener.clientSidedLoginAllowance.contains(getPacketId())) {
-            listener.onPacketLoginReceive(this);
-        }
+        listener.onPacketLoginReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.CLIENT_SIDED_LOGIN;
     }
 }
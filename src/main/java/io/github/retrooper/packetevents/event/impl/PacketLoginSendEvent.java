@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.event.eventtypes.PostTaskEvent;
@@ -56,10 +57,21 @@ public class PacketLoginSendEvent extends CancellableNMSPacketEvent implements P
         this.postTask = postTask;
     }
 
+    @Override
+    public PacketLoginSendEvent copy() {
+        PacketLoginSendEvent copy = new PacketLoginSendEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.serverSidedLoginAllowance == null || listener.serverSidedLoginAllowance.contains(getPacketId())) {
-            listener.onPacketLoginSend(this);
-        }
+        listener.onPacketLoginSend(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.SERVER_SIDED_LOGIN;
     }
 }
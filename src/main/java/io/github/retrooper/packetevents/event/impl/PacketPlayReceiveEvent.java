@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.event.eventtypes.PlayerEvent;
@@ -36,13 +37,26 @@ import org.jetbrains.annotations.NotNull;
  * @since 1.2.6
  */
 public final class PacketPlayReceiveEvent extends CancellableNMSPacketEvent implements PlayerEvent {
-    private final Player player;
+    private Player player;
 
     public PacketPlayReceiveEvent(Player player, Object channel, NMSPacket packet) {
         super(channel, packet);
         this.player = player;
     }
 
+    /**
+     * Re-initialize this event for another packet.
+     * This is only used by the pooled event mode, do NOT call this method.
+     *
+     * @param player  Associated player.
+     * @param channel Netty channel of the new packet.
+     * @param packet  The new NMS packet.
+     */
+    public void recycle(Player player, Object channel, NMSPacket packet) {
+        this.player = player;
+        recycle(channel, packet);
+    }
+
     /**
      * This method returns the bukkit player object of the packet sender.
      * The player object might be null during early packets.
@@ -52,13 +66,25 @@ public final class PacketPlayReceiveEvent extends CancellableNMSPacketEvent impl
     @NotNull
     @Override
     public Player getPlayer() {
+        checkReleased();
         return player;
     }
 
+    @Override
+    public PacketPlayReceiveEvent copy() {
+        PacketPlayReceiveEvent copy = new PacketPlayReceiveEvent(getPlayer(), getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedPlayAllowance == null || listener.clientSidedPlayAllowance.contains(getPacketId())) {
-            listener.onPacketPlayReceive(this);
-        }
+        listener.onPacketPlayReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.CLIENT_SIDED_PLAY;
     }
 }
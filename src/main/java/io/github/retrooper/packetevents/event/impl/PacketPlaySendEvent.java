@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.event.eventtypes.PlayerEvent;
@@ -37,7 +38,7 @@ import org.jetbrains.annotations.Nullable;
  * @since 1.2.6
  */
 public final class PacketPlaySendEvent extends CancellableNMSPacketEvent implements PlayerEvent, PostTaskEvent {
-    private final Player player;
+    private Player player;
     private Runnable postTask;
 
     public PacketPlaySendEvent(final Player player, final Object channel, final NMSPacket packet) {
@@ -45,6 +46,20 @@ public final class PacketPlaySendEvent extends CancellableNMSPacketEvent impleme
         this.player = player;
     }
 
+    /**
+     * Re-initialize this event for another packet.
+     * This is only used by the pooled event mode, do NOT call this method.
+     *
+     * @param player  Associated player.
+     * @param channel Netty channel of the new packet.
+     * @param packet  The new NMS packet.
+     */
+    public void recycle(Player player, Object channel, NMSPacket packet) {
+        this.player = player;
+        this.postTask = null;
+        recycle(channel, packet);
+    }
+
     /**
      * This method returns the bukkit player object of the packet receiver.
      * The player object might be null during early packets.
@@ -54,29 +69,44 @@ public final class PacketPlaySendEvent extends CancellableNMSPacketEvent impleme
     @NotNull
     @Override
     public Player getPlayer() {
+        checkReleased();
         return player;
     }
 
     @Override
     public boolean isPostTaskAvailable() {
+        checkReleased();
         return postTask != null;
     }
 
     @Override
     public Runnable getPostTask() {
+        checkReleased();
         return postTask;
     }
 
     @Override
     public void setPostTask(@NotNull Runnable postTask) {
+        checkReleased();
         this.postTask = postTask;
     }
 
+    @Override
+    public PacketPlaySendEvent copy() {
+        PacketPlaySendEvent copy = new PacketPlaySendEvent(getPlayer(), getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.serverSidedPlayAllowance == null || listener.serverSidedPlayAllowance.contains(getPacketId())) {
-            listener.onPacketPlaySend(this);
-        }
+        listener.onPacketPlaySend(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.SERVER_SIDED_PLAY;
     }
 }
 
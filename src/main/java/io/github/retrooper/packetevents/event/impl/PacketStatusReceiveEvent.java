@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
@@ -38,10 +39,21 @@ public class PacketStatusReceiveEvent extends CancellableNMSPacketEvent {
         super(channel, packet);
     }
 
+    @Override
+    public PacketStatusReceiveEvent copy() {
+        PacketStatusReceiveEvent copy = new PacketStatusReceiveEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedStatusAllowance == null || listener.clientSidedStatusAllowance.contains(getPacketId())) {
-            listener.onPacketStatusReceive(this);
-        }
+        listener.onPacketStatusReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.CLIENT_SIDED_STATUS;
     }
 }
@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableEvent;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableNMSPacketEvent;
@@ -59,10 +60,21 @@ public class PacketStatusSendEvent extends CancellableNMSPacketEvent implements
         this.postTask = postTask;
     }
 
+    @Override
+    public PacketStatusSendEvent copy() {
+        PacketStatusSendEvent copy = new PacketStatusSendEvent(getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        copy.setCancelled(isCancelled());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.serverSidedStatusAllowance == null || listener.serverSidedStatusAllowance.contains(getPacketId())) {
-            listener.onPacketStatusSend(this);
-        }
+        listener.onPacketStatusSend(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.SERVER_SIDED_STATUS;
     }
 }
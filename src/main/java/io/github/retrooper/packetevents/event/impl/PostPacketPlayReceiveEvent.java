@@ -18,6 +18,7 @@
 
 package io.github.retrooper.packetevents.event.impl;
 
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent;
 import io.github.retrooper.packetevents.event.eventtypes.PlayerEvent;
@@ -34,13 +35,26 @@ import org.bukkit.entity.Player;
  * @since 1.7
  */
 public class PostPacketPlayReceiveEvent extends NMSPacketEvent implements PlayerEvent {
-    private final Player player;
+    private Player player;
 
     public PostPacketPlayReceiveEvent(final Player player, final Object channel, final NMSPacket packet) {
         super(channel, packet);
         this.player = player;
     }
 
+    /**
+     * Re-initialize this event for another packet.
+     * This is only used by the pooled event mode, do NOT call this method.
+     *
+     * @param player  Associated player.
+     * @param channel Netty channel of the new packet.
+     * @param packet  The new NMS packet.
+     */
+    public void recycle(Player player, Object channel, NMSPacket packet) {
+        this.player = player;
+        recycle(channel, packet);
+    }
+
     /**
      * This method returns the bukkit player object of the packet sender.
      *
@@ -48,13 +62,24 @@ public class PostPacketPlayReceiveEvent extends NMSPacketEvent implements Player
      */
     @Override
     public Player getPlayer() {
+        checkReleased();
         return player;
     }
 
+    @Override
+    public PostPacketPlayReceiveEvent copy() {
+        PostPacketPlayReceiveEvent copy = new PostPacketPlayReceiveEvent(getPlayer(), getChannel(), new NMSPacket(getNMSPacket().getRawNMSPacket()));
+        copy.setTimestamp(getTimestamp());
+        return copy;
+    }
+
     @Override
     public void call(PacketListenerAbstract listener) {
-        if (listener.clientSidedPlayAllowance == null || listener.clientSidedPlayAllowance.contains(getPacketId())) {
-            listener.onPostPacketPlayReceive(this);
-        }
+        listener.onPostPacketPlayReceive(this);
+    }
+
+    @Override
+    public PacketFilterType getFilterType() {
+        return PacketFilterType.CLIENT_SIDED_PLAY;
     }
 }
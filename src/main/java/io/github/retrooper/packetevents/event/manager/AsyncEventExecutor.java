@@ -0,0 +1,110 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.event.manager;
+
+import io.github.retrooper.packetevents.event.PacketEvent;
+import io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent;
+import io.github.retrooper.packetevents.event.eventtypes.PlayerEvent;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor of the asynchronous packet listeners.
+ * The executor consists of single threaded lanes, every netty channel (player) is always assigned to the same lane,
+ * so the events of one player are processed in the order they were dispatched in.
+ * Every lane has a bounded queue, if a lane falls behind, new events are dropped (and counted) instead of queued.
+ * Do NOT use this class, it is only meant to be used internally.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+final class AsyncEventExecutor {
+    private final ThreadPoolExecutor[] lanes;
+    private final LongAdder droppedEvents;
+
+    AsyncEventExecutor(int threads, int queueCapacity, LongAdder droppedEvents) {
+        this.droppedEvents = droppedEvents;
+        this.lanes = new ThreadPoolExecutor[Math.max(1, threads)];
+        for (int i = 0; i < lanes.length; i++) {
+            String threadName = "packetevents-async-listener-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                    task -> {
+                        Thread thread = new Thread(task, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (task, executor) -> droppedEvents.increment());
+        }
+    }
+
+    /**
+     * Queue a task on the lane of the event's channel.
+     *
+     * @param event Event the task processes.
+     * @param task  Task.
+     */
+    void execute(PacketEvent event, Runnable task) {
+        lanes[laneIndex(getKey(event))].execute(task);
+    }
+
+    /**
+     * Amount of tasks waiting to be processed.
+     *
+     * @return Queued tasks.
+     */
+    int getQueuedEvents() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        return queued;
+    }
+
+    /**
+     * Stop accepting tasks, the queued tasks will still be processed.
+     */
+    void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private int laneIndex(Object key) {
+        if (key == null || lanes.length == 1) {
+            return 0;
+        }
+        int hash = System.identityHashCode(key);
+        //Spread the bits, identity hash codes aren't necessarily uniform in their lower bits
+        hash ^= hash >>> 16;
+        return (hash & 0x7FFFFFFF) % lanes.length;
+    }
+
+    private static Object getKey(PacketEvent event) {
+        if (event instanceof NMSPacketEvent) {
+            return ((NMSPacketEvent) event).getChannel();
+        } else if (event instanceof PlayerEvent) {
+            return ((PlayerEvent) event).getPlayer();
+        }
+        return null;
+    }
+}
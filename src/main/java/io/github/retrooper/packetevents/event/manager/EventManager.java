@@ -20,6 +20,7 @@ package io.github.retrooper.packetevents.event.manager;
 
 import io.github.retrooper.packetevents.PacketEvents;
 import io.github.retrooper.packetevents.event.PacketEvent;
+import io.github.retrooper.packetevents.event.PacketFilterType;
 import io.github.retrooper.packetevents.event.PacketListener;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.PacketListenerDynamic;
@@ -180,6 +181,53 @@ public interface EventManager {
         return this;
     }
 
+    /**
+     * Recompile the packet filters of a registered PacketListenerAbstract listener.
+     * The filter methods of the {@link PacketListenerAbstract} already do this for you,
+     * you only need this if you directly modified the allowance sets of a registered listener.
+     *
+     * @param listener {@link PacketListenerAbstract}
+     * @return Same event manager instance.
+     */
+    default EventManager updateListenerFilters(PacketListenerAbstract listener) {
+        if (listener != null) {
+            PEEventManager.EVENT_MANAGER_MODERN.updateListenerFilters(listener);
+        }
+        return this;
+    }
+
+    /**
+     * Check if any registered listener would process a packet event.
+     * PacketEvents uses this to avoid constructing events nobody is listening to.
+     *
+     * @param filterType Packet filter type of the event.
+     * @param packetID   Packet ID.
+     * @return Is any listener interested in the packet?
+     */
+    default boolean hasListeners(PacketFilterType filterType, byte packetID) {
+        return PEEventManager.EVENT_MANAGER_MODERN.hasListeners(filterType, packetID);
+    }
+
+    /**
+     * Amount of events the asynchronous listeners didn't process, because they couldn't keep up.
+     *
+     * @return Dropped events.
+     * @see PacketListenerAbstract#isAsync()
+     */
+    default long getDroppedAsyncEvents() {
+        return PEEventManager.EVENT_MANAGER_MODERN.getDroppedAsyncEvents();
+    }
+
+    /**
+     * Amount of events waiting to be processed by the asynchronous listeners.
+     *
+     * @return Queued events.
+     * @see PacketListenerAbstract#isAsync()
+     */
+    default int getQueuedAsyncEvents() {
+        return PEEventManager.EVENT_MANAGER_MODERN.getQueuedAsyncEvents();
+    }
+
     /**
      * Unregister all registered event listeners.
      * All the deprecated and the dynamic listeners will be unregistered.
@@ -89,6 +89,16 @@ class EventManagerLegacy {
         }
     }
 
+    /**
+     * Check if any legacy packet event listener has been registered.
+     *
+     * @return Are there any legacy listeners?
+     */
+    @Deprecated
+    public boolean hasListeners() {
+        return !staticRegisteredMethods.isEmpty();
+    }
+
     /**
      * Register a legacy packet event listener.
      * Not recommended to use the deprecated event listener.
@@ -20,18 +20,44 @@ package io.github.retrooper.packetevents.event.manager;
 
 import io.github.retrooper.packetevents.PacketEvents;
 import io.github.retrooper.packetevents.event.PacketEvent;
+import io.github.retrooper.packetevents.event.PacketFilterType;
+import io.github.retrooper.packetevents.event.PacketIDFilter;
 import io.github.retrooper.packetevents.event.PacketListenerAbstract;
 import io.github.retrooper.packetevents.event.eventtypes.CancellableEvent;
+import io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent;
 import io.github.retrooper.packetevents.event.priority.PacketEventPriority;
 import io.github.retrooper.packetevents.event.PacketListenerPriority;
+import io.github.retrooper.packetevents.settings.PacketEventsSettings;
+import io.github.retrooper.packetevents.utils.metrics.PacketMetrics;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 class EventManagerModern {
-    private final Map<Byte, HashSet<PacketListenerAbstract>> listenersMap = new ConcurrentHashMap<>();
+    private final Set<PacketListenerAbstract> listeners = new LinkedHashSet<>();
+    /**
+     * Precompiled dispatch table.
+     * This is rebuilt whenever listeners are registered or unregistered (copy-on-write),
+     * so calling an event never has to lock or check any packet ID allowances.
+     */
+    private volatile DispatchTable dispatchTable = DispatchTable.EMPTY;
+    /**
+     * Precompiled dispatch table of the asynchronous listeners.
+     */
+    private volatile DispatchTable asyncDispatchTable = DispatchTable.EMPTY;
+    /**
+     * Executor of the asynchronous listeners.
+     * This is only running while asynchronous listeners are registered.
+     */
+    private volatile AsyncEventExecutor asyncExecutor;
+    private final LongAdder droppedAsyncEvents = new LongAdder();
 
     /**
      * Call the PacketEvent.
@@ -39,33 +65,123 @@ class EventManagerModern {
      * The {@link PacketEventPriority#LOWEST} prioritized listeners will be processing first,
      * the {@link PacketEventPriority#MONITOR} will be processing last and can
      * be the final decider whether the event has been cancelled or not.
+     * Packet events are only processed by the listeners that allow their packet ID.
      * This call event also calls the legacy event manager call event.
+     * Once the synchronous listeners are done, the event is queued for the asynchronous listeners.
      *
      * @param event {@link PacketEvent}
      * @see EventManagerLegacy#callEvent(PacketEvent, byte)
      */
     public void callEvent(final PacketEvent event) {
+        PacketListenerAbstract[] eventListeners = dispatchTable.getListeners(event);
         byte highestReachedPriority = (byte) (PacketListenerPriority.LOWEST.getId() - 1);
-        for (byte priority = PacketListenerPriority.LOWEST.getId(); priority <= PacketListenerPriority.MONITOR.getId(); priority++) {
-            HashSet<PacketListenerAbstract> listeners = listenersMap.get(priority);
-            if (listeners != null) {
-                for (PacketListenerAbstract listener : listeners) {
-                    try {
-                        event.call(listener);
-                    } catch (Exception ex) {
-                        PacketEvents.get().getPlugin().getLogger()
-                                .log(Level.SEVERE, "PacketEvents found an exception while calling a packet listener.", ex);
-                    }
-                    //TODO Remove, because its redundant. We are only keeping it for compatibility with the legacy event manager.
-                    if (event instanceof CancellableEvent) {
-                        if (priority > highestReachedPriority) {
-                            highestReachedPriority = priority;
-                        }
-                    }
+        PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+        if (metrics.isEnabled()) {
+            callListenersRecorded(event, eventListeners, metrics);
+        } else {
+            for (PacketListenerAbstract listener : eventListeners) {
+                callListener(event, listener);
+            }
+        }
+        //TODO Remove, because its redundant. We are only keeping it for compatibility with the legacy event manager.
+        if (event instanceof CancellableEvent && eventListeners.length != 0) {
+            //The listeners are sorted by their priority, so the last one has reached the highest priority.
+            highestReachedPriority = eventListeners[eventListeners.length - 1].getPriority().getId();
+        }
+        if (PEEventManager.EVENT_MANAGER_LEGACY.hasListeners()) {
+            PEEventManager.EVENT_MANAGER_LEGACY.callEvent(event, highestReachedPriority);
+        }
+        PacketListenerAbstract[] asyncListeners = asyncDispatchTable.getListeners(event);
+        if (asyncListeners.length != 0) {
+            callEventAsync(event, asyncListeners);
+        }
+    }
+
+    /**
+     * Queue the event for the asynchronous listeners.
+     * They process a copy of the event, as the event might be modified or recycled once it has been dispatched.
+     * If the event's lane is full, the event is dropped.
+     *
+     * @param event          {@link PacketEvent}
+     * @param asyncListeners Asynchronous listeners that should process the event.
+     */
+    private void callEventAsync(final PacketEvent event, PacketListenerAbstract[] asyncListeners) {
+        AsyncEventExecutor executor = asyncExecutor;
+        if (executor == null) {
+            droppedAsyncEvents.increment();
+            return;
+        }
+        PacketEvent copy = event.copy();
+        executor.execute(copy, () -> {
+            PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+            if (metrics.isEnabled()) {
+                callListenersRecorded(copy, asyncListeners, metrics);
+            } else {
+                for (PacketListenerAbstract listener : asyncListeners) {
+                    callListener(copy, listener);
                 }
             }
+        });
+    }
+
+    /**
+     * Amount of events the asynchronous listeners didn't process, because they fell behind.
+     *
+     * @return Dropped events.
+     */
+    public long getDroppedAsyncEvents() {
+        return droppedAsyncEvents.sum();
+    }
+
+    /**
+     * Amount of events waiting to be processed by the asynchronous listeners.
+     *
+     * @return Queued events.
+     */
+    public int getQueuedAsyncEvents() {
+        AsyncEventExecutor executor = asyncExecutor;
+        return executor == null ? 0 : executor.getQueuedEvents();
+    }
+
+    /**
+     * Process the event on the listeners and record the time each listener spent processing it.
+     *
+     * @param event          {@link PacketEvent}
+     * @param eventListeners Listeners that should process the event.
+     * @param metrics        Packet metrics recorder.
+     */
+    private void callListenersRecorded(final PacketEvent event, PacketListenerAbstract[] eventListeners, PacketMetrics metrics) {
+        CancellableEvent cancellableEvent = event instanceof CancellableEvent ? (CancellableEvent) event : null;
+        for (PacketListenerAbstract listener : eventListeners) {
+            boolean wasCancelled = cancellableEvent != null && cancellableEvent.isCancelled();
+            long start = System.nanoTime();
+            callListener(event, listener);
+            long nanos = System.nanoTime() - start;
+            metrics.recordListener(listener, nanos, !wasCancelled && cancellableEvent != null && cancellableEvent.isCancelled());
+        }
+    }
+
+    private void callListener(final PacketEvent event, PacketListenerAbstract listener) {
+        try {
+            event.call(listener);
+        } catch (Exception ex) {
+            PacketEvents.get().getPlugin().getLogger()
+                    .log(Level.SEVERE, "PacketEvents found an exception while calling a packet listener.", ex);
         }
-        PEEventManager.EVENT_MANAGER_LEGACY.callEvent(event, highestReachedPriority);
+    }
+
+    /**
+     * Check if any listener would process a packet event.
+     * This can be used to avoid constructing events nobody is listening to.
+     *
+     * @param filterType Packet filter type of the event.
+     * @param packetID   Packet ID.
+     * @return Is any dynamic or legacy listener interested in the packet?
+     */
+    public boolean hasListeners(PacketFilterType filterType, byte packetID) {
+        return dispatchTable.isInterested(filterType, packetID)
+                || asyncDispatchTable.isInterested(filterType, packetID)
+                || PEEventManager.EVENT_MANAGER_LEGACY.hasListeners();
     }
 
     /**
@@ -74,13 +190,10 @@ class EventManagerModern {
      * @param listener {@link PacketListenerAbstract}
      */
     public synchronized void registerListener(final PacketListenerAbstract listener) {
-        byte priority = listener.getPriority().getId();
-        HashSet<PacketListenerAbstract> listenerSet = listenersMap.get(priority);
-        if (listenerSet == null) {
-            listenerSet = new HashSet<>();
+        if (listeners.add(listener)) {
+            PacketEvents.get().getPacketMetrics().addListener(listener);
+            rebuildDispatchTable();
         }
-        listenerSet.add(listener);
-        listenersMap.put(priority, listenerSet);
     }
 
     /**
@@ -90,8 +203,11 @@ class EventManagerModern {
      */
     public synchronized void registerListeners(PacketListenerAbstract... listeners) {
         for (PacketListenerAbstract listener : listeners) {
-            registerListener(listener);
+            if (listener != null && this.listeners.add(listener)) {
+                PacketEvents.get().getPacketMetrics().addListener(listener);
+            }
         }
+        rebuildDispatchTable();
     }
 
     /**
@@ -100,10 +216,9 @@ class EventManagerModern {
      * @param listener {@link PacketListenerAbstract}
      */
     public synchronized void unregisterListener(final PacketListenerAbstract listener) {
-        byte priority = listener.getPriority().getId();
-        HashSet<PacketListenerAbstract> listenerSet = listenersMap.get(priority);
-        if (listenerSet != null) {
-            listenerSet.remove(listener);
+        if (listeners.remove(listener)) {
+            rebuildDispatchTable();
+            PacketEvents.get().getPacketMetrics().removeListener(listener);
         }
     }
 
@@ -113,8 +228,10 @@ class EventManagerModern {
      * @param listeners {@link PacketListenerAbstract}
      */
     public synchronized void unregisterListeners(PacketListenerAbstract... listeners) {
+        this.listeners.removeAll(Arrays.asList(listeners));
+        rebuildDispatchTable();
         for (PacketListenerAbstract listener : listeners) {
-            unregisterListener(listener);
+            PacketEvents.get().getPacketMetrics().removeListener(listener);
         }
     }
 
@@ -122,6 +239,133 @@ class EventManagerModern {
      * Unregister all dynamic packet event listeners.
      */
     public synchronized void unregisterAllListeners() {
-        listenersMap.clear();
+        List<PacketListenerAbstract> removedListeners = new ArrayList<>(listeners);
+        listeners.clear();
+        rebuildDispatchTable();
+        for (PacketListenerAbstract listener : removedListeners) {
+            PacketEvents.get().getPacketMetrics().removeListener(listener);
+        }
+    }
+
+    /**
+     * Recompile the packet filters of a registered listener.
+     * This has to be called after the filters of a registered listener have been modified.
+     *
+     * @param listener {@link PacketListenerAbstract}
+     */
+    public synchronized void updateListenerFilters(final PacketListenerAbstract listener) {
+        if (listeners.contains(listener)) {
+            rebuildDispatchTable();
+        }
+    }
+
+    private void rebuildDispatchTable() {
+        List<PacketListenerAbstract> syncListeners = new ArrayList<>(listeners.size());
+        List<PacketListenerAbstract> asyncListeners = new ArrayList<>();
+        for (PacketListenerAbstract listener : listeners) {
+            (listener.isAsync() ? asyncListeners : syncListeners).add(listener);
+        }
+        //Start the executor before anyone can queue events, and stop it once nobody can queue events anymore.
+        if (!asyncListeners.isEmpty() && asyncExecutor == null) {
+            PacketEventsSettings settings = PacketEvents.get().getSettings();
+            asyncExecutor = new AsyncEventExecutor(settings.getAsyncListenerThreads(),
+                    settings.getAsyncListenerQueueCapacity(), droppedAsyncEvents);
+        }
+        dispatchTable = syncListeners.isEmpty() ? DispatchTable.EMPTY : new DispatchTable(syncListeners);
+        asyncDispatchTable = asyncListeners.isEmpty() ? DispatchTable.EMPTY : new DispatchTable(asyncListeners);
+        if (asyncListeners.isEmpty() && asyncExecutor != null) {
+            asyncExecutor.shutdown();
+            asyncExecutor = null;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the registered listeners.
+     * Packet events are looked up by their filter type and their packet ID,
+     * every entry is already sorted by listener priority.
+     */
+    private static final class DispatchTable {
+        private static final PacketListenerAbstract[] NO_LISTENERS = new PacketListenerAbstract[0];
+        private static final DispatchTable EMPTY = new DispatchTable();
+        private final PacketListenerAbstract[] allListeners;
+        //Indexed by the filter type ordinal and the unsigned packet ID
+        private final PacketListenerAbstract[][][] filteredListeners;
+        //Aggregated interest of all listeners per filter type
+        private final PacketIDFilter[] interest;
+
+        private DispatchTable() {
+            allListeners = NO_LISTENERS;
+            filteredListeners = new PacketListenerAbstract[PacketFilterType.values().length][256][];
+            interest = new PacketIDFilter[PacketFilterType.values().length];
+            for (PacketListenerAbstract[][] listenersByID : filteredListeners) {
+                Arrays.fill(listenersByID, NO_LISTENERS);
+            }
+            for (int i = 0; i < interest.length; i++) {
+                interest[i] = new PacketIDFilter();
+            }
+        }
+
+        private DispatchTable(Collection<PacketListenerAbstract> listeners) {
+            List<PacketListenerAbstract> sortedListeners = new ArrayList<>(listeners);
+            //This sort is stable, listeners of the same priority stay in the order they were registered in.
+            sortedListeners.sort(Comparator.comparingInt(listener -> listener.getPriority().getId()));
+            allListeners = sortedListeners.toArray(NO_LISTENERS);
+            PacketFilterType[] filterTypes = PacketFilterType.values();
+            filteredListeners = new PacketListenerAbstract[filterTypes.length][256][];
+            interest = new PacketIDFilter[filterTypes.length];
+            List<PacketListenerAbstract> allowedListeners = new ArrayList<>(allListeners.length);
+            PacketIDFilter[] allowances = new PacketIDFilter[allListeners.length];
+            for (PacketFilterType filterType : filterTypes) {
+                PacketListenerAbstract[][] listenersByID = filteredListeners[filterType.ordinal()];
+                PacketIDFilter interestFilter = new PacketIDFilter();
+                interest[filterType.ordinal()] = interestFilter;
+                for (int i = 0; i < allListeners.length; i++) {
+                    allowances[i] = allListeners[i].getPacketIDFilter(filterType);
+                }
+                for (int index = 0; index < 256; index++) {
+                    byte packetID = (byte) index;
+                    allowedListeners.clear();
+                    for (int i = 0; i < allListeners.length; i++) {
+                        PacketIDFilter allowance = allowances[i];
+                        if (allowance == null || allowance.contains(packetID)) {
+                            allowedListeners.add(allListeners[i]);
+                        }
+                    }
+                    //Share the arrays we can share, most packet IDs end up with the same listeners.
+                    if (allowedListeners.isEmpty()) {
+                        listenersByID[index] = NO_LISTENERS;
+                    } else if (allowedListeners.size() == allListeners.length) {
+                        listenersByID[index] = allListeners;
+                    } else {
+                        listenersByID[index] = allowedListeners.toArray(NO_LISTENERS);
+                    }
+                    if (!allowedListeners.isEmpty()) {
+                        interestFilter.add(packetID);
+                    }
+                }
+            }
+        }
+
+        private boolean isInterested(PacketFilterType filterType, byte packetID) {
+            if (filterType == null) {
+                return allListeners.length != 0;
+            }
+            return interest[filterType.ordinal()].contains(packetID);
+        }
+
+        private PacketListenerAbstract[] getListeners(PacketFilterType filterType, byte packetID) {
+            if (filterType == null) {
+                return allListeners;
+            }
+            return filteredListeners[filterType.ordinal()][packetID & 0xFF];
+        }
+
+        private PacketListenerAbstract[] getListeners(PacketEvent event) {
+            if (event instanceof NMSPacketEvent) {
+                NMSPacketEvent packetEvent = (NMSPacketEvent) event;
+                return getListeners(packetEvent.getFilterType(), packetEvent.getPacketId());
+            }
+            return allListeners;
+        }
     }
-}
\ No newline at end of file
+}
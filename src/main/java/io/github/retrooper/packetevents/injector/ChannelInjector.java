@@ -20,6 +20,8 @@ package io.github.retrooper.packetevents.injector;
 
 import org.bukkit.entity.Player;
 
+import java.util.List;
+
 public interface ChannelInjector {
     default boolean isBound() {
         return true;
@@ -40,4 +42,13 @@ public interface ChannelInjector {
     void flushPackets(Object channel);
 
     void sendPacket(Object channel, Object rawNMSPacket);
+
+    /**
+     * Send multiple packets to a channel.
+     * The packets are written in a single event loop task and only flushed once.
+     *
+     * @param channel       Netty channel.
+     * @param rawNMSPackets Raw NMS packets, this list must not be modified after it has been passed.
+     */
+    void sendPackets(Object channel, List<Object> rawNMSPackets);
 }
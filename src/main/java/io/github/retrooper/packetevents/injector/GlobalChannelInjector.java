@@ -28,6 +28,8 @@ import io.github.retrooper.packetevents.injector.modern.late.LateChannelInjector
 import io.github.retrooper.packetevents.utils.nms.NMSUtils;
 import org.bukkit.entity.Player;
 
+import java.util.List;
+
 public class GlobalChannelInjector {
     private ChannelInjector injector;
 
@@ -95,4 +97,8 @@ public class GlobalChannelInjector {
     public void sendPacket(Object ch, Object rawNMSPacket) {
         injector.sendPacket(ch, rawNMSPacket);
     }
+
+    public void sendPackets(Object ch, List<Object> rawNMSPackets) {
+        injector.sendPackets(ch, rawNMSPackets);
+    }
 }
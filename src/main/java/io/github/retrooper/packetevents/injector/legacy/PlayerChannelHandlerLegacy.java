@@ -19,7 +19,9 @@
 package io.github.retrooper.packetevents.injector.legacy;
 
 import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.packettype.PacketState;
 import io.github.retrooper.packetevents.processor.PacketProcessorInternal;
+import io.github.retrooper.packetevents.utils.player.User;
 import net.minecraft.util.io.netty.buffer.ByteBuf;
 import net.minecraft.util.io.netty.channel.ChannelDuplexHandler;
 import net.minecraft.util.io.netty.channel.ChannelHandler;
@@ -33,13 +35,65 @@ public class PlayerChannelHandlerLegacy extends ChannelDuplexHandler {
      * This is null until we inject the player.
      */
     public volatile Player player;
+    /**
+     * Connection state of the channel.
+     * This is null until the handler has been added to the pipeline.
+     */
+    public volatile User user;
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        super.handlerAdded(ctx);
+        if (user == null) {
+            user = new User(ctx.channel());
+        }
+        if (player != null) {
+            user.setPlayer(player);
+            //We only inject players this late once they are playing.
+            if (user.getState() == null) {
+                user.setState(PacketState.PLAY);
+            }
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        //Free the connection state, even if the connection never became a player.
+        User user = this.user;
+        if (user != null) {
+            user.close();
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        User user = this.user;
+        if (user != null && ctx.channel().isWritable() && PacketEvents.get().getPlayerUtils().isOutboundScheduling()) {
+            //Write the packets that have been queued while the client couldn't keep up.
+            user.getOutboundScheduler().drain();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
 
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object packet) throws Exception {
-        PacketProcessorInternal.PacketData data = PacketEvents.get().getInternalPacketProcessor().read(player, ctx.channel(), packet);
-        if (data.packet != null) {
-            super.channelRead(ctx, data.packet);
-            PacketEvents.get().getInternalPacketProcessor().postRead(player, ctx.channel(), data.packet);
+        PacketEvents.get().getInternalPacketProcessor().recordRead(user, player, packet);
+        if (PacketEvents.get().getInternalPacketProcessor().isRateLimited(user, player, packet)) {
+            //The client is spamming this packet.
+            return;
+        }
+        if (!PacketEvents.get().getInternalPacketProcessor().isReadProcessed(user, player, packet)) {
+            //Nobody is interested in this packet.
+            super.channelRead(ctx, packet);
+            return;
+        }
+        PacketProcessorInternal.PacketData data = PacketEvents.get().getInternalPacketProcessor().read(user, player, ctx.channel(), packet);
+        //The packet data might be recycled, so we read it right away.
+        Object processedPacket = data.packet;
+        if (processedPacket != null) {
+            super.channelRead(ctx, processedPacket);
+            PacketEvents.get().getInternalPacketProcessor().postRead(user, player, ctx.channel(), processedPacket);
         }
     }
 
@@ -50,15 +104,24 @@ public class PlayerChannelHandlerLegacy extends ChannelDuplexHandler {
             super.write(ctx, packet, promise);
             return;
         }
-        PacketProcessorInternal.PacketData data = PacketEvents.get().getInternalPacketProcessor().write(player, ctx.channel(), packet);
-        if (data.postAction != null) {
+        PacketEvents.get().getInternalPacketProcessor().recordWrite(user, player, packet);
+        if (!PacketEvents.get().getInternalPacketProcessor().isWriteProcessed(user, player, packet)) {
+            //Nobody is interested in this packet.
+            super.write(ctx, packet, promise);
+            return;
+        }
+        PacketProcessorInternal.PacketData data = PacketEvents.get().getInternalPacketProcessor().write(user, player, ctx.channel(), packet);
+        //The packet data might be recycled, so we read it right away.
+        Object processedPacket = data.packet;
+        Runnable postAction = data.postAction;
+        if (postAction != null) {
             promise.addListener(f -> {
-                data.postAction.run();
+                postAction.run();
             });
         }
-        if (data.packet != null) {
-            super.write(ctx, data.packet, promise);
-            PacketEvents.get().getInternalPacketProcessor().postWrite(player, ctx.channel(), data.packet);
+        if (processedPacket != null) {
+            super.write(ctx, processedPacket, promise);
+            PacketEvents.get().getInternalPacketProcessor().postWrite(user, player, ctx.channel(), processedPacket);
         }
     }
 }
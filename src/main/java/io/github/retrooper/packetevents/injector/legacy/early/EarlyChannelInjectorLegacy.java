@@ -313,6 +313,30 @@ public class EarlyChannelInjectorLegacy implements EarlyInjector {
         channel.writeAndFlush(rawNMSPacket);
     }
 
+    @Override
+    public void sendPackets(Object ch, List<Object> rawNMSPackets) {
+        Channel channel = (Channel) ch;
+        //Don't send packets to fake channels
+        if (channel == null || ClassUtil.getClassSimpleName(channel.getClass()).equals("FakeChannel")
+                || ClassUtil.getClassSimpleName(channel.getClass()).equals("SpoofedChannel")) {
+            return;
+        }
+        //Write all packets in one event loop task, so we only flush once
+        if (channel.eventLoop().inEventLoop()) {
+            for (Object rawNMSPacket : rawNMSPackets) {
+                channel.write(rawNMSPacket);
+            }
+            channel.flush();
+        } else {
+            channel.eventLoop().execute(() -> {
+                for (Object rawNMSPacket : rawNMSPackets) {
+                    channel.write(rawNMSPacket);
+                }
+                channel.flush();
+            });
+        }
+    }
+
     private PlayerChannelHandlerLegacy getHandler(Object rawChannel) {
         Channel channel = (Channel) rawChannel;
         ChannelHandler handler = channel.pipeline().get(PacketEvents.get().getHandlerName());
@@ -328,6 +352,9 @@ public class EarlyChannelInjectorLegacy implements EarlyInjector {
         PlayerChannelHandlerLegacy handler = getHandler(rawChannel);
         if (handler != null) {
             handler.player = player;
+            if (handler.user != null) {
+                handler.user.setPlayer(player);
+            }
         }
     }
 }
@@ -19,7 +19,9 @@
 package io.github.retrooper.packetevents.injector.legacy.early;
 
 import io.github.retrooper.packetevents.PacketEvents;
-import io.github.retrooper.packetevents.injector.legacy.PlayerChannelHandlerLegacy;
+import io.github.retrooper.packetevents.injector.legacy.HandshakeChannelHandlerLegacy;
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.utils.player.User;
 import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
 import io.github.retrooper.packetevents.utils.reflection.Reflection;
 import net.minecraft.util.io.netty.channel.Channel;
@@ -47,7 +49,11 @@ public class PEChannelInitializerLegacy extends ChannelInitializer<Channel> {
     @Override
     protected void initChannel(Channel channel) throws Exception {
         initChannelMethod.invoke(oldChannelInitializer, channel);
-        PlayerChannelHandlerLegacy channelHandler = new PlayerChannelHandlerLegacy();
+        //We inject the channel right away, so we can follow its protocol state from the handshake on.
+        User user = new User(channel);
+        user.setState(PacketState.HANDSHAKING);
+        //The full channel handler is only installed once the connection needs it.
+        HandshakeChannelHandlerLegacy channelHandler = new HandshakeChannelHandlerLegacy(user);
         if (channel == null || ClassUtil.getClassSimpleName(channel.getClass()).equals("FakeChannel")
                 || ClassUtil.getClassSimpleName(channel.getClass()).equals("SpoofedChannel")) {
             return;
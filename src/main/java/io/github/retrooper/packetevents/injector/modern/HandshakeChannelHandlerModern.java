@@ -0,0 +1,128 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.injector.modern;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.packettype.PacketClassInfo;
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.processor.PacketProcessorInternal;
+import io.github.retrooper.packetevents.utils.netty.channel.ChannelUtils;
+import io.github.retrooper.packetevents.utils.player.User;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Lightweight channel handler we install on every accepted connection.
+ * Most connections are server list pings (or bots), so we only process the handshake here
+ * and install the full {@link PlayerChannelHandlerModern} once the connection enters a state somebody is interested in.
+ * Status connections nobody listens to never get the full handler.
+ *
+ * @author retrooper
+ * @see PacketProcessorInternal#isStateProcessed(PacketState)
+ * @since 1.8
+ */
+public class HandshakeChannelHandlerModern extends ChannelDuplexHandler {
+    /**
+     * Connection state of the channel.
+     */
+    public final User user;
+
+    public HandshakeChannelHandlerModern(User user) {
+        this.user = user;
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        user.close();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object packet) throws Exception {
+        PacketProcessorInternal processor = PacketEvents.get().getInternalPacketProcessor();
+        PacketState state = user.getState();
+        if (state == PacketState.HANDSHAKING) {
+            if (processor.isStateProcessed(PacketState.HANDSHAKING)) {
+                //The full handler calls the handshake event.
+                PlayerChannelHandlerModern channelHandler = upgrade(ctx);
+                channelHandler.channelRead(ctx.pipeline().context(channelHandler), packet);
+                return;
+            }
+            processor.recordRead(user, null, packet);
+            PacketState nextState = processor.processHandshake(user, packet);
+            //Minecraft has to switch its protocol before the full handler sees the next packet.
+            super.channelRead(ctx, packet);
+            if (nextState != PacketState.STATUS
+                    || (!processor.isServerInfoCacheEnabled() && processor.isStateProcessed(PacketState.STATUS))) {
+                upgrade(ctx);
+            }
+            return;
+        }
+        processor.recordRead(user, null, packet);
+        if (state == PacketState.STATUS && PacketClassInfo.of(packet).getPacketId() == PacketType.Status.Client.START) {
+            byte[] serverInfo = processor.getCachedServerInfo();
+            if (serverInfo != null) {
+                //Answer the status request ourselves, minecraft never sees it.
+                ctx.writeAndFlush(Unpooled.wrappedBuffer(serverInfo));
+                return;
+            }
+        }
+        super.channelRead(ctx, packet);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object packet, ChannelPromise promise) throws Exception {
+        if (packet instanceof ByteBuf) {
+            //Ignore bytebufs!
+            super.write(ctx, packet, promise);
+            return;
+        }
+        PacketProcessorInternal processor = PacketEvents.get().getInternalPacketProcessor();
+        processor.recordWrite(user, null, packet);
+        if (user.getState() == PacketState.STATUS && processor.isServerInfoCacheEnabled()
+                && PacketClassInfo.of(packet).getPacketId() == PacketType.Status.Server.SERVER_INFO) {
+            Object encoded = ChannelUtils.encodePacket(ctx.channel(), packet);
+            if (encoded != null) {
+                ByteBuf buffer = (ByteBuf) encoded;
+                byte[] serverInfo = new byte[buffer.readableBytes()];
+                buffer.readBytes(serverInfo);
+                buffer.release();
+                processor.cacheServerInfo(serverInfo);
+            }
+        }
+        super.write(ctx, packet, promise);
+    }
+
+    /**
+     * Replace this handler with the full channel handler.
+     *
+     * @param ctx Channel handler context of this handler.
+     * @return The full channel handler.
+     */
+    private PlayerChannelHandlerModern upgrade(ChannelHandlerContext ctx) {
+        PlayerChannelHandlerModern channelHandler = new PlayerChannelHandlerModern();
+        channelHandler.user = user;
+        ctx.pipeline().replace(ctx.name(), PacketEvents.get().getHandlerName(), channelHandler);
+        return channelHandler;
+    }
+}
@@ -322,6 +322,30 @@ public class EarlyChannelInjectorModern implements EarlyInjector {
         channel.writeAndFlush(rawNMSPacket);
     }
 
+    @Override
+    public void sendPackets(Object ch, List<Object> rawNMSPackets) {
+        Channel channel = (Channel) ch;
+        //Don't send packets to fake channels
+        if (channel == null || ClassUtil.getClassSimpleName(channel.getClass()).equals("FakeChannel")
+                || ClassUtil.getClassSimpleName(channel.getClass()).equals("SpoofedChannel")) {
+            return;
+        }
+        //Write all packets in one event loop task, so we only flush once
+        if (channel.eventLoop().inEventLoop()) {
+            for (Object rawNMSPacket : rawNMSPackets) {
+                channel.write(rawNMSPacket);
+            }
+            channel.flush();
+        } else {
+            channel.eventLoop().execute(() -> {
+                for (Object rawNMSPacket : rawNMSPackets) {
+                    channel.write(rawNMSPacket);
+                }
+                channel.flush();
+            });
+        }
+    }
+
     private PlayerChannelHandlerModern getHandler(Object rawChannel) {
         Channel channel = (Channel) rawChannel;
         ChannelHandler handler = channel.pipeline().get(PacketEvents.get().getHandlerName());
@@ -337,6 +361,9 @@ public class EarlyChannelInjectorModern implements EarlyInjector {
         PlayerChannelHandlerModern handler = getHandler(rawChannel);
         if (handler != null) {
             handler.player = player;
+            if (handler.user != null) {
+                handler.user.setPlayer(player);
+            }
         }
     }
 }
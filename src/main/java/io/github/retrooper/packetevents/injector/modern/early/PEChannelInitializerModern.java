@@ -19,7 +19,9 @@
 package io.github.retrooper.packetevents.injector.modern.early;
 
 import io.github.retrooper.packetevents.PacketEvents;
-import io.github.retrooper.packetevents.injector.modern.PlayerChannelHandlerModern;
+import io.github.retrooper.packetevents.injector.modern.HandshakeChannelHandlerModern;
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.utils.player.User;
 import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
 import io.github.retrooper.packetevents.utils.reflection.Reflection;
 import io.netty.channel.Channel;
@@ -41,7 +43,11 @@ public class PEChannelInitializerModern extends ChannelInitializer<Channel> {
                 || ClassUtil.getClassSimpleName(channel.getClass()).equals("SpoofedChannel")) {
             return;
         }
-        PlayerChannelHandlerModern channelHandler = new PlayerChannelHandlerModern();
+        //We inject the channel right away, so we can follow its protocol state from the handshake on.
+        User user = new User(channel);
+        user.setState(PacketState.HANDSHAKING);
+        //The full channel handler is only installed once the connection needs it.
+        HandshakeChannelHandlerModern channelHandler = new HandshakeChannelHandlerModern(user);
         if (channel.pipeline().get("packet_handler") != null) {
             String handlerName = PacketEvents.get().getHandlerName();
             if (channel.pipeline().get(handlerName) != null) {
@@ -25,6 +25,8 @@ import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
 import io.netty.channel.Channel;
 import org.bukkit.entity.Player;
 
+import java.util.List;
+
 public class LateChannelInjectorModern implements LateInjector {
     @Override
     public void inject() {
@@ -98,4 +100,28 @@ public class LateChannelInjectorModern implements LateInjector {
         }
         channel.pipeline().writeAndFlush(packet);
     }
+
+    @Override
+    public void sendPackets(Object rawChannel, List<Object> rawNMSPackets) {
+        Channel channel = (Channel) rawChannel;
+        //Don't send packets to fake channels
+        if (channel == null || ClassUtil.getClassSimpleName(channel.getClass()).equals("FakeChannel")
+                || ClassUtil.getClassSimpleName(channel.getClass()).equals("SpoofedChannel")) {
+            return;
+        }
+        //Write all packets in one event loop task, so we only flush once
+        if (channel.eventLoop().inEventLoop()) {
+            for (Object rawNMSPacket : rawNMSPackets) {
+                channel.pipeline().write(rawNMSPacket);
+            }
+            channel.pipeline().flush();
+        } else {
+            channel.eventLoop().execute(() -> {
+                for (Object rawNMSPacket : rawNMSPackets) {
+                    channel.pipeline().write(rawNMSPacket);
+                }
+                channel.pipeline().flush();
+            });
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.packettype;
+
+import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Everything PacketEvents knows about an NMS packet class.
+ * The packet ID, protocol state and direction are resolved once per class and cached on the class itself
+ * with a {@link ClassValue}, so processing a packet doesn't involve any map lookups or class name comparisons.
+ * Make sure {@link PacketType#load()} has been called before resolving any packet class.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public final class PacketClassInfo {
+    private static final ClassValue<PacketClassInfo> CLASS_INFO = new ClassValue<PacketClassInfo>() {
+        @Override
+        protected PacketClassInfo computeValue(Class<?> type) {
+            return new PacketClassInfo(type);
+        }
+    };
+    private final byte packetID;
+    private final PacketState state;
+    private final boolean serverBound;
+
+    private PacketClassInfo(Class<?> packetClass) {
+        this.packetID = PacketType.packetIDMap.getOrDefault(packetClass, PacketType.INVALID);
+        //Prefer the class name, packets of the common protocol are shared by the CONFIG and PLAY state.
+        PacketState state = getStateByName(packetClass);
+        if (state == null && packetID != PacketType.INVALID) {
+            state = PacketType.getState(packetID);
+        }
+        this.state = state;
+        this.serverBound = packetID != PacketType.INVALID ? PacketType.isServerBound(packetID) : isServerBoundByName(packetClass);
+    }
+
+    /**
+     * Get the cached information of a packet class.
+     *
+     * @param packetClass NMS packet class.
+     * @return Packet class information.
+     */
+    public static PacketClassInfo get(Class<?> packetClass) {
+        return CLASS_INFO.get(packetClass);
+    }
+
+    /**
+     * Get the cached information of an NMS packet.
+     *
+     * @param rawNMSPacket NMS packet.
+     * @return Packet class information.
+     */
+    public static PacketClassInfo of(Object rawNMSPacket) {
+        return CLASS_INFO.get(rawNMSPacket.getClass());
+    }
+
+    @Nullable
+    private static PacketState getStateByName(Class<?> packetClass) {
+        String packetName = ClassUtil.getClassSimpleName(packetClass);
+        if (packetName.startsWith("PacketH")) {
+            return PacketState.HANDSHAKING;
+        } else if (packetName.startsWith("PacketL")) {
+            return PacketState.LOGIN;
+        } else if (packetName.startsWith("PacketS")) {
+            return PacketState.STATUS;
+        } else if (packetClass.getName().contains("protocol.common")) {
+            return PacketState.CONFIG;
+        }
+        return null;
+    }
+
+    private static boolean isServerBoundByName(Class<?> packetClass) {
+        String packetName = ClassUtil.getClassSimpleName(packetClass);
+        return packetName.startsWith("Serverbound") || packetName.matches("Packet[A-Z][a-z]*In.*");
+    }
+
+    /**
+     * Packet ID of the packet class.
+     *
+     * @return Packet ID, {@link PacketType#INVALID} if the packet class is unknown.
+     */
+    public byte getPacketId() {
+        return packetID;
+    }
+
+    /**
+     * Protocol state the packet class belongs to.
+     * Packets of the common protocol (1.20.2+) are used in the CONFIG and the PLAY state, they resolve to CONFIG.
+     *
+     * @return Protocol state, null if it is unknown.
+     */
+    @Nullable
+    public PacketState getState() {
+        return state;
+    }
+
+    /**
+     * Is the packet sent by the client?
+     *
+     * @return Is the packet server-bound?
+     */
+    public boolean isServerBound() {
+        return serverBound;
+    }
+}
@@ -20,7 +20,10 @@ package io.github.retrooper.packetevents.packettype;
 
 import io.github.retrooper.packetevents.PacketEvents;
 import io.github.retrooper.packetevents.utils.server.ServerVersion;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
@@ -40,6 +43,21 @@ public class PacketType {
     public static final byte INVALID = -128;
     public static final Map<Class<?>, Byte> packetIDMap = new IdentityHashMap<>();
     private static final boolean isNine = ServerVersion.getVersion().isNewerThanOrEquals(ServerVersion.v_1_9);
+    /**
+     * Protocol state and direction of every packet ID, indexed by the unsigned packet ID.
+     */
+    private static final PacketState[] packetStates = new PacketState[256];
+    private static final boolean[] serverBoundPackets = new boolean[256];
+
+    static {
+        registerPacketIDs(Status.Client.class, PacketState.STATUS, true);
+        registerPacketIDs(Status.Server.class, PacketState.STATUS, false);
+        registerPacketIDs(Handshaking.Client.class, PacketState.HANDSHAKING, true);
+        registerPacketIDs(Login.Client.class, PacketState.LOGIN, true);
+        registerPacketIDs(Login.Server.class, PacketState.LOGIN, false);
+        registerPacketIDs(Play.Client.class, PacketState.PLAY, true);
+        registerPacketIDs(Play.Server.class, PacketState.PLAY, false);
+    }
 
     private static void insertPacketID(Class<?> cls, byte packetID) {
         if (cls != null) {
@@ -47,6 +65,20 @@ public class PacketType {
         }
     }
 
+    private static void registerPacketIDs(Class<?> packetIDsClass, PacketState state, boolean serverBound) {
+        for (Field field : packetIDsClass.getDeclaredFields()) {
+            if (field.getType() == byte.class && Modifier.isStatic(field.getModifiers())) {
+                try {
+                    int index = field.getByte(null) & 0xFF;
+                    packetStates[index] = state;
+                    serverBoundPackets[index] = serverBound;
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
     public static void load() {
         Status.Client.load();
         Status.Server.load();
@@ -60,6 +92,27 @@ public class PacketType {
         Play.Server.load();
     }
 
+    /**
+     * Get the protocol state a packet ID belongs to.
+     *
+     * @param packetID Packet ID.
+     * @return Protocol state, null if the packet ID is invalid.
+     */
+    @Nullable
+    public static PacketState getState(byte packetID) {
+        return packetStates[packetID & 0xFF];
+    }
+
+    /**
+     * Check if a packet ID belongs to a server-bound (client-sided) packet.
+     *
+     * @param packetID Packet ID.
+     * @return Is the packet sent by the client?
+     */
+    public static boolean isServerBound(byte packetID) {
+        return serverBoundPackets[packetID & 0xFF];
+    }
+
     /**
      * Status Packet IDs.
      *
@@ -0,0 +1,268 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.packetwrappers;
+
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.packetwrappers.play.in.abilities.WrappedPacketInAbilities;
+import io.github.retrooper.packetevents.packetwrappers.play.in.armanimation.WrappedPacketInArmAnimation;
+import io.github.retrooper.packetevents.packetwrappers.play.in.beacon.WrappedPacketInBeacon;
+import io.github.retrooper.packetevents.packetwrappers.play.in.blockdig.WrappedPacketInBlockDig;
+import io.github.retrooper.packetevents.packetwrappers.play.in.blockplace.WrappedPacketInBlockPlace;
+import io.github.retrooper.packetevents.packetwrappers.play.in.boatmove.WrappedPacketInBoatMove;
+import io.github.retrooper.packetevents.packetwrappers.play.in.chat.WrappedPacketInChat;
+import io.github.retrooper.packetevents.packetwrappers.play.in.clientcommand.WrappedPacketInClientCommand;
+import io.github.retrooper.packetevents.packetwrappers.play.in.closewindow.WrappedPacketInCloseWindow;
+import io.github.retrooper.packetevents.packetwrappers.play.in.custompayload.WrappedPacketInCustomPayload;
+import io.github.retrooper.packetevents.packetwrappers.play.in.difficultychange.WrappedPacketInDifficultyChange;
+import io.github.retrooper.packetevents.packetwrappers.play.in.difficultylock.WrappedPacketInDifficultyLock;
+import io.github.retrooper.packetevents.packetwrappers.play.in.enchantitem.WrappedPacketInEnchantItem;
+import io.github.retrooper.packetevents.packetwrappers.play.in.entityaction.WrappedPacketInEntityAction;
+import io.github.retrooper.packetevents.packetwrappers.play.in.flying.WrappedPacketInFlying;
+import io.github.retrooper.packetevents.packetwrappers.play.in.helditemslot.WrappedPacketInHeldItemSlot;
+import io.github.retrooper.packetevents.packetwrappers.play.in.itemname.WrappedPacketInItemName;
+import io.github.retrooper.packetevents.packetwrappers.play.in.jigsawgenerate.WrappedPacketInJigsawGenerate;
+import io.github.retrooper.packetevents.packetwrappers.play.in.keepalive.WrappedPacketInKeepAlive;
+import io.github.retrooper.packetevents.packetwrappers.play.in.pickitem.WrappedPacketInPickItem;
+import io.github.retrooper.packetevents.packetwrappers.play.in.pong.WrappedPacketInPong;
+import io.github.retrooper.packetevents.packetwrappers.play.in.resourcepackstatus.WrappedPacketInResourcePackStatus;
+import io.github.retrooper.packetevents.packetwrappers.play.in.setcreativeslot.WrappedPacketInSetCreativeSlot;
+import io.github.retrooper.packetevents.packetwrappers.play.in.settings.WrappedPacketInSettings;
+import io.github.retrooper.packetevents.packetwrappers.play.in.spectate.WrappedPacketInSpectate;
+import io.github.retrooper.packetevents.packetwrappers.play.in.steervehicle.WrappedPacketInSteerVehicle;
+import io.github.retrooper.packetevents.packetwrappers.play.in.tabcomplete.WrappedPacketInTabComplete;
+import io.github.retrooper.packetevents.packetwrappers.play.in.teleportaccept.WrappedPacketInTeleportAccept;
+import io.github.retrooper.packetevents.packetwrappers.play.in.transaction.WrappedPacketInTransaction;
+import io.github.retrooper.packetevents.packetwrappers.play.in.trsel.WrappedPacketInTrSel;
+import io.github.retrooper.packetevents.packetwrappers.play.in.updatesign.WrappedPacketInUpdateSign;
+import io.github.retrooper.packetevents.packetwrappers.play.in.useentity.WrappedPacketInUseEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.in.useitem.WrappedPacketInUseItem;
+import io.github.retrooper.packetevents.packetwrappers.play.in.vehiclemove.WrappedPacketInVehicleMove;
+import io.github.retrooper.packetevents.packetwrappers.play.in.windowclick.WrappedPacketInWindowClick;
+import io.github.retrooper.packetevents.packetwrappers.play.out.abilities.WrappedPacketOutAbilities;
+import io.github.retrooper.packetevents.packetwrappers.play.out.animation.WrappedPacketOutAnimation;
+import io.github.retrooper.packetevents.packetwrappers.play.out.bedit.WrappedPacketInBEdit;
+import io.github.retrooper.packetevents.packetwrappers.play.out.blockaction.WrappedPacketOutBlockAction;
+import io.github.retrooper.packetevents.packetwrappers.play.out.blockbreakanimation.WrappedPacketOutBlockBreakAnimation;
+import io.github.retrooper.packetevents.packetwrappers.play.out.blockchange.WrappedPacketOutBlockChange;
+import io.github.retrooper.packetevents.packetwrappers.play.out.camera.WrappedPacketOutCamera;
+import io.github.retrooper.packetevents.packetwrappers.play.out.chat.WrappedPacketOutChat;
+import io.github.retrooper.packetevents.packetwrappers.play.out.closewindow.WrappedPacketOutCloseWindow;
+import io.github.retrooper.packetevents.packetwrappers.play.out.collect.WrappedPacketOutCollect;
+import io.github.retrooper.packetevents.packetwrappers.play.out.custompayload.WrappedPacketOutCustomPayload;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entity.WrappedPacketOutEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entitydestroy.WrappedPacketOutEntityDestroy;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityeffect.WrappedPacketOutEntityEffect;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityequipment.WrappedPacketOutEntityEquipment;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityheadrotation.WrappedPacketOutEntityHeadRotation;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entitymetadata.WrappedPacketOutEntityMetadata;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entitystatus.WrappedPacketOutEntityStatus;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityteleport.WrappedPacketOutEntityTeleport;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityvelocity.WrappedPacketOutEntityVelocity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.experience.WrappedPacketOutExperience;
+import io.github.retrooper.packetevents.packetwrappers.play.out.explosion.WrappedPacketOutExplosion;
+import io.github.retrooper.packetevents.packetwrappers.play.out.gamestatechange.WrappedPacketOutGameStateChange;
+import io.github.retrooper.packetevents.packetwrappers.play.out.helditemslot.WrappedPacketOutHeldItemSlot;
+import io.github.retrooper.packetevents.packetwrappers.play.out.keepalive.WrappedPacketOutKeepAlive;
+import io.github.retrooper.packetevents.packetwrappers.play.out.kickdisconnect.WrappedPacketOutKickDisconnect;
+import io.github.retrooper.packetevents.packetwrappers.play.out.login.WrappedPacketOutLogin;
+import io.github.retrooper.packetevents.packetwrappers.play.out.mapchunk.WrappedPacketOutMapChunk;
+import io.github.retrooper.packetevents.packetwrappers.play.out.mount.WrappedPacketOutMount;
+import io.github.retrooper.packetevents.packetwrappers.play.out.namedentityspawn.WrappedPacketOutNamedEntitySpawn;
+import io.github.retrooper.packetevents.packetwrappers.play.out.namedsoundeffect.WrappedPacketOutNamedSoundEffect;
+import io.github.retrooper.packetevents.packetwrappers.play.out.openwindow.WrappedPacketOutOpenWindow;
+import io.github.retrooper.packetevents.packetwrappers.play.out.openwindowhorse.WrappedPacketOutOpenWindowHorse;
+import io.github.retrooper.packetevents.packetwrappers.play.out.ping.WrappedPacketOutPing;
+import io.github.retrooper.packetevents.packetwrappers.play.out.playerinfo.WrappedPacketOutPlayerInfo;
+import io.github.retrooper.packetevents.packetwrappers.play.out.position.WrappedPacketOutPosition;
+import io.github.retrooper.packetevents.packetwrappers.play.out.removeentityeffect.WrappedPacketOutRemoveEntityEffect;
+import io.github.retrooper.packetevents.packetwrappers.play.out.resourcepacksend.WrappedPacketOutResourcePackSend;
+import io.github.retrooper.packetevents.packetwrappers.play.out.setcooldown.WrappedPacketOutSetCooldown;
+import io.github.retrooper.packetevents.packetwrappers.play.out.setslot.WrappedPacketOutSetSlot;
+import io.github.retrooper.packetevents.packetwrappers.play.out.spawnentity.WrappedPacketOutSpawnEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.spawnentityliving.WrappedPacketOutSpawnEntityLiving;
+import io.github.retrooper.packetevents.packetwrappers.play.out.systemchat.WrappedPacketOutSystemChat;
+import io.github.retrooper.packetevents.packetwrappers.play.out.tabcomplete.WrappedPacketOutTabComplete;
+import io.github.retrooper.packetevents.packetwrappers.play.out.title.WrappedPacketOutTitle;
+import io.github.retrooper.packetevents.packetwrappers.play.out.transaction.WrappedPacketOutTransaction;
+import io.github.retrooper.packetevents.packetwrappers.play.out.unloadchunk.WrappedPacketOutUnloadChunk;
+import io.github.retrooper.packetevents.packetwrappers.play.out.updateattributes.WrappedPacketOutUpdateAttributes;
+import io.github.retrooper.packetevents.packetwrappers.play.out.updatehealth.WrappedPacketOutUpdateHealth;
+import io.github.retrooper.packetevents.packetwrappers.play.out.updatetime.WrappedPacketOutUpdateTime;
+import io.github.retrooper.packetevents.packetwrappers.play.out.viewdistance.WrappedPacketOutViewDistance;
+import io.github.retrooper.packetevents.packetwrappers.play.out.windowitems.WrappedPacketOutWindowItems;
+import io.github.retrooper.packetevents.packetwrappers.play.out.worldparticles.WrappedPacketOutWorldParticles;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+
+/**
+ * Registry of the packet wrapper every packet ID is wrapped with.
+ * PacketEvents uses this registry to construct the wrapper of a packet event once,
+ * so every listener processing the event shares the same wrapper.
+ * Register your wrappers while your plugin is being enabled, this registry isn't meant to change while packets are being processed.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent#getWrapper()
+ * @since 1.8
+ */
+public final class PacketWrapperRegistry {
+    /**
+     * Wrapper factories indexed by the unsigned packet ID.
+     */
+    @SuppressWarnings("unchecked")
+    private static final Function<NMSPacket, ? extends WrappedPacket>[] WRAPPERS = new Function[256];
+
+    static {
+        register(PacketType.Play.Client.TELEPORT_ACCEPT, WrappedPacketInTeleportAccept::new);
+        register(PacketType.Play.Client.DIFFICULTY_CHANGE, WrappedPacketInDifficultyChange::new);
+        register(PacketType.Play.Client.CHAT, WrappedPacketInChat::new);
+        register(PacketType.Play.Client.CLIENT_COMMAND, WrappedPacketInClientCommand::new);
+        register(PacketType.Play.Client.SETTINGS, WrappedPacketInSettings::new);
+        register(PacketType.Play.Client.TAB_COMPLETE, WrappedPacketInTabComplete::new);
+        register(PacketType.Play.Client.TRANSACTION, WrappedPacketInTransaction::new);
+        register(PacketType.Play.Client.ENCHANT_ITEM, WrappedPacketInEnchantItem::new);
+        register(PacketType.Play.Client.WINDOW_CLICK, WrappedPacketInWindowClick::new);
+        register(PacketType.Play.Client.CLOSE_WINDOW, WrappedPacketInCloseWindow::new);
+        register(PacketType.Play.Client.CUSTOM_PAYLOAD, WrappedPacketInCustomPayload::new);
+        register(PacketType.Play.Client.B_EDIT, WrappedPacketInBEdit::new);
+        register(PacketType.Play.Client.USE_ENTITY, WrappedPacketInUseEntity::new);
+        register(PacketType.Play.Client.JIGSAW_GENERATE, WrappedPacketInJigsawGenerate::new);
+        register(PacketType.Play.Client.KEEP_ALIVE, WrappedPacketInKeepAlive::new);
+        register(PacketType.Play.Client.DIFFICULTY_LOCK, WrappedPacketInDifficultyLock::new);
+        register(PacketType.Play.Client.POSITION, WrappedPacketInFlying::new);
+        register(PacketType.Play.Client.POSITION_LOOK, WrappedPacketInFlying::new);
+        register(PacketType.Play.Client.LOOK, WrappedPacketInFlying::new);
+        register(PacketType.Play.Client.FLYING, WrappedPacketInFlying::new);
+        register(PacketType.Play.Client.VEHICLE_MOVE, WrappedPacketInVehicleMove::new);
+        register(PacketType.Play.Client.BOAT_MOVE, WrappedPacketInBoatMove::new);
+        register(PacketType.Play.Client.PICK_ITEM, WrappedPacketInPickItem::new);
+        register(PacketType.Play.Client.ABILITIES, WrappedPacketInAbilities::new);
+        register(PacketType.Play.Client.BLOCK_DIG, WrappedPacketInBlockDig::new);
+        register(PacketType.Play.Client.ENTITY_ACTION, WrappedPacketInEntityAction::new);
+        register(PacketType.Play.Client.STEER_VEHICLE, WrappedPacketInSteerVehicle::new);
+        register(PacketType.Play.Client.ITEM_NAME, WrappedPacketInItemName::new);
+        register(PacketType.Play.Client.RESOURCE_PACK_STATUS, WrappedPacketInResourcePackStatus::new);
+        register(PacketType.Play.Client.TR_SEL, WrappedPacketInTrSel::new);
+        register(PacketType.Play.Client.BEACON, WrappedPacketInBeacon::new);
+        register(PacketType.Play.Client.HELD_ITEM_SLOT, WrappedPacketInHeldItemSlot::new);
+        register(PacketType.Play.Client.SET_CREATIVE_SLOT, WrappedPacketInSetCreativeSlot::new);
+        register(PacketType.Play.Client.UPDATE_SIGN, WrappedPacketInUpdateSign::new);
+        register(PacketType.Play.Client.ARM_ANIMATION, WrappedPacketInArmAnimation::new);
+        register(PacketType.Play.Client.SPECTATE, WrappedPacketInSpectate::new);
+        register(PacketType.Play.Client.USE_ITEM, WrappedPacketInUseItem::new);
+        register(PacketType.Play.Client.BLOCK_PLACE, WrappedPacketInBlockPlace::new);
+        register(PacketType.Play.Client.PONG, WrappedPacketInPong::new);
+        register(PacketType.Play.Server.SPAWN_ENTITY, WrappedPacketOutSpawnEntity::new);
+        register(PacketType.Play.Server.SPAWN_ENTITY_LIVING, WrappedPacketOutSpawnEntityLiving::new);
+        register(PacketType.Play.Server.ANIMATION, WrappedPacketOutAnimation::new);
+        register(PacketType.Play.Server.BLOCK_BREAK_ANIMATION, WrappedPacketOutBlockBreakAnimation::new);
+        register(PacketType.Play.Server.BLOCK_ACTION, WrappedPacketOutBlockAction::new);
+        register(PacketType.Play.Server.BLOCK_CHANGE, WrappedPacketOutBlockChange::new);
+        register(PacketType.Play.Server.CHAT, WrappedPacketOutChat::new);
+        register(PacketType.Play.Server.TAB_COMPLETE, WrappedPacketOutTabComplete::new);
+        register(PacketType.Play.Server.TRANSACTION, WrappedPacketOutTransaction::new);
+        register(PacketType.Play.Server.CLOSE_WINDOW, WrappedPacketOutCloseWindow::new);
+        register(PacketType.Play.Server.WINDOW_ITEMS, WrappedPacketOutWindowItems::new);
+        register(PacketType.Play.Server.SET_SLOT, WrappedPacketOutSetSlot::new);
+        register(PacketType.Play.Server.SET_COOLDOWN, WrappedPacketOutSetCooldown::new);
+        register(PacketType.Play.Server.CUSTOM_PAYLOAD, WrappedPacketOutCustomPayload::new);
+        register(PacketType.Play.Server.KICK_DISCONNECT, WrappedPacketOutKickDisconnect::new);
+        register(PacketType.Play.Server.ENTITY_STATUS, WrappedPacketOutEntityStatus::new);
+        register(PacketType.Play.Server.EXPLOSION, WrappedPacketOutExplosion::new);
+        register(PacketType.Play.Server.UNLOAD_CHUNK, WrappedPacketOutUnloadChunk::new);
+        register(PacketType.Play.Server.GAME_STATE_CHANGE, WrappedPacketOutGameStateChange::new);
+        register(PacketType.Play.Server.OPEN_WINDOW_HORSE, WrappedPacketOutOpenWindowHorse::new);
+        register(PacketType.Play.Server.KEEP_ALIVE, WrappedPacketOutKeepAlive::new);
+        register(PacketType.Play.Server.MAP_CHUNK, WrappedPacketOutMapChunk::new);
+        register(PacketType.Play.Server.WORLD_PARTICLES, WrappedPacketOutWorldParticles::new);
+        register(PacketType.Play.Server.LOGIN, WrappedPacketOutLogin::new);
+        register(PacketType.Play.Server.REL_ENTITY_MOVE, WrappedPacketOutEntity.WrappedPacketOutRelEntityMove::new);
+        register(PacketType.Play.Server.REL_ENTITY_MOVE_LOOK, WrappedPacketOutEntity.WrappedPacketOutRelEntityMoveLook::new);
+        register(PacketType.Play.Server.ENTITY_LOOK, WrappedPacketOutEntity.WrappedPacketOutEntityLook::new);
+        register(PacketType.Play.Server.ENTITY, WrappedPacketOutEntity::new);
+        register(PacketType.Play.Server.OPEN_WINDOW, WrappedPacketOutOpenWindow::new);
+        register(PacketType.Play.Server.ABILITIES, WrappedPacketOutAbilities::new);
+        register(PacketType.Play.Server.PLAYER_INFO, WrappedPacketOutPlayerInfo::new);
+        register(PacketType.Play.Server.POSITION, WrappedPacketOutPosition::new);
+        register(PacketType.Play.Server.ENTITY_DESTROY, WrappedPacketOutEntityDestroy::new);
+        register(PacketType.Play.Server.REMOVE_ENTITY_EFFECT, WrappedPacketOutRemoveEntityEffect::new);
+        register(PacketType.Play.Server.RESOURCE_PACK_SEND, WrappedPacketOutResourcePackSend::new);
+        register(PacketType.Play.Server.ENTITY_HEAD_ROTATION, WrappedPacketOutEntityHeadRotation::new);
+        register(PacketType.Play.Server.CAMERA, WrappedPacketOutCamera::new);
+        register(PacketType.Play.Server.HELD_ITEM_SLOT, WrappedPacketOutHeldItemSlot::new);
+        register(PacketType.Play.Server.VIEW_DISTANCE, WrappedPacketOutViewDistance::new);
+        register(PacketType.Play.Server.ENTITY_METADATA, WrappedPacketOutEntityMetadata::new);
+        register(PacketType.Play.Server.ENTITY_VELOCITY, WrappedPacketOutEntityVelocity::new);
+        register(PacketType.Play.Server.ENTITY_EQUIPMENT, WrappedPacketOutEntityEquipment::new);
+        register(PacketType.Play.Server.EXPERIENCE, WrappedPacketOutExperience::new);
+        register(PacketType.Play.Server.UPDATE_HEALTH, WrappedPacketOutUpdateHealth::new);
+        register(PacketType.Play.Server.MOUNT, WrappedPacketOutMount::new);
+        register(PacketType.Play.Server.UPDATE_TIME, WrappedPacketOutUpdateTime::new);
+        register(PacketType.Play.Server.TITLE, WrappedPacketOutTitle::new);
+        register(PacketType.Play.Server.NAMED_SOUND_EFFECT, WrappedPacketOutNamedSoundEffect::new);
+        register(PacketType.Play.Server.COLLECT, WrappedPacketOutCollect::new);
+        register(PacketType.Play.Server.ENTITY_TELEPORT, WrappedPacketOutEntityTeleport::new);
+        register(PacketType.Play.Server.UPDATE_ATTRIBUTES, WrappedPacketOutUpdateAttributes::new);
+        register(PacketType.Play.Server.ENTITY_EFFECT, WrappedPacketOutEntityEffect::new);
+        register(PacketType.Play.Server.NAMED_ENTITY_SPAWN, WrappedPacketOutNamedEntitySpawn::new);
+        register(PacketType.Play.Server.PING, WrappedPacketOutPing::new);
+        register(PacketType.Play.Server.SYSTEM_CHAT, WrappedPacketOutSystemChat::new);
+    }
+
+    /**
+     * Register the packet wrapper of a packet ID.
+     * This replaces the wrapper PacketEvents registered for the packet ID.
+     *
+     * @param packetID Packet ID.
+     * @param factory  Constructs the wrapper of a packet.
+     */
+    public static void register(byte packetID, Function<NMSPacket, ? extends WrappedPacket> factory) {
+        WRAPPERS[packetID & 0xFF] = factory;
+    }
+
+    /**
+     * Check if a packet wrapper has been registered for a packet ID.
+     *
+     * @param packetID Packet ID.
+     * @return Is a packet wrapper registered?
+     */
+    public static boolean isRegistered(byte packetID) {
+        return WRAPPERS[packetID & 0xFF] != null;
+    }
+
+    /**
+     * Construct the shared packet wrapper of a packet.
+     * Shared wrappers might remember the fields they decoded,
+     * so modify the packet with the shared wrapper and not with a wrapper of your own.
+     *
+     * @param packetID Packet ID.
+     * @param packet   NMS Packet.
+     * @return Shared packet wrapper, null if no wrapper is registered for the packet ID.
+     */
+    @Nullable
+    public static WrappedPacket wrap(byte packetID, NMSPacket packet) {
+        Function<NMSPacket, ? extends WrappedPacket> factory = WRAPPERS[packetID & 0xFF];
+        if (factory == null) {
+            return null;
+        }
+        WrappedPacket wrapper = factory.apply(packet);
+        wrapper.shared = true;
+        return wrapper;
+    }
+}
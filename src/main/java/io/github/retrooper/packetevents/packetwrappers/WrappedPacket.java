@@ -29,7 +29,9 @@ import io.github.retrooper.packetevents.utils.MojangEitherUtil;
 import io.github.retrooper.packetevents.utils.enums.EnumUtil;
 import io.github.retrooper.packetevents.utils.nms.NMSUtils;
 import io.github.retrooper.packetevents.utils.player.GameMode;
+import io.github.retrooper.packetevents.utils.reflection.ClassAccessor;
 import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
+import io.github.retrooper.packetevents.utils.reflection.FieldAccessor;
 import io.github.retrooper.packetevents.utils.reflection.Reflection;
 import io.github.retrooper.packetevents.utils.server.ServerVersion;
 import io.github.retrooper.packetevents.utils.vector.Vector3i;
@@ -52,16 +54,23 @@ import java.util.logging.Level;
 
 public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     private static final Map<Class<? extends WrappedPacket>, Boolean> LOADED_WRAPPERS = new ConcurrentHashMap<>();
-    private static final Map<Class<?>, Map<Class<?>, Field[]>> FIELD_CACHE = new ConcurrentHashMap<>();
-    private static final Field[] EMPTY_FIELD_ARRAY = new Field[0];
     private static byte isVersion_1_17 = -1;
     public static ServerVersion version;
-    protected final NMSPacket packet;
-    private final Class<?> packetClass;
+    protected NMSPacket packet;
+    private Class<?> rawPacketClass;
+    private Class<?> packetClass;
+    private ClassAccessor classAccessor;
+    /**
+     * Is this wrapper shared by every listener processing the same event?
+     *
+     * @see PacketWrapperRegistry#wrap(byte, NMSPacket)
+     */
+    boolean shared;
 
     public WrappedPacket() {
         packet = null;
         packetClass = null;
+        classAccessor = null;
         load0();
     }
 
@@ -70,14 +79,41 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     }
 
     public WrappedPacket(final NMSPacket packet, Class<?> packetClass) {
+        bindPacketClass(packetClass);
+        this.packet = packet;
+        load0();
+    }
+
+    private void bindPacketClass(Class<?> packetClass) {
+        this.rawPacketClass = packetClass;
         if (packetClass.getSuperclass().equals(PacketTypeClasses.Play.Client.FLYING)) {
             packetClass = PacketTypeClasses.Play.Client.FLYING;
         } else if (packetClass.getSuperclass().equals(PacketTypeClasses.Play.Server.ENTITY)) {
             packetClass = PacketTypeClasses.Play.Server.ENTITY;
         }
         this.packetClass = packetClass;
+        this.classAccessor = ClassAccessor.get(packetClass);
+    }
+
+    /**
+     * Point this wrapper at another packet, so one wrapper instance can be reused for many packets.
+     * Only wrappers that don't decode anything in their constructor may support rebinding,
+     * they expose it with a flyweight method such as {@link io.github.retrooper.packetevents.packetwrappers.play.in.flying.WrappedPacketInFlying#flyweight(NMSPacket)}.
+     * Subclasses remembering decoded fields have to forget them here.
+     *
+     * @param packet NMS Packet.
+     * @throws IllegalStateException If this wrapper is shared by the listeners of an event.
+     */
+    protected void rebind(NMSPacket packet) {
+        if (shared) {
+            throw new IllegalStateException("PacketEvents can't rebind a shared " + ClassUtil.getClassSimpleName(getClass()) + ", it belongs to a packet event!");
+        }
+        Class<?> rawPacketClass = packet.getRawNMSPacket().getClass();
+        //Most of the time we rebind to a packet of the same class, then the accessors stay the same.
+        if (rawPacketClass != this.rawPacketClass) {
+            bindPacketClass(rawPacketClass);
+        }
         this.packet = packet;
-        load0();
     }
 
     private void load0() {
@@ -101,6 +137,16 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     protected void load() {
     }
 
+    /**
+     * Check if this wrapper is shared by every listener processing the same event.
+     * Shared wrappers may remember the fields they decoded, as every modification goes through the same wrapper.
+     *
+     * @return Is this wrapper shared?
+     */
+    protected final boolean isShared() {
+        return shared;
+    }
+
     protected boolean hasLoaded() {
         return LOADED_WRAPPERS.getOrDefault(getClass(), false);
     }
@@ -177,37 +223,37 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
 
     @Override
     public boolean readBoolean(int index) {
-        return read(index, boolean.class);
+        return getField(boolean.class, index).getBoolean(packet.getRawNMSPacket());
     }
 
     @Override
     public byte readByte(int index) {
-        return read(index, byte.class);
+        return getField(byte.class, index).getByte(packet.getRawNMSPacket());
     }
 
     @Override
     public short readShort(int index) {
-        return read(index, short.class);
+        return getField(short.class, index).getShort(packet.getRawNMSPacket());
     }
 
     @Override
     public int readInt(int index) {
-        return read(index, int.class);
+        return getField(int.class, index).getInt(packet.getRawNMSPacket());
     }
 
     @Override
     public long readLong(int index) {
-        return read(index, long.class);
+        return getField(long.class, index).getLong(packet.getRawNMSPacket());
     }
 
     @Override
     public float readFloat(int index) {
-        return read(index, float.class);
+        return getField(float.class, index).getFloat(packet.getRawNMSPacket());
     }
 
     @Override
     public double readDouble(int index) {
-        return read(index, double.class);
+        return getField(double.class, index).getDouble(packet.getRawNMSPacket());
     }
 
     @Override
@@ -257,19 +303,15 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
 
     @Override
     public Object readAnyObject(int index) {
-        try {
-            Field f = packetClass.getDeclaredFields()[index];
-            if (!f.isAccessible()) {
-                f.setAccessible(true);
-            }
-            try {
-                return f.get(packet.getRawNMSPacket());
-            } catch (IllegalAccessException | NullPointerException | ArrayIndexOutOfBoundsException e) {
-                e.printStackTrace();
-            }
-        } catch (ArrayIndexOutOfBoundsException e) {
+        FieldAccessor field = classAccessor.getDeclaredField(index);
+        if (field == null) {
             throw new WrapperFieldNotFoundException("PacketEvents failed to find any field indexed " + index + " in the " + ClassUtil.getClassSimpleName(packetClass) + " class!");
         }
+        try {
+            return field.get(packet.getRawNMSPacket());
+        } catch (NullPointerException e) {
+            e.printStackTrace();
+        }
         return null;
     }
 
@@ -286,9 +328,9 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     @SuppressWarnings("unchecked")
     public <T> T read(int index, Class<? extends T> type) {
         try {
-            Field field = getField(type, index);
+            FieldAccessor field = getField(type, index);
             return (T) field.get(packet.getRawNMSPacket());
-        } catch (IllegalAccessException | NullPointerException | ArrayIndexOutOfBoundsException e) {
+        } catch (NullPointerException e) {
             throw new WrapperFieldNotFoundException(packetClass, type, index);
         }
     }
@@ -296,37 +338,37 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
 
     @Override
     public void writeBoolean(int index, boolean value) {
-        write(boolean.class, index, value);
+        getField(boolean.class, index).setBoolean(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeByte(int index, byte value) {
-        write(byte.class, index, value);
+        getField(byte.class, index).setByte(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeShort(int index, short value) {
-        write(short.class, index, value);
+        getField(short.class, index).setShort(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeInt(int index, int value) {
-        write(int.class, index, value);
+        getField(int.class, index).setInt(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeLong(int index, long value) {
-        write(long.class, index, value);
+        getField(long.class, index).setLong(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeFloat(int index, float value) {
-        write(float.class, index, value);
+        getField(float.class, index).setFloat(packet.getRawNMSPacket(), value);
     }
 
     @Override
     public void writeDouble(int index, double value) {
-        write(double.class, index, value);
+        getField(double.class, index).setDouble(packet.getRawNMSPacket(), value);
     }
 
     @Override
@@ -382,11 +424,7 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     @Override
     public void writeAnyObject(int index, Object value) {
         try {
-            Field f = packetClass.getDeclaredFields()[index];
-            if (!f.isAccessible()) {
-                f.setAccessible(true);
-            }
-            f.set(packet.getRawNMSPacket(), value);
+            classAccessor.getDeclaredField(index).set(packet.getRawNMSPacket(), value);
         } catch (Exception e) {
             throw new WrapperFieldNotFoundException("PacketEvents failed to find any field indexed " + index + " in the " + ClassUtil.getClassSimpleName(packetClass) + " class!");
         }
@@ -402,13 +440,10 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
     }
 
     public void write(Class<?> type, int index, Object value) throws WrapperFieldNotFoundException {
-        Field field = getField(type, index);
-        if (field == null) {
-            throw new WrapperFieldNotFoundException(packetClass, type, index);
-        }
+        FieldAccessor field = getField(type, index);
         try {
             field.set(packet.getRawNMSPacket(), value);
-        } catch (IllegalAccessException | NullPointerException e) {
+        } catch (NullPointerException e) {
             e.printStackTrace();
         }
     }
@@ -578,27 +613,15 @@ public class WrappedPacket implements WrapperPacketReader, WrapperPacketWriter {
         write(NMSUtils.mojangEitherClass, index, either);
     }
 
-    private Field getField(Class<?> type, int index) {
-        Map<Class<?>, Field[]> cached = FIELD_CACHE.computeIfAbsent(packetClass, k -> new ConcurrentHashMap<>());
-        Field[] fields = cached.computeIfAbsent(type, typeClass -> getFields(typeClass, packetClass.getDeclaredFields()));
-        if (fields.length >= index + 1) {
-            return fields[index];
-        } else {
-            throw new WrapperFieldNotFoundException(packetClass, type, index);
+    private FieldAccessor getField(Class<?> type, int index) {
+        if (classAccessor == null) {
+            throw new WrapperFieldNotFoundException("PacketEvents failed to find a " + ClassUtil.getClassSimpleName(type) + " indexed " + index + ", this wrapper has no packet!");
         }
-    }
-
-    private Field[] getFields(Class<?> type, Field[] fields) {
-        List<Field> ret = new ArrayList<>();
-        for (Field field : fields) {
-            if (field.getType().equals(type)) {
-                if (!field.isAccessible()) {
-                    field.setAccessible(true);
-                }
-                ret.add(field);
-            }
+        FieldAccessor field = classAccessor.getField(type, index);
+        if (field == null) {
+            throw new WrapperFieldNotFoundException(packetClass, type, index);
         }
-        return ret.toArray(EMPTY_FIELD_ARRAY);
+        return field;
     }
 
 
@@ -18,19 +18,59 @@
 
 package io.github.retrooper.packetevents.packetwrappers.handshaking.setprotocol;
 
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.packettype.PacketTypeClasses;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
 import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
 import io.github.retrooper.packetevents.utils.server.ServerVersion;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 
 public class WrappedPacketHandshakingInSetProtocol extends WrappedPacket {
     private static boolean between_V_1_17_And_1_20_1;
+    private static Class<? extends Enum<?>> intentionClass;
     public WrappedPacketHandshakingInSetProtocol(NMSPacket packet) {
         super(packet);
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     protected void load() {
         between_V_1_17_And_1_20_1 = version.isNewerThanOrEquals(ServerVersion.v_1_17) && version.isOlderThan(ServerVersion.v_1_20_2);
+        //EnumProtocol on older versions, ClientIntent on newer versions.
+        for (Field field : PacketTypeClasses.Handshaking.Client.SET_PROTOCOL.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && field.getType().isEnum()) {
+                intentionClass = (Class<? extends Enum<?>>) field.getType();
+                break;
+            }
+        }
+    }
+
+    /**
+     * The state the client wants to continue in.
+     *
+     * @return {@link PacketState#STATUS} or {@link PacketState#LOGIN}, null if the intention couldn't be resolved.
+     */
+    @Nullable
+    public PacketState getNextState() {
+        if (intentionClass == null) {
+            return null;
+        }
+        Enum<?> intention = readEnumConstant(0, intentionClass);
+        if (intention == null) {
+            return null;
+        }
+        switch (intention.name()) {
+            case "STATUS":
+                return PacketState.STATUS;
+            case "LOGIN":
+            case "TRANSFER":
+                return PacketState.LOGIN;
+            default:
+                return null;
+        }
     }
 
     public int getProtocolVersion() {
@@ -24,127 +24,247 @@ import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
 import io.github.retrooper.packetevents.utils.vector.Vector3d;
 
 public class WrappedPacketInFlying extends WrappedPacket {
+    /**
+     * Flyweight wrapper of every thread.
+     *
+     * @see #flyweight(NMSPacket)
+     */
+    private static final ThreadLocal<WrappedPacketInFlying> FLYWEIGHT = ThreadLocal.withInitial(WrappedPacketInFlying::new);
+    private static final int X = 1, Y = 1 << 1, Z = 1 << 2, YAW = 1 << 3, PITCH = 1 << 4,
+            ON_GROUND = 1 << 5, MOVING = 1 << 6, ROTATING = 1 << 7;
+    /**
+     * Bit set of the fields we have decoded.
+     * Only shared wrappers remember decoded fields, see {@link #isShared()}.
+     */
+    private int decoded;
+    private double x, y, z;
+    private float yaw, pitch;
+    private boolean onGround, moving, rotating;
+
     public WrappedPacketInFlying(NMSPacket packet) {
         super(packet);
     }
 
+    private WrappedPacketInFlying() {
+        super();
+    }
+
+    /**
+     * Get the flyweight wrapper of the current thread, bound to a packet.
+     * The flyweight is the same instance for every packet processed on the current thread, so wrapping costs no allocation.
+     * The primitive getters ({@link #getX()}, {@link #getY()}, {@link #getZ()}, {@link #getYaw()}, {@link #getPitch()},
+     * {@link #isOnGround()}, {@link #isMoving()} and {@link #isRotating()}) don't allocate either.
+     * Only use the flyweight within your listener method and don't pass it to another thread,
+     * the next call of this method rebinds it to another packet.
+     *
+     * @param packet NMS Packet.
+     * @return Flyweight wrapper bound to the packet.
+     */
+    public static WrappedPacketInFlying flyweight(NMSPacket packet) {
+        WrappedPacketInFlying wrapper = FLYWEIGHT.get();
+        wrapper.rebind(packet);
+        return wrapper;
+    }
+
+    @Override
+    protected void rebind(NMSPacket packet) {
+        super.rebind(packet);
+        decoded = 0;
+    }
+
+    private boolean isDecoded(int field) {
+        return isShared() && (decoded & field) != 0;
+    }
+
     @Deprecated
     public double getX() {
-        return readDouble(0);
+        if (!isDecoded(X)) {
+            x = readDouble(0);
+            decoded |= X;
+        }
+        return x;
     }
 
     @Deprecated
     public void setX(double x) {
         writeDouble(0, x);
+        this.x = x;
+        decoded |= X;
     }
 
     @Deprecated
     public double getY() {
-        return readDouble(1);
+        if (!isDecoded(Y)) {
+            y = readDouble(1);
+            decoded |= Y;
+        }
+        return y;
     }
 
     @Deprecated
     public void setY(double y) {
         writeDouble(1, y);
+        this.y = y;
+        decoded |= Y;
     }
 
     @Deprecated
     public double getZ() {
-        return readDouble(2);
+        if (!isDecoded(Z)) {
+            z = readDouble(2);
+            decoded |= Z;
+        }
+        return z;
     }
 
     @Deprecated
     public void setZ(double z) {
         writeDouble(2, z);
+        this.z = z;
+        decoded |= Z;
     }
 
     @Deprecated
     public boolean isPosition() {
-        return readBoolean(1);
+        if (!isDecoded(MOVING)) {
+            moving = readBoolean(1);
+            decoded |= MOVING;
+        }
+        return moving;
     }
 
     @Deprecated
     public void setIsPosition(boolean isPosition) {
         writeBoolean(1, isPosition);
+        this.moving = isPosition;
+        decoded |= MOVING;
     }
 
     @Deprecated
     public boolean isLook() {
-        return readBoolean(2);
+        if (!isDecoded(ROTATING)) {
+            rotating = readBoolean(2);
+            decoded |= ROTATING;
+        }
+        return rotating;
     }
 
     @Deprecated
     public void setIsLook(boolean isLook) {
         writeBoolean(2, isLook);
+        this.rotating = isLook;
+        decoded |= ROTATING;
     }
 
     @Deprecated
     public boolean hasPositionChanged() {
-        return readBoolean(1);
+        if (!isDecoded(MOVING)) {
+            moving = readBoolean(1);
+            decoded |= MOVING;
+        }
+        return moving;
     }
 
     @Deprecated
     public void setPositionChanged(boolean positionChanged) {
         writeBoolean(1, positionChanged);
+        this.moving = positionChanged;
+        decoded |= MOVING;
     }
 
     @Deprecated
     public boolean hasRotationChanged() {
-        return readBoolean(2);
+        if (!isDecoded(ROTATING)) {
+            rotating = readBoolean(2);
+            decoded |= ROTATING;
+        }
+        return rotating;
     }
 
     @Deprecated
     public void setRotationChanged(boolean rotationChanged) {
         writeBoolean(2, rotationChanged);
+        this.rotating = rotationChanged;
+        decoded |= ROTATING;
     }
 
     public Vector3d getPosition() {
-        return new Vector3d(readDouble(0), readDouble(1), readDouble(2));
+        return new Vector3d(getX(), getY(), getZ());
     }
 
     public void setPosition(Vector3d position) {
-        writeDouble(0, position.x);
-        writeDouble(1, position.y);
-        writeDouble(2, position.z);
+        setX(position.x);
+        setY(position.y);
+        setZ(position.z);
     }
 
     public float getYaw() {
-        return readFloat(0);
+        if (!isDecoded(YAW)) {
+            yaw = readFloat(0);
+            decoded |= YAW;
+        }
+        return yaw;
     }
 
     public void setYaw(float yaw) {
         writeFloat(0, yaw);
+        this.yaw = yaw;
+        decoded |= YAW;
     }
 
     public float getPitch() {
-        return readFloat(1);
+        if (!isDecoded(PITCH)) {
+            pitch = readFloat(1);
+            decoded |= PITCH;
+        }
+        return pitch;
     }
 
     public void setPitch(float pitch) {
         writeFloat(1, pitch);
+        this.pitch = pitch;
+        decoded |= PITCH;
     }
 
     public boolean isOnGround() {
-        return readBoolean(0);
+        if (!isDecoded(ON_GROUND)) {
+            onGround = readBoolean(0);
+            decoded |= ON_GROUND;
+        }
+        return onGround;
     }
 
     public void setOnGround(boolean onGround) {
         writeBoolean(0, onGround);
+        this.onGround = onGround;
+        decoded |= ON_GROUND;
     }
 
     public boolean isMoving() {
-        return readBoolean(1);
+        if (!isDecoded(MOVING)) {
+            moving = readBoolean(1);
+            decoded |= MOVING;
+        }
+        return moving;
     }
 
     public void setMoving(boolean moving) {
         writeBoolean(1, moving);
+        this.moving = moving;
+        decoded |= MOVING;
     }
 
     public boolean isRotating() {
-        return readBoolean(2);
+        if (!isDecoded(ROTATING)) {
+            rotating = readBoolean(2);
+            decoded |= ROTATING;
+        }
+        return rotating;
     }
 
     public void setRotating(boolean rotating) {
         writeBoolean(2, rotating);
+        this.rotating = rotating;
+        decoded |= ROTATING;
     }
 }
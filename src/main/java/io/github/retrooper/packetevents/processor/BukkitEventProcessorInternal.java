@@ -20,7 +20,9 @@ package io.github.retrooper.packetevents.processor;
 
 import io.github.retrooper.packetevents.PacketEvents;
 import io.github.retrooper.packetevents.event.impl.PostPlayerInjectEvent;
+import io.github.retrooper.packetevents.utils.entityfinder.EntityIndex;
 import io.github.retrooper.packetevents.utils.player.ClientVersion;
+import io.github.retrooper.packetevents.utils.player.User;
 import io.github.retrooper.packetevents.utils.versionlookup.VersionLookupUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Entity;
@@ -30,14 +32,18 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.hanging.HangingPlaceEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.vehicle.VehicleCreateEvent;
 import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.net.InetSocketAddress;
-import java.util.UUID;
 
 public class BukkitEventProcessorInternal implements Listener {
     @EventHandler(priority = EventPriority.LOWEST)
@@ -59,7 +65,6 @@ public class BukkitEventProcessorInternal implements Listener {
         }
 
         boolean dependencyAvailable = VersionLookupUtils.isDependencyAvailable();
-        PacketEvents.get().getPlayerUtils().loginTime.put(player.getUniqueId(), System.currentTimeMillis());
         //A supported dependency is available, we need to first ask the dependency for the client version.
         if (dependencyAvailable) {
             //We are resolving version one tick later for extra safety. Some dependencies throw exceptions if we try too early.
@@ -67,7 +72,12 @@ public class BukkitEventProcessorInternal implements Listener {
                 try {
                     int protocolVersion = VersionLookupUtils.getProtocolVersion(player);
                     ClientVersion version = ClientVersion.getClientVersion(protocolVersion);
-                    PacketEvents.get().getPlayerUtils().clientVersionsMap.put(address, version);
+                    User user = PacketEvents.get().getPlayerUtils().getUser(player);
+                    if (user != null) {
+                        user.setClientVersion(version);
+                    } else {
+                        PacketEvents.get().getPlayerUtils().clientVersionsMap.put(address, version);
+                    }
                 } catch (Exception ignored) {
 
                 }
@@ -77,34 +87,75 @@ public class BukkitEventProcessorInternal implements Listener {
             //Dependency isn't available, we can already call the post player inject event.
             PacketEvents.get().getEventManager().callEvent(new PostPlayerInjectEvent(e.getPlayer(), false));
         }
-        PacketEvents.get().getServerUtils().entityCache.putIfAbsent(e.getPlayer().getEntityId(), e.getPlayer());
+        PacketEvents.get().getServerUtils().getEntityIndex().add(player);
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onQuit(PlayerQuitEvent e) {
         Player player = e.getPlayer();
-        UUID uuid = player.getUniqueId();
         InetSocketAddress address = player.getAddress();
-        //Cleanup user data
-        PacketEvents.get().getPlayerUtils().loginTime.remove(uuid);
-        PacketEvents.get().getPlayerUtils().playerPingMap.remove(uuid);
-        PacketEvents.get().getPlayerUtils().playerSmoothedPingMap.remove(uuid);
+        //Cleanup user data, the user itself is freed once the channel closes.
         PacketEvents.get().getPlayerUtils().clientVersionsMap.remove(address);
-        PacketEvents.get().getPlayerUtils().tempClientVersionMap.remove(address);
-        PacketEvents.get().getPlayerUtils().keepAliveMap.remove(uuid);
         PacketEvents.get().getPlayerUtils().channels.remove(player.getName());
-        PacketEvents.get().getServerUtils().entityCache.remove(e.getPlayer().getEntityId());
+        PacketEvents.get().getServerUtils().getEntityIndex().remove(player.getEntityId());
     }
 
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onEntitySpawn(EntitySpawnEvent event) {
-        Entity entity = event.getEntity();
-        PacketEvents.get().getServerUtils().entityCache.putIfAbsent(entity.getEntityId(), entity);
+        if (!event.isCancelled()) {
+            PacketEvents.get().getServerUtils().getEntityIndex().add(event.getEntity());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleCreate(VehicleCreateEvent event) {
+        PacketEvents.get().getServerUtils().getEntityIndex().add(event.getVehicle());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onHangingPlace(HangingPlaceEvent event) {
+        if (!event.isCancelled()) {
+            PacketEvents.get().getServerUtils().getEntityIndex().add(event.getEntity());
+        }
     }
 
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
     public void onEntityDeath(EntityDeathEvent event) {
-        PacketEvents.get().getServerUtils().entityCache.remove(event.getEntity().getEntityId());
+        Entity entity = event.getEntity();
+        //Players keep their entity ID when they respawn, they are removed once they quit.
+        if (!(entity instanceof Player)) {
+            PacketEvents.get().getServerUtils().getEntityIndex().remove(entity.getEntityId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        PacketEvents.get().getServerUtils().getEntityIndex().addAll(event.getChunk().getEntities());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        EntityIndex entityIndex = PacketEvents.get().getServerUtils().getEntityIndex();
+        for (Entity entity : event.getChunk().getEntities()) {
+            if (!(entity instanceof Player)) {
+                entityIndex.remove(entity.getEntityId());
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        PacketEvents.get().getServerUtils().getEntityIndex().addAll(event.getWorld().getEntities());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        PacketEvents.get().getServerUtils().getEntityIndex().removeWorld(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        PacketEvents.get().getServerUtils().getEntityIndex().changeWorld(event.getPlayer(), event.getFrom());
     }
 }
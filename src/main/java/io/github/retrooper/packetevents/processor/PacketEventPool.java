@@ -0,0 +1,195 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.processor;
+
+import io.github.retrooper.packetevents.event.impl.PacketPlayReceiveEvent;
+import io.github.retrooper.packetevents.event.impl.PacketPlaySendEvent;
+import io.github.retrooper.packetevents.event.impl.PostPacketPlayReceiveEvent;
+import io.github.retrooper.packetevents.event.impl.PostPacketPlaySendEvent;
+import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
+import org.bukkit.entity.Player;
+
+/**
+ * Internal pool of PLAY packet events.
+ * Every thread (usually a netty event loop) gets its own set of event objects,
+ * which are re-initialized for every packet instead of allocating new ones.
+ * If an event is still in use (a listener sent a packet while processing the event on the same thread),
+ * a new event is allocated so the event being processed is never modified.
+ * In debug mode events are never recycled, instead they are marked as released once processed,
+ * so that listeners accessing them later on fail loudly.
+ * Do NOT use this class, it is only meant to be used internally.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#pooledEvents(boolean)
+ * @since 1.8
+ */
+public final class PacketEventPool {
+    private final ThreadLocal<Entry> entries = ThreadLocal.withInitial(Entry::new);
+    private final boolean debug;
+
+    public PacketEventPool(boolean debug) {
+        this.debug = debug;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public PacketPlayReceiveEvent acquirePlayReceiveEvent(Player player, Object channel, NMSPacket packet) {
+        if (debug) {
+            return new PacketPlayReceiveEvent(player, channel, packet);
+        }
+        Entry entry = entries.get();
+        if (entry.playReceiveInUse) {
+            return new PacketPlayReceiveEvent(player, channel, packet);
+        }
+        entry.playReceiveInUse = true;
+        if (entry.playReceiveEvent == null) {
+            entry.playReceiveEvent = new PacketPlayReceiveEvent(player, channel, packet);
+        } else {
+            entry.playReceiveEvent.recycle(player, channel, packet);
+        }
+        return entry.playReceiveEvent;
+    }
+
+    public void release(PacketPlayReceiveEvent event) {
+        if (debug) {
+            event.release();
+            return;
+        }
+        Entry entry = entries.get();
+        if (entry.playReceiveEvent == event) {
+            entry.playReceiveInUse = false;
+        }
+    }
+
+    public PacketPlaySendEvent acquirePlaySendEvent(Player player, Object channel, NMSPacket packet) {
+        if (debug) {
+            return new PacketPlaySendEvent(player, channel, packet);
+        }
+        Entry entry = entries.get();
+        if (entry.playSendInUse) {
+            return new PacketPlaySendEvent(player, channel, packet);
+        }
+        entry.playSendInUse = true;
+        if (entry.playSendEvent == null) {
+            entry.playSendEvent = new PacketPlaySendEvent(player, channel, packet);
+        } else {
+            entry.playSendEvent.recycle(player, channel, packet);
+        }
+        return entry.playSendEvent;
+    }
+
+    public void release(PacketPlaySendEvent event) {
+        if (debug) {
+            event.release();
+            return;
+        }
+        Entry entry = entries.get();
+        if (entry.playSendEvent == event) {
+            entry.playSendInUse = false;
+        }
+    }
+
+    public PostPacketPlayReceiveEvent acquirePostPlayReceiveEvent(Player player, Object channel, NMSPacket packet) {
+        if (debug) {
+            return new PostPacketPlayReceiveEvent(player, channel, packet);
+        }
+        Entry entry = entries.get();
+        if (entry.postPlayReceiveInUse) {
+            return new PostPacketPlayReceiveEvent(player, channel, packet);
+        }
+        entry.postPlayReceiveInUse = true;
+        if (entry.postPlayReceiveEvent == null) {
+            entry.postPlayReceiveEvent = new PostPacketPlayReceiveEvent(player, channel, packet);
+        } else {
+            entry.postPlayReceiveEvent.recycle(player, channel, packet);
+        }
+        return entry.postPlayReceiveEvent;
+    }
+
+    public void release(PostPacketPlayReceiveEvent event) {
+        if (debug) {
+            event.release();
+            return;
+        }
+        Entry entry = entries.get();
+        if (entry.postPlayReceiveEvent == event) {
+            entry.postPlayReceiveInUse = false;
+        }
+    }
+
+    public PostPacketPlaySendEvent acquirePostPlaySendEvent(Player player, Object channel, NMSPacket packet) {
+        if (debug) {
+            return new PostPacketPlaySendEvent(player, channel, packet);
+        }
+        Entry entry = entries.get();
+        if (entry.postPlaySendInUse) {
+            return new PostPacketPlaySendEvent(player, channel, packet);
+        }
+        entry.postPlaySendInUse = true;
+        if (entry.postPlaySendEvent == null) {
+            entry.postPlaySendEvent = new PostPacketPlaySendEvent(player, channel, packet);
+        } else {
+            entry.postPlaySendEvent.recycle(player, channel, packet);
+        }
+        return entry.postPlaySendEvent;
+    }
+
+    public void release(PostPacketPlaySendEvent event) {
+        if (debug) {
+            event.release();
+            return;
+        }
+        Entry entry = entries.get();
+        if (entry.postPlaySendEvent == event) {
+            entry.postPlaySendInUse = false;
+        }
+    }
+
+    /**
+     * Recycled packet data for the calling thread.
+     * The packet data is only valid until the next packet is processed on the same thread.
+     *
+     * @param packet     Processed NMS packet.
+     * @param postAction Post action of the processed packet.
+     * @return Packet data.
+     */
+    public PacketProcessorInternal.PacketData packetData(Object packet, Runnable postAction) {
+        if (debug) {
+            PacketProcessorInternal.PacketData data = new PacketProcessorInternal.PacketData();
+            data.packet = packet;
+            data.postAction = postAction;
+            return data;
+        }
+        PacketProcessorInternal.PacketData data = entries.get().packetData;
+        data.packet = packet;
+        data.postAction = postAction;
+        return data;
+    }
+
+    private static final class Entry {
+        private final PacketProcessorInternal.PacketData packetData = new PacketProcessorInternal.PacketData();
+        private PacketPlayReceiveEvent playReceiveEvent;
+        private PacketPlaySendEvent playSendEvent;
+        private PostPacketPlayReceiveEvent postPlayReceiveEvent;
+        private PostPacketPlaySendEvent postPlaySendEvent;
+        private boolean playReceiveInUse, playSendInUse, postPlayReceiveInUse, postPlaySendInUse;
+    }
+}
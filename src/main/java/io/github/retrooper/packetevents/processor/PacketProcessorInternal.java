@@ -19,19 +19,39 @@
 package io.github.retrooper.packetevents.processor;
 
 import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.event.PacketFilterType;
+import io.github.retrooper.packetevents.event.PacketIDFilter;
+import io.github.retrooper.packetevents.event.eventtypes.CancellableEvent;
+import io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent;
 import io.github.retrooper.packetevents.event.impl.*;
+import io.github.retrooper.packetevents.event.manager.EventManager;
+import io.github.retrooper.packetevents.packettype.PacketClassInfo;
 import io.github.retrooper.packetevents.packettype.PacketState;
 import io.github.retrooper.packetevents.packettype.PacketType;
 import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
 import io.github.retrooper.packetevents.packetwrappers.handshaking.setprotocol.WrappedPacketHandshakingInSetProtocol;
 import io.github.retrooper.packetevents.packetwrappers.login.out.success.WrappedPacketLoginOutSuccess;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entity.WrappedPacketOutEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entitydestroy.WrappedPacketOutEntityDestroy;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityteleport.WrappedPacketOutEntityTeleport;
+import io.github.retrooper.packetevents.packetwrappers.play.out.namedentityspawn.WrappedPacketOutNamedEntitySpawn;
+import io.github.retrooper.packetevents.packetwrappers.play.out.spawnentity.WrappedPacketOutSpawnEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.spawnentityliving.WrappedPacketOutSpawnEntityLiving;
+import io.github.retrooper.packetevents.utils.capture.PacketCapture;
+import io.github.retrooper.packetevents.utils.entityfinder.EntityIndex;
+import io.github.retrooper.packetevents.utils.entitytracker.ClientEntityTracker;
+import io.github.retrooper.packetevents.utils.metrics.PacketMetrics;
 import io.github.retrooper.packetevents.utils.player.ClientVersion;
-import io.github.retrooper.packetevents.utils.reflection.ClassUtil;
+import io.github.retrooper.packetevents.utils.player.User;
+import io.github.retrooper.packetevents.utils.ratelimit.PacketRateLimiter;
+import io.github.retrooper.packetevents.utils.ratelimit.RateLimit;
+import io.github.retrooper.packetevents.utils.ratelimit.RateLimitAction;
+import io.github.retrooper.packetevents.utils.server.ServerVersion;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.UUID;
-
 /**
  * Internal packet processor.
  * This class mainly manages channel caching and internal processing. Do NOT use this class, it is only meant to be used internally.
@@ -41,12 +61,175 @@ import java.util.UUID;
  * @since 1.7.9
  */
 public class PacketProcessorInternal {
+    /**
+     * PLAY packet IDs PacketEvents has to process internally,
+     * even if no listener is interested in them.
+     */
+    private static final PacketIDFilter INTERNAL_PLAY_RECEIVE_INTEREST = new PacketIDFilter(PacketType.Play.Client.KEEP_ALIVE);
+    private static final PacketIDFilter INTERNAL_PLAY_SEND_INTEREST = new PacketIDFilter(PacketType.Play.Server.KEEP_ALIVE);
+    /**
+     * Outgoing PLAY packets updating the client entity trackers.
+     */
+    private static final PacketIDFilter ENTITY_TRACKER_INTEREST = new PacketIDFilter(PacketType.Play.Server.SPAWN_ENTITY,
+            PacketType.Play.Server.SPAWN_ENTITY_LIVING, PacketType.Play.Server.NAMED_ENTITY_SPAWN,
+            PacketType.Play.Server.REL_ENTITY_MOVE, PacketType.Play.Server.REL_ENTITY_MOVE_LOOK,
+            PacketType.Play.Server.ENTITY_TELEPORT, PacketType.Play.Server.ENTITY_DESTROY, PacketType.Play.Server.RESPAWN);
+    /**
+     * Pool of recycled PLAY packet events.
+     * This is null if the pooled event mode is disabled.
+     */
+    private volatile PacketEventPool eventPool;
+    /**
+     * How long an encoded SERVER_INFO response may be reused in milliseconds, 0 if we don't cache it.
+     */
+    private volatile int serverInfoCacheTime;
+    /**
+     * Last encoded SERVER_INFO response.
+     */
+    private volatile CachedServerInfo cachedServerInfo;
+    /**
+     * Are the client entity trackers updated?
+     */
+    private volatile boolean entityTracking;
+
+    private static final class CachedServerInfo {
+        private final byte[] data;
+        private final long expiry;
+
+        private CachedServerInfo(byte[] data, long expiry) {
+            this.data = data;
+            this.expiry = expiry;
+        }
+    }
 
-    public class PacketData {
+    /**
+     * Result of processing a packet.
+     * If the pooled event mode is enabled, this object is recycled too.
+     * Read what you need right away, it is only valid until the next packet is processed on the same thread.
+     */
+    public static class PacketData {
         public Object packet;
         public Runnable postAction;
     }
 
+    /**
+     * Enable or disable the pooled event mode.
+     *
+     * @param pooledEvents Should we recycle PLAY packet events?
+     * @param debug        Should we detect listeners accessing recycled events instead of actually recycling them?
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#pooledEvents(boolean)
+     */
+    public void setPooledEvents(boolean pooledEvents, boolean debug) {
+        this.eventPool = pooledEvents || debug ? new PacketEventPool(debug) : null;
+    }
+
+    /**
+     * Set how long an encoded SERVER_INFO response may be reused.
+     *
+     * @param serverInfoCacheTime Cache time in milliseconds, 0 to disable the cache.
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#serverInfoCacheTime(int)
+     */
+    public void setServerInfoCacheTime(int serverInfoCacheTime) {
+        this.serverInfoCacheTime = serverInfoCacheTime;
+        this.cachedServerInfo = null;
+    }
+
+    /**
+     * Enable or disable updating the client entity trackers.
+     *
+     * @param entityTracking Should the entity packets sent to the clients be tracked?
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#entityTracking(boolean)
+     */
+    public void setEntityTracking(boolean entityTracking) {
+        this.entityTracking = entityTracking;
+    }
+
+    /**
+     * Is the SERVER_INFO response cache enabled?
+     * This is used internally, do NOT call this method.
+     *
+     * @return Should encoded SERVER_INFO responses be cached?
+     */
+    public boolean isServerInfoCacheEnabled() {
+        return serverInfoCacheTime > 0;
+    }
+
+    /**
+     * Get the cached SERVER_INFO response.
+     * This is used internally, do NOT call this method.
+     *
+     * @return Encoded SERVER_INFO packet (without the length prefix), null if nothing is cached or the cache expired.
+     */
+    @Nullable
+    public byte[] getCachedServerInfo() {
+        CachedServerInfo cachedServerInfo = this.cachedServerInfo;
+        if (cachedServerInfo == null || System.currentTimeMillis() >= cachedServerInfo.expiry) {
+            return null;
+        }
+        return cachedServerInfo.data;
+    }
+
+    /**
+     * Cache a SERVER_INFO response minecraft has sent.
+     * This is used internally, do NOT call this method.
+     *
+     * @param data Encoded SERVER_INFO packet (without the length prefix).
+     */
+    public void cacheServerInfo(byte[] data) {
+        int cacheTime = serverInfoCacheTime;
+        if (cacheTime > 0) {
+            cachedServerInfo = new CachedServerInfo(data, System.currentTimeMillis() + cacheTime);
+        }
+    }
+
+    /**
+     * Check if any listener is interested in the packets of a connection in the given protocol state.
+     * Connections nobody is interested in are handled by the lightweight handshake handler,
+     * the full channel handler is only installed once they reach a state somebody is interested in.
+     * This is used internally, do NOT call this method.
+     *
+     * @param state Protocol state.
+     * @return Should the connection be processed by the full channel handler?
+     */
+    public boolean isStateProcessed(PacketState state) {
+        EventManager eventManager = PacketEvents.get().getEventManager();
+        switch (state) {
+            case HANDSHAKING:
+                return eventManager.hasListeners(PacketHandshakeReceiveEvent.FILTER_TYPE, PacketType.Handshaking.Client.SET_PROTOCOL);
+            case STATUS:
+                return eventManager.hasListeners(PacketFilterType.CLIENT_SIDED_STATUS, PacketType.Status.Client.START)
+                        || eventManager.hasListeners(PacketFilterType.CLIENT_SIDED_STATUS, PacketType.Status.Client.PING)
+                        || eventManager.hasListeners(PacketFilterType.SERVER_SIDED_STATUS, PacketType.Status.Server.SERVER_INFO)
+                        || eventManager.hasListeners(PacketFilterType.SERVER_SIDED_STATUS, PacketType.Status.Server.PONG);
+            default:
+                //We always process the LOGIN state internally.
+                return true;
+        }
+    }
+
+    /**
+     * Process a handshake without calling any event.
+     * This is used by the lightweight handshake handler if no listener is interested in the handshake.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet sender.
+     * @param packet NMS handshake packet.
+     * @return Protocol state the connection switches to, null if the packet isn't a handshake or the state couldn't be resolved.
+     */
+    @Nullable
+    public PacketState processHandshake(User user, Object packet) {
+        if (getPacketId(packet) != PacketType.Handshaking.Client.SET_PROTOCOL) {
+            return null;
+        }
+        WrappedPacketHandshakingInSetProtocol handshake = new WrappedPacketHandshakingInSetProtocol(new NMSPacket(packet));
+        user.setHandshakeClientVersion(ClientVersion.getClientVersion(handshake.getProtocolVersion()));
+        PacketState nextState = handshake.getNextState();
+        if (nextState != null) {
+            user.setState(nextState);
+        }
+        return nextState;
+    }
+
     /**
      * Force PacketEvents to process an incoming packet.
      * This method could be used to spoof an incoming packet to the PacketEvents API.
@@ -57,16 +240,29 @@ public class PacketProcessorInternal {
      * @return NMS Packet, null if the event was cancelled.
      */
     public PacketData read(Player player, Object channel, Object packet) {
-        PacketData data = new PacketData();
-        data.packet = packet;
-        PacketState state = getPacketState(player, packet);
+        return read(null, player, channel, packet);
+    }
+
+    /**
+     * Make PacketEvents process an incoming packet.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user    Connection state of the packet sender, null to look it up if needed.
+     * @param player  Packet sender.
+     * @param channel Packet sender's netty channel.
+     * @param packet  NMS Packet.
+     * @return NMS Packet, null if the event was cancelled.
+     */
+    public PacketData read(@Nullable User user, Player player, Object channel, Object packet) {
+        PacketState state = getPacketState(user, player, packet);
         if (state == null) {
-            return data;
+            return packetData(packet, null);
         }
         switch (state) {
             case STATUS:
                 PacketStatusReceiveEvent statusEvent = new PacketStatusReceiveEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(statusEvent);
+                statusEvent.setUser(user);
+                callEvent(statusEvent, PacketState.STATUS, true);
                 //Apply modifications to the packet
                 packet = statusEvent.getNMSPacket().getRawNMSPacket();
                 //Process internally
@@ -78,7 +274,8 @@ public class PacketProcessorInternal {
                 break;
             case HANDSHAKING:
                 PacketHandshakeReceiveEvent handshakeEvent = new PacketHandshakeReceiveEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(handshakeEvent);
+                handshakeEvent.setUser(user);
+                callEvent(handshakeEvent, PacketState.HANDSHAKING, true);
                 //Apply modifications to the packet
                 packet = handshakeEvent.getNMSPacket().getRawNMSPacket();
                 //Process internally
@@ -90,7 +287,8 @@ public class PacketProcessorInternal {
                 break;
             case LOGIN:
                 PacketLoginReceiveEvent loginEvent = new PacketLoginReceiveEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(loginEvent);
+                loginEvent.setUser(user);
+                callEvent(loginEvent, PacketState.LOGIN, true);
                 packet = loginEvent.getNMSPacket().getRawNMSPacket();
                 interceptLoginReceive(loginEvent);
                 if (loginEvent.isCancelled()) {
@@ -99,24 +297,41 @@ public class PacketProcessorInternal {
                 break;
             case CONFIG:
                 PacketConfigReceiveEvent configEvent = new PacketConfigReceiveEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(configEvent);
+                configEvent.setUser(user);
+                callEvent(configEvent, PacketState.CONFIG, true);
                 packet = configEvent.getNMSPacket().getRawNMSPacket();
                 if (configEvent.isCancelled()) {
                     packet = null;
                 }
                 break;
             case PLAY:
-                PacketPlayReceiveEvent event = new PacketPlayReceiveEvent(player, channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(event);
-                packet = event.getNMSPacket().getRawNMSPacket();
-                interceptPlayReceive(event);
-                if (event.isCancelled()) {
-                    packet = null;
+                if (!isPlayReceiveProcessed(packet)) {
+                    //Nobody is interested in this packet, don't bother constructing an event.
+                    break;
+                }
+                PacketEventPool pool = eventPool;
+                PacketPlayReceiveEvent event = pool != null ? pool.acquirePlayReceiveEvent(player, channel, new NMSPacket(packet))
+                        : new PacketPlayReceiveEvent(player, channel, new NMSPacket(packet));
+                event.setUser(user);
+                try {
+                    callEvent(event, PacketState.PLAY, true);
+                    packet = event.getNMSPacket().getRawNMSPacket();
+                    interceptPlayReceive(event);
+                    if (event.isCancelled()) {
+                        packet = null;
+                    }
+                } finally {
+                    if (pool != null) {
+                        pool.release(event);
+                    }
                 }
                 break;
         }
-        data.packet = packet;
-        return data;
+        if (user != null && user.getPendingState() != null) {
+            //The client has acknowledged the state switch with this packet.
+            user.setState(user.getPendingState());
+        }
+        return packetData(packet, null);
     }
 
     /**
@@ -129,18 +344,32 @@ public class PacketProcessorInternal {
      * @return NMS Packet, null if the event was cancelled.
      */
     public PacketData write(Player player, Object channel, Object packet) {
-        PacketData data = new PacketData();
-        data.packet = packet;
-        PacketState state = getPacketState(player, packet);
+        return write(null, player, channel, packet);
+    }
+
+    /**
+     * Make PacketEvents process an outgoing packet.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user    Connection state of the packet receiver, null to look it up if needed.
+     * @param player  Packet receiver.
+     * @param channel Packet receiver's netty channel.
+     * @param packet  NMS Packet.
+     * @return NMS Packet, null if the event was cancelled.
+     */
+    public PacketData write(@Nullable User user, Player player, Object channel, Object packet) {
+        PacketState state = getPacketState(user, player, packet);
         if (state == null) {
-            return data;
+            return packetData(packet, null);
         }
+        Runnable postAction = null;
         switch (state) {
             case STATUS:
                 PacketStatusSendEvent statusEvent = new PacketStatusSendEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(statusEvent);
+                statusEvent.setUser(user);
+                callEvent(statusEvent, PacketState.STATUS, false);
                 if (statusEvent.isPostTaskAvailable()) {
-                    data.postAction = statusEvent.getPostTask();
+                    postAction = statusEvent.getPostTask();
                 }
                 packet = statusEvent.getNMSPacket().getRawNMSPacket();
                 interceptStatusSend(statusEvent);
@@ -150,14 +379,15 @@ public class PacketProcessorInternal {
                 break;
             case LOGIN:
                 PacketLoginSendEvent loginEvent = new PacketLoginSendEvent(channel, new NMSPacket(packet));
+                loginEvent.setUser(user);
                 if (loginEvent.getPacketId() == PacketType.Login.Server.SUCCESS) {
                     WrappedPacketLoginOutSuccess success = new WrappedPacketLoginOutSuccess(loginEvent.getNMSPacket());
                     String username = success.getGameProfile().getName();
                     PacketEvents.get().getPlayerUtils().channels.put(username, channel); //Cache channel
                 }
-                PacketEvents.get().getEventManager().callEvent(loginEvent);
+                callEvent(loginEvent, PacketState.LOGIN, false);
                 if (loginEvent.isPostTaskAvailable()) {
-                    data.postAction = loginEvent.getPostTask();
+                    postAction = loginEvent.getPostTask();
                 }
                 packet = loginEvent.getNMSPacket().getRawNMSPacket();
                 interceptLoginSend(loginEvent);
@@ -167,9 +397,10 @@ public class PacketProcessorInternal {
                 break;
             case CONFIG:
                 PacketConfigSendEvent configEvent = new PacketConfigSendEvent(channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(configEvent);
+                configEvent.setUser(user);
+                callEvent(configEvent, PacketState.CONFIG, false);
                 if (configEvent.isPostTaskAvailable()) {
-                    data.postAction = configEvent.getPostTask();
+                    postAction = configEvent.getPostTask();
                 }
                 packet = configEvent.getNMSPacket().getRawNMSPacket();
                 if (configEvent.isCancelled()) {
@@ -177,20 +408,32 @@ public class PacketProcessorInternal {
                 }
                 break;
             case PLAY:
-                PacketPlaySendEvent playEvent = new PacketPlaySendEvent(player, channel, new NMSPacket(packet));
-                PacketEvents.get().getEventManager().callEvent(playEvent);
-                if (playEvent.isPostTaskAvailable()) {
-                    data.postAction = playEvent.getPostTask();
+                if (!PacketEvents.get().getEventManager().hasListeners(PacketFilterType.SERVER_SIDED_PLAY, getPacketId(packet))) {
+                    //Nobody is interested in this packet, don't bother constructing an event.
+                    break;
                 }
-                packet = playEvent.getNMSPacket().getRawNMSPacket();
-                interceptPlaySend(playEvent);
-                if (playEvent.isCancelled()) {
-                    packet = null;
+                PacketEventPool pool = eventPool;
+                PacketPlaySendEvent playEvent = pool != null ? pool.acquirePlaySendEvent(player, channel, new NMSPacket(packet))
+                        : new PacketPlaySendEvent(player, channel, new NMSPacket(packet));
+                playEvent.setUser(user);
+                try {
+                    callEvent(playEvent, PacketState.PLAY, false);
+                    if (playEvent.isPostTaskAvailable()) {
+                        postAction = playEvent.getPostTask();
+                    }
+                    packet = playEvent.getNMSPacket().getRawNMSPacket();
+                    interceptPlaySend(playEvent);
+                    if (playEvent.isCancelled()) {
+                        packet = null;
+                    }
+                } finally {
+                    if (pool != null) {
+                        pool.release(playEvent);
+                    }
                 }
                 break;
         }
-        data.packet = packet;
-        return data;
+        return packetData(packet, postAction);
     }
 
     /**
@@ -202,10 +445,33 @@ public class PacketProcessorInternal {
      * @param packet  NMS Packet.
      */
     public void postRead(Player player, Object channel, Object packet) {
-        if (getPacketState(player, packet) == PacketState.PLAY) {
-            PostPacketPlayReceiveEvent event = new PostPacketPlayReceiveEvent(player, channel, new NMSPacket(packet));
-            PacketEvents.get().getEventManager().callEvent(event);
-            interceptPostPlayReceive(event);
+        postRead(null, player, channel, packet);
+    }
+
+    /**
+     * Make PacketEvents process an incoming PLAY packet after minecraft has processed it.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user    Connection state of the packet sender, null to look it up if needed.
+     * @param player  Packet sender.
+     * @param channel Netty channel of the packet sender.
+     * @param packet  NMS Packet.
+     */
+    public void postRead(@Nullable User user, Player player, Object channel, Object packet) {
+        if (getPacketState(user, player, packet) == PacketState.PLAY
+                && PacketEvents.get().getEventManager().hasListeners(PacketFilterType.CLIENT_SIDED_PLAY, getPacketId(packet))) {
+            PacketEventPool pool = eventPool;
+            PostPacketPlayReceiveEvent event = pool != null ? pool.acquirePostPlayReceiveEvent(player, channel, new NMSPacket(packet))
+                    : new PostPacketPlayReceiveEvent(player, channel, new NMSPacket(packet));
+            event.setUser(user);
+            try {
+                callEvent(event, PacketState.PLAY, true);
+                interceptPostPlayReceive(event);
+            } finally {
+                if (pool != null) {
+                    pool.release(event);
+                }
+            }
         }
     }
 
@@ -220,10 +486,32 @@ public class PacketProcessorInternal {
      * @param packet  NMS Packet.
      */
     public void postWrite(Player player, Object channel, Object packet) {
-        if (getPacketState(player, packet) == PacketState.PLAY) {
-            PostPacketPlaySendEvent event = new PostPacketPlaySendEvent(player, channel, new NMSPacket(packet));
-            PacketEvents.get().getEventManager().callEvent(event);
-            interceptPostPlaySend(event);
+        postWrite(null, player, channel, packet);
+    }
+
+    /**
+     * Make PacketEvents process an outgoing PLAY packet after minecraft has already sent the packet.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user    Connection state of the packet receiver, null to look it up if needed.
+     * @param player  Packet receiver.
+     * @param channel Netty channel of the packet receiver.
+     * @param packet  NMS Packet.
+     */
+    public void postWrite(@Nullable User user, Player player, Object channel, Object packet) {
+        if (getPacketState(user, player, packet) == PacketState.PLAY && isPlaySendProcessed(packet)) {
+            PacketEventPool pool = eventPool;
+            PostPacketPlaySendEvent event = pool != null ? pool.acquirePostPlaySendEvent(player, channel, new NMSPacket(packet))
+                    : new PostPacketPlaySendEvent(player, channel, new NMSPacket(packet));
+            event.setUser(user);
+            try {
+                callEvent(event, PacketState.PLAY, false);
+                interceptPostPlaySend(event);
+            } finally {
+                if (pool != null) {
+                    pool.release(event);
+                }
+            }
         }
     }
 
@@ -234,13 +522,15 @@ public class PacketProcessorInternal {
      */
     private void interceptPlayReceive(PacketPlayReceiveEvent event) {
         if (event.getPacketId() == PacketType.Play.Client.KEEP_ALIVE) {
-            UUID uuid = event.getPlayer().getUniqueId();
-            long timestamp = PacketEvents.get().getPlayerUtils().keepAliveMap.getOrDefault(uuid, event.getTimestamp());
+            User user = event.getUser();
+            if (user == null) {
+                return;
+            }
             long currentTime = event.getTimestamp();
-            long ping = currentTime - timestamp;
-            long smoothedPing = (PacketEvents.get().getPlayerUtils().getSmoothedPing(event.getPlayer().getUniqueId()) * 3L + ping) / 4;
-            PacketEvents.get().getPlayerUtils().playerPingMap.put(uuid, (int) ping);
-            PacketEvents.get().getPlayerUtils().playerSmoothedPingMap.put(uuid, (int) smoothedPing);
+            long timestamp = user.getKeepAliveTimestamp();
+            long ping = timestamp == 0L ? 0L : currentTime - timestamp;
+            long smoothedPing = (user.getSmoothedPing() * 3L + ping) / 4;
+            user.setPing((int) ping, (int) smoothedPing);
         }
     }
 
@@ -268,7 +558,17 @@ public class PacketProcessorInternal {
      * @param event client-bound LOGIN packet event.
      */
     private void interceptLoginSend(PacketLoginSendEvent event) {
-
+        if (event.getPacketId() == PacketType.Login.Server.SUCCESS && !event.isCancelled()) {
+            User user = event.getUser();
+            if (user != null) {
+                if (PacketEvents.get().getServerUtils().getVersion().isNewerThanOrEquals(ServerVersion.v_1_20_2)) {
+                    //The client acknowledges the login before the configuration starts.
+                    user.setPendingState(PacketState.CONFIG);
+                } else {
+                    user.setState(PacketState.PLAY);
+                }
+            }
+        }
     }
 
     /**
@@ -281,7 +581,14 @@ public class PacketProcessorInternal {
             WrappedPacketHandshakingInSetProtocol handshake = new WrappedPacketHandshakingInSetProtocol(event.getNMSPacket());
             int protocolVersion = handshake.getProtocolVersion();
             ClientVersion version = ClientVersion.getClientVersion(protocolVersion);
-            PacketEvents.get().getPlayerUtils().tempClientVersionMap.put(event.getSocketAddress(), version);
+            User user = event.getUser();
+            if (user != null) {
+                user.setHandshakeClientVersion(version);
+                PacketState nextState = handshake.getNextState();
+                if (nextState != null && !event.isCancelled()) {
+                    user.setState(nextState);
+                }
+            }
         }
     }
 
@@ -321,12 +628,332 @@ public class PacketProcessorInternal {
      */
     private void interceptPostPlaySend(PostPacketPlaySendEvent event) {
         if (event.getPacketId() == PacketType.Play.Server.KEEP_ALIVE) {
-            if (event.getPlayer() != null) {
-                PacketEvents.get().getPlayerUtils().keepAliveMap.put(event.getPlayer().getUniqueId(), event.getTimestamp());
+            User user = event.getUser();
+            if (user != null) {
+                user.setKeepAliveTimestamp(event.getTimestamp());
+            }
+        } else if (entityTracking && ENTITY_TRACKER_INTEREST.contains(event.getPacketId())) {
+            User user = event.getUser();
+            if (user != null) {
+                trackEntity(user.getEntityTracker(), event.getPacketId(), event.getNMSPacket());
+            }
+        }
+    }
+
+    /**
+     * Update a client entity tracker with an entity packet that has been sent to the client.
+     *
+     * @param tracker  Client entity tracker of the packet receiver.
+     * @param packetID Packet ID.
+     * @param packet   NMS Packet.
+     */
+    private void trackEntity(ClientEntityTracker tracker, byte packetID, NMSPacket packet) {
+        switch (packetID) {
+            case PacketType.Play.Server.SPAWN_ENTITY: {
+                WrappedPacketOutSpawnEntity spawnEntity = new WrappedPacketOutSpawnEntity(packet);
+                int entityID = spawnEntity.getEntityId();
+                spawnTrackedEntity(tracker, entityID, spawnEntity.getPosition());
+                break;
+            }
+            case PacketType.Play.Server.SPAWN_ENTITY_LIVING: {
+                WrappedPacketOutSpawnEntityLiving spawnEntityLiving = new WrappedPacketOutSpawnEntityLiving(packet);
+                int entityID = spawnEntityLiving.getEntityId();
+                spawnTrackedEntity(tracker, entityID, spawnEntityLiving.getPosition());
+                break;
             }
+            case PacketType.Play.Server.NAMED_ENTITY_SPAWN: {
+                WrappedPacketOutNamedEntitySpawn namedEntitySpawn = new WrappedPacketOutNamedEntitySpawn(packet);
+                Vector3d position = namedEntitySpawn.getPosition();
+                tracker.spawn(namedEntitySpawn.getEntityId(), position.x, position.y, position.z,
+                        ClientEntityTracker.PLAYER_WIDTH, ClientEntityTracker.PLAYER_HEIGHT);
+                break;
+            }
+            case PacketType.Play.Server.REL_ENTITY_MOVE:
+            case PacketType.Play.Server.REL_ENTITY_MOVE_LOOK: {
+                WrappedPacketOutEntity entity = new WrappedPacketOutEntity(packet);
+                tracker.move(entity.getEntityId(), entity.getDeltaX(), entity.getDeltaY(), entity.getDeltaZ());
+                break;
+            }
+            case PacketType.Play.Server.ENTITY_TELEPORT: {
+                WrappedPacketOutEntityTeleport teleport = new WrappedPacketOutEntityTeleport(packet);
+                Vector3d position = teleport.getPosition();
+                tracker.teleport(teleport.getEntityId(), position.x, position.y, position.z);
+                break;
+            }
+            case PacketType.Play.Server.ENTITY_DESTROY:
+                tracker.destroy(new WrappedPacketOutEntityDestroy(packet).getEntityIds());
+                break;
+            case PacketType.Play.Server.RESPAWN:
+                //The client forgets every entity when it respawns or changes the world.
+                tracker.clear();
+                break;
+        }
+    }
+
+    private void spawnTrackedEntity(ClientEntityTracker tracker, int entityID, Vector3d position) {
+        //The dimensions of the server-side entity are published by the entity index on the main thread,
+        //we are on a netty thread, so we never read the live bounding box of the entity.
+        //They are unknown (NaN) for entities that only exist on the client.
+        EntityIndex entityIndex = PacketEvents.get().getServerUtils().getEntityIndex();
+        double width = entityIndex.getWidth(entityID);
+        double height = entityIndex.getHeight(entityID);
+        tracker.spawn(entityID, position.x, position.y, position.z, width, height);
+    }
+
+    /**
+     * Count an incoming packet in the packet metrics.
+     * This has to be called for every packet, even if it isn't processed.
+     *
+     * @param player Packet sender.
+     * @param packet NMS Packet.
+     */
+    public void recordRead(Player player, Object packet) {
+        recordRead(null, player, packet);
+    }
+
+    /**
+     * Count an incoming packet in the packet metrics.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet sender.
+     * @param player Packet sender.
+     * @param packet NMS Packet.
+     */
+    public void recordRead(@Nullable User user, Player player, Object packet) {
+        PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+        PacketCapture capture = PacketEvents.get().getPacketCapture();
+        boolean capturing = capture.isCapturing(user);
+        if (metrics.isEnabled() || capturing) {
+            PacketState state = getPacketState(user, player, packet);
+            if (state != null) {
+                byte packetID = getPacketId(packet);
+                if (metrics.isEnabled()) {
+                    metrics.recordPacket(state, true, packetID);
+                }
+                if (capturing) {
+                    capture.recordPacket(user, state, true, packetID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count an outgoing packet in the packet metrics.
+     * This has to be called for every packet, even if it isn't processed.
+     *
+     * @param player Packet receiver.
+     * @param packet NMS Packet.
+     */
+    public void recordWrite(Player player, Object packet) {
+        recordWrite(null, player, packet);
+    }
+
+    /**
+     * Count an outgoing packet in the packet metrics.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet receiver.
+     * @param player Packet receiver.
+     * @param packet NMS Packet.
+     */
+    public void recordWrite(@Nullable User user, Player player, Object packet) {
+        PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+        PacketCapture capture = PacketEvents.get().getPacketCapture();
+        boolean capturing = capture.isCapturing(user);
+        if (metrics.isEnabled() || capturing) {
+            PacketState state = getPacketState(user, player, packet);
+            if (state != null) {
+                byte packetID = getPacketId(packet);
+                if (metrics.isEnabled()) {
+                    metrics.recordPacket(state, false, packetID);
+                }
+                if (capturing) {
+                    capture.recordPacket(user, state, false, packetID);
+                }
+            }
+        }
+    }
+
+    /**
+     * Call a packet event and record the time the listeners spent processing it.
+     *
+     * @param event       Packet event.
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     */
+    private void callEvent(NMSPacketEvent event, PacketState state, boolean serverBound) {
+        PacketMetrics metrics = PacketEvents.get().getPacketMetrics();
+        PacketCapture capture = PacketEvents.get().getPacketCapture();
+        if (!metrics.isEnabled() && !capture.isRunning()) {
+            PacketEvents.get().getEventManager().callEvent(event);
+            return;
+        }
+        long start = System.nanoTime();
+        PacketEvents.get().getEventManager().callEvent(event);
+        long nanos = System.nanoTime() - start;
+        boolean cancelled = event instanceof CancellableEvent && ((CancellableEvent) event).isCancelled();
+        if (metrics.isEnabled()) {
+            metrics.recordDispatch(state, serverBound, event.getPacketId(), nanos, cancelled);
+        }
+        User user = event.getUser();
+        if (capture.isCapturing(user)) {
+            capture.recordDispatch(user, state, serverBound, event.getPacketId(), nanos, cancelled);
         }
     }
 
+    /**
+     * Check an incoming packet against the configured rate limits.
+     * Packets exceeding their limit must be dropped before any event is constructed.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet sender.
+     * @param player Packet sender.
+     * @param packet NMS Packet.
+     * @return Should the packet be dropped?
+     * @see PacketRateLimiter#setLimit(byte, int, int, RateLimitAction)
+     */
+    public boolean isRateLimited(@Nullable User user, Player player, Object packet) {
+        if (user == null || !PacketRateLimiter.isEnabled()) {
+            return false;
+        }
+        PacketRateLimiter rateLimiter = user.getRateLimiter();
+        RateLimit limit = rateLimiter.acquire(getPacketId(packet));
+        if (limit == null) {
+            return false;
+        }
+        if (limit.getAction() == RateLimitAction.KICK && player != null && rateLimiter.markKicked()) {
+            //Players can only be kicked on the main thread.
+            Bukkit.getScheduler().runTask(PacketEvents.get().getPlugin(), () -> player.kickPlayer("You are sending too many packets!"));
+        }
+        return true;
+    }
+
+    /**
+     * Check if an incoming packet has to be processed at all.
+     * If neither a listener nor PacketEvents itself is interested in the packet,
+     * it can be passed on without constructing any event.
+     *
+     * @param player  Packet sender.
+     * @param packet  NMS Packet.
+     * @return Should the packet be processed with {@link #read(Player, Object, Object)}?
+     */
+    public boolean isReadProcessed(Player player, Object packet) {
+        return isReadProcessed(null, player, packet);
+    }
+
+    /**
+     * Check if an incoming packet has to be processed at all.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet sender.
+     * @param player Packet sender.
+     * @param packet NMS Packet.
+     * @return Should the packet be processed with {@link #read(User, Player, Object, Object)}?
+     */
+    public boolean isReadProcessed(@Nullable User user, Player player, Object packet) {
+        PacketState state = user != null ? user.getState() : null;
+        //Packets sent before the PLAY state are rare, we always process them.
+        if (state != null ? state != PacketState.PLAY : player == null) {
+            return true;
+        }
+        return isPlayReceiveProcessed(packet);
+    }
+
+    /**
+     * Check if an outgoing packet has to be processed at all.
+     * If neither a listener nor PacketEvents itself is interested in the packet,
+     * it can be passed on without constructing any event.
+     *
+     * @param player  Packet receiver.
+     * @param packet  NMS Packet.
+     * @return Should the packet be processed with {@link #write(Player, Object, Object)}?
+     */
+    public boolean isWriteProcessed(Player player, Object packet) {
+        return isWriteProcessed(null, player, packet);
+    }
+
+    /**
+     * Check if an outgoing packet has to be processed at all.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user   Connection state of the packet receiver.
+     * @param player Packet receiver.
+     * @param packet NMS Packet.
+     * @return Should the packet be processed with {@link #write(User, Player, Object, Object)}?
+     */
+    public boolean isWriteProcessed(@Nullable User user, Player player, Object packet) {
+        PacketState state = user != null ? user.getState() : null;
+        if (state != null ? state != PacketState.PLAY : player == null) {
+            return true;
+        }
+        return isPlaySendProcessed(packet);
+    }
+
+    /**
+     * Check if an incoming PLAY packet has to be processed.
+     * We process it internally or a listener is interested in it.
+     *
+     * @param packet NMS Packet.
+     * @return Should we construct an event for this packet?
+     */
+    private boolean isPlayReceiveProcessed(Object packet) {
+        byte packetID = getPacketId(packet);
+        return INTERNAL_PLAY_RECEIVE_INTEREST.contains(packetID)
+                || PacketEvents.get().getEventManager().hasListeners(PacketFilterType.CLIENT_SIDED_PLAY, packetID);
+    }
+
+    /**
+     * Check if an outgoing PLAY packet has to be processed (before or after it has been sent).
+     * We process it internally or a listener is interested in it.
+     *
+     * @param packet NMS Packet.
+     * @return Should we construct an event for this packet?
+     */
+    private boolean isPlaySendProcessed(Object packet) {
+        byte packetID = getPacketId(packet);
+        return INTERNAL_PLAY_SEND_INTEREST.contains(packetID)
+                || (entityTracking && ENTITY_TRACKER_INTEREST.contains(packetID))
+                || PacketEvents.get().getEventManager().hasListeners(PacketFilterType.SERVER_SIDED_PLAY, packetID);
+    }
+
+    private byte getPacketId(Object packet) {
+        return PacketClassInfo.of(packet).getPacketId();
+    }
+
+    private PacketData packetData(Object packet, Runnable postAction) {
+        PacketEventPool pool = eventPool;
+        if (pool != null) {
+            return pool.packetData(packet, postAction);
+        }
+        PacketData data = new PacketData();
+        data.packet = packet;
+        data.postAction = postAction;
+        return data;
+    }
+
+    /**
+     * Get the protocol state a packet has been sent in.
+     * If we know the connection, we use the state we tracked for it.
+     *
+     * @param user   Connection state, null if we don't know the connection.
+     * @param player Packet sender or receiver.
+     * @param packet NMS Packet.
+     * @return Protocol state, null if the packet shouldn't be processed.
+     */
+    @Nullable
+    private PacketState getPacketState(@Nullable User user, Player player, Object packet) {
+        PacketState state = user != null ? user.getState() : null;
+        if (state == null || packet == null) {
+            return getPacketState(player, packet);
+        }
+        if (state == PacketState.CONFIG && PacketClassInfo.of(packet).getState() == PacketState.PLAY) {
+            //The first PLAY packet ends the configuration.
+            user.setState(state = PacketState.PLAY);
+        }
+        //Listeners expect a player in the PLAY state, we haven't injected the player yet.
+        return state == PacketState.PLAY && player == null ? null : state;
+    }
+
     @Nullable
     private PacketState getPacketState(Player player, Object packet) {
         if (packet == null) {
@@ -334,21 +961,9 @@ public class PacketProcessorInternal {
         }
         if (player != null) {
             return PacketState.PLAY;
-        } else {
-            String packetName = ClassUtil.getClassSimpleName(packet.getClass());//Cached string name so it is faster
-            if (packetName.startsWith("PacketH")) {
-                return PacketState.HANDSHAKING;
-            } else if (packetName.startsWith("PacketL")) {
-                return PacketState.LOGIN;
-            } else if (packetName.startsWith("PacketS")) {
-                return PacketState.STATUS;
-            }
-            else if (packet.getClass().getName().contains("protocol.common")) {
-                return PacketState.CONFIG;
-            }
-            else {
-                return null;
-            }
         }
+        PacketState state = PacketClassInfo.of(packet).getState();
+        //Without a player we aren't in the PLAY state yet.
+        return state == PacketState.PLAY ? null : state;
     }
 }
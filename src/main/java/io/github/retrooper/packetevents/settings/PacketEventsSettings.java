@@ -48,6 +48,54 @@ public class PacketEventsSettings {
      */
     private boolean bStatsEnabled = true;
 
+    /**
+     * Should PacketEvents recycle the PLAY packet event objects per netty thread instead of
+     * allocating new ones for every packet?
+     * Listeners must not keep a reference to a pooled event after their listener method returns.
+     */
+    private boolean pooledEvents = false;
+
+    /**
+     * Should PacketEvents verify that no listener accesses a pooled event after it has been recycled?
+     * Events won't actually be recycled in this mode, it is only meant for testing your listeners.
+     */
+    private boolean pooledEventsDebug = false;
+
+    /**
+     * Should PacketEvents record packet counts, listener timings and cancellations?
+     */
+    private boolean packetMetrics = false;
+
+    /**
+     * Amount of threads processing the asynchronous listeners.
+     */
+    private int asyncListenerThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Amount of events every async listener thread can queue before it starts dropping events.
+     */
+    private int asyncListenerQueueCapacity = 4096;
+
+    /**
+     * Should PacketEvents coalesce the packets sent on the main thread and flush them once per tick?
+     */
+    private boolean tickPacketBatching = false;
+
+    /**
+     * How long should PacketEvents reuse an encoded SERVER_INFO response in milliseconds? (0 disables the cache)
+     */
+    private int serverInfoCacheTime = 0;
+
+    /**
+     * Should the packets sent with PacketEvents be scheduled by the writability of the receiver's channel?
+     */
+    private boolean outboundScheduling = false;
+
+    /**
+     * Should PacketEvents track what every client believes about the entities around it?
+     */
+    private boolean entityTracking = false;
+
     /**
      * This method locks the settings.
      * If the settings are locked, you won't be able to modify any settings using the setters.
@@ -132,6 +180,157 @@ public class PacketEventsSettings {
         return this;
     }
 
+    /**
+     * This decides if PacketEvents should recycle the PLAY packet events instead of allocating new ones for every packet.
+     * This heavily reduces the amount of short-lived objects on the netty threads.
+     * If you enable this, your listeners must NOT keep a reference to the event (or its NMS packet)
+     * after the listener method returns, the same event object will be re-used for the next packet.
+     *
+     * @param pooledEvents Value
+     * @return Settings instance.
+     */
+    public PacketEventsSettings pooledEvents(boolean pooledEvents) {
+        if (!locked) {
+            this.pooledEvents = pooledEvents;
+        }
+        return this;
+    }
+
+    /**
+     * This decides if PacketEvents should detect listeners that access a pooled event after it was recycled.
+     * An {@link IllegalStateException} will be thrown when that happens.
+     * Events won't actually be recycled while this is enabled, so only use this to test your listeners.
+     *
+     * @param pooledEventsDebug Value
+     * @return Settings instance.
+     * @see #pooledEvents(boolean)
+     */
+    public PacketEventsSettings pooledEventsDebug(boolean pooledEventsDebug) {
+        if (!locked) {
+            this.pooledEventsDebug = pooledEventsDebug;
+        }
+        return this;
+    }
+
+    /**
+     * This decides if PacketEvents should record packet metrics.
+     * PacketEvents will count the packets per packet state, direction and packet ID,
+     * measure the time your listeners spend processing them and count the cancellations.
+     * Recording is lock-free and cheap enough to be left enabled on production servers.
+     *
+     * @param packetMetrics Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.PacketEvents#getPacketMetrics()
+     */
+    public PacketEventsSettings packetMetrics(boolean packetMetrics) {
+        if (!locked) {
+            this.packetMetrics = packetMetrics;
+        }
+        return this;
+    }
+
+    /**
+     * This decides how many threads process the asynchronous listeners.
+     * The events of one player are always processed by the same thread.
+     *
+     * @param asyncListenerThreads Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.event.PacketListenerAbstract#isAsync()
+     */
+    public PacketEventsSettings asyncListenerThreads(int asyncListenerThreads) {
+        if (!locked) {
+            this.asyncListenerThreads = Math.max(1, asyncListenerThreads);
+        }
+        return this;
+    }
+
+    /**
+     * This decides how many events every async listener thread can queue.
+     * Once the queue of a thread is full, new events are dropped, so slow asynchronous listeners can't
+     * make PacketEvents use more and more memory.
+     *
+     * @param asyncListenerQueueCapacity Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.event.manager.EventManager#getDroppedAsyncEvents()
+     */
+    public PacketEventsSettings asyncListenerQueueCapacity(int asyncListenerQueueCapacity) {
+        if (!locked) {
+            this.asyncListenerQueueCapacity = Math.max(1, asyncListenerQueueCapacity);
+        }
+        return this;
+    }
+
+    /**
+     * This decides if PacketEvents should coalesce the packets you send on the main thread
+     * with the {@link io.github.retrooper.packetevents.utils.player.PlayerUtils} until the end of the tick.
+     * The packets of every player are then written at once with a single flush, instead of one flush per packet.
+     * This heavily reduces the flush overhead when broadcasting packets to many players,
+     * but your packets are sent slightly later, after the packets minecraft itself sends during the tick.
+     *
+     * @param tickPacketBatching Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.utils.player.PacketBatch
+     */
+    public PacketEventsSettings tickPacketBatching(boolean tickPacketBatching) {
+        if (!locked) {
+            this.tickPacketBatching = tickPacketBatching;
+        }
+        return this;
+    }
+
+    /**
+     * This decides how long PacketEvents should answer server list pings with the last SERVER_INFO response
+     * minecraft has sent, instead of letting minecraft build a new one.
+     * The cached response is written straight from the netty thread, so ping floods cost next to nothing.
+     * If the cache is enabled, server list pings never reach the packet listeners, the STATUS packet events aren't called.
+     * While a response is cached, minecraft doesn't process the status requests either,
+     * so the Bukkit ServerListPingEvent isn't called for them
+     * and the player count shown in the server list might be outdated for up to the cache time.
+     * A value of 0 disables the cache.
+     *
+     * @param serverInfoCacheTime Cache time in milliseconds.
+     * @return Settings instance.
+     */
+    public PacketEventsSettings serverInfoCacheTime(int serverInfoCacheTime) {
+        if (!locked) {
+            this.serverInfoCacheTime = Math.max(0, serverInfoCacheTime);
+        }
+        return this;
+    }
+
+    /**
+     * This decides if the packets you send with the {@link io.github.retrooper.packetevents.utils.player.PlayerUtils}
+     * should go through the outbound scheduler of the receiver.
+     * If a client can't keep up, your packets are queued by their priority instead of piling up in netty's outbound buffer,
+     * expendable packets (particles, sounds) are dropped and redundant entity updates are coalesced.
+     *
+     * @param outboundScheduling Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.utils.netty.channel.OutboundScheduler
+     */
+    public PacketEventsSettings outboundScheduling(boolean outboundScheduling) {
+        if (!locked) {
+            this.outboundScheduling = outboundScheduling;
+        }
+        return this;
+    }
+
+    /**
+     * This decides if PacketEvents should track the entities every client has spawned
+     * and their positions the client has last been told about.
+     * The trackers are updated with the entity spawn, move, teleport and destroy packets sent to the clients.
+     *
+     * @param entityTracking Value
+     * @return Settings instance.
+     * @see io.github.retrooper.packetevents.utils.player.User#getEntityTracker()
+     */
+    public PacketEventsSettings entityTracking(boolean entityTracking) {
+        if (!locked) {
+            this.entityTracking = entityTracking;
+        }
+        return this;
+    }
+
     /**
      * Are the settings locked?
      *
@@ -189,4 +388,85 @@ public class PacketEventsSettings {
     public boolean isbStatsEnabled() {
         return bStatsEnabled;
     }
+
+    /**
+     * Should we recycle PLAY packet events?
+     *
+     * @return Getter for {@link #pooledEvents}
+     */
+    public boolean shouldPoolEvents() {
+        return pooledEvents;
+    }
+
+    /**
+     * Should we detect listeners accessing recycled events?
+     *
+     * @return Getter for {@link #pooledEventsDebug}
+     */
+    public boolean isPooledEventsDebugEnabled() {
+        return pooledEventsDebug;
+    }
+
+    /**
+     * Should we record packet metrics?
+     *
+     * @return Getter for {@link #packetMetrics}
+     */
+    public boolean shouldRecordPacketMetrics() {
+        return packetMetrics;
+    }
+
+    /**
+     * Amount of async listener threads.
+     *
+     * @return Getter for {@link #asyncListenerThreads}
+     */
+    public int getAsyncListenerThreads() {
+        return asyncListenerThreads;
+    }
+
+    /**
+     * Event queue capacity of every async listener thread.
+     *
+     * @return Getter for {@link #asyncListenerQueueCapacity}
+     */
+    public int getAsyncListenerQueueCapacity() {
+        return asyncListenerQueueCapacity;
+    }
+
+    /**
+     * Should we coalesce the packets sent on the main thread until the end of the tick?
+     *
+     * @return Getter for {@link #tickPacketBatching}
+     */
+    public boolean isTickPacketBatchingEnabled() {
+        return tickPacketBatching;
+    }
+
+    /**
+     * How long should we reuse an encoded SERVER_INFO response?
+     *
+     * @return Getter for {@link #serverInfoCacheTime}
+     */
+    public int getServerInfoCacheTime() {
+        return serverInfoCacheTime;
+    }
+
+    /**
+     * Should the packets sent with PacketEvents be scheduled by the writability of the receiver's channel?
+     *
+     * @return Getter for {@link #outboundScheduling}
+     */
+    public boolean shouldScheduleOutboundPackets() {
+        return outboundScheduling;
+    }
+
+    /**
+     * Should PacketEvents track what every client believes about the entities around it?
+     *
+     * @return Getter for {@link #entityTracking}
+     */
+    public boolean shouldTrackEntities() {
+        return entityTracking;
+    }
 }
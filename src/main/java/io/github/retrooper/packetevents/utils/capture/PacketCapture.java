@@ -0,0 +1,442 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.capture;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.utils.player.User;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Packet capture recording the packet streams of the connections into memory-mapped ring files.
+ * Every packet passing through the netty pipeline is recorded with a nanosecond timestamp, its connection,
+ * direction, state and packet ID. Every event dispatch is recorded with the time the listeners spent and the outcome.
+ * Recording never blocks a netty thread: a record is written into the mapped file with a single atomic reservation,
+ * the next file is mapped in the background, if it isn't ready in time the record is dropped.
+ * Once the last file is full, the capture wraps around and overwrites the first one.
+ * <p>
+ * A capture file consists of a {@value #HEADER_SIZE} byte header followed by records of {@value #RECORD_SIZE} bytes (big endian).
+ * The header contains the {@link #MAGIC}, the {@link #FORMAT_VERSION} (short), the record size (short),
+ * the sequence number of the file (long), the start time of the capture in epoch milliseconds (long) and the amount of files (int).
+ * A record contains the nanoseconds since the start of the capture (long), the connection ID (int),
+ * the dispatch time in nanoseconds (int, 0 for packet records), the record type (byte), the packet ID (byte),
+ * the ordinal of the packet state (byte) and the flags (byte).
+ * Records of type 0 haven't been written (yet).
+ *
+ * @author retrooper
+ * @see PacketEvents#getPacketCapture()
+ * @since 1.8
+ */
+public class PacketCapture {
+    public static final int MAGIC = 0x50454350;
+    public static final short FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 20;
+    /**
+     * A packet passed through the netty pipeline.
+     */
+    public static final byte RECORD_PACKET = 1;
+    /**
+     * A packet event has been dispatched to the listeners.
+     */
+    public static final byte RECORD_DISPATCH = 2;
+    public static final byte FLAG_SERVER_BOUND = 1;
+    public static final byte FLAG_CANCELLED = 2;
+    private static final int MAP_ATTEMPTS = 3;
+    private final LongAdder records = new LongAdder();
+    private final LongAdder droppedRecords = new LongAdder();
+    private volatile Session session;
+    private volatile boolean allConnections = true;
+    /**
+     * Captured packet IDs indexed by the unsigned packet ID, null if every packet is captured.
+     */
+    private volatile boolean[] packetTypes;
+
+    /**
+     * Start capturing into ring files in a directory.
+     * A running capture is stopped first.
+     *
+     * @param directory   Directory of the capture files.
+     * @param fileSize    Size of every capture file in bytes.
+     * @param files       Amount of capture files in the ring.
+     * @throws IOException If the first capture file couldn't be mapped.
+     */
+    public synchronized void start(File directory, int fileSize, int files) throws IOException {
+        if (fileSize < HEADER_SIZE + RECORD_SIZE || files < 2) {
+            throw new IllegalArgumentException("A capture needs at least two files with room for a record!");
+        }
+        stop();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create the capture directory " + directory);
+        }
+        records.reset();
+        droppedRecords.reset();
+        session = new Session(this, directory, fileSize, files);
+    }
+
+    /**
+     * Stop capturing.
+     * The capture files stay on the disk.
+     */
+    public synchronized void stop() {
+        Session session = this.session;
+        if (session != null) {
+            this.session = null;
+            session.close();
+        }
+    }
+
+    /**
+     * Stop a session which couldn't map its next file.
+     *
+     * @param failed Failed session.
+     */
+    private synchronized void fail(Session failed) {
+        if (session == failed) {
+            session = null;
+        }
+        failed.abort();
+    }
+
+    public boolean isRunning() {
+        return session != null;
+    }
+
+    /**
+     * Decide if every connection is captured or only the connections marked with {@link #setCaptured(Player, boolean)}.
+     *
+     * @param allConnections Should we capture every connection?
+     */
+    public void setCaptureAllConnections(boolean allConnections) {
+        this.allConnections = allConnections;
+    }
+
+    public boolean isCapturingAllConnections() {
+        return allConnections;
+    }
+
+    /**
+     * Mark a player to be captured, if not every connection is captured.
+     *
+     * @param player   Player.
+     * @param captured Should the player be captured?
+     * @see #setCaptureAllConnections(boolean)
+     */
+    public void setCaptured(Player player, boolean captured) {
+        User user = PacketEvents.get().getPlayerUtils().getUser(player);
+        if (user != null) {
+            user.setCaptured(captured);
+        }
+    }
+
+    /**
+     * Only capture the given packet types.
+     *
+     * @param packetIDs Captured packet IDs, no packet IDs to capture every packet type.
+     */
+    public void setCapturedPacketTypes(byte... packetIDs) {
+        if (packetIDs.length == 0) {
+            packetTypes = null;
+            return;
+        }
+        boolean[] packetTypes = new boolean[256];
+        for (byte packetID : packetIDs) {
+            packetTypes[packetID & 0xFF] = true;
+        }
+        this.packetTypes = packetTypes;
+    }
+
+    /**
+     * Is a connection captured?
+     * This is used internally, do NOT call this method.
+     *
+     * @param user Connection state.
+     * @return Should the packets of the connection be captured?
+     */
+    public boolean isCapturing(@Nullable User user) {
+        return session != null && user != null && (allConnections || user.isCaptured());
+    }
+
+    /**
+     * Record a packet passing through the netty pipeline.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user        Connection state.
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     * @param packetID    Packet ID.
+     */
+    public void recordPacket(User user, PacketState state, boolean serverBound, byte packetID) {
+        record(RECORD_PACKET, user, state, packetID, serverBound ? FLAG_SERVER_BOUND : 0, 0);
+    }
+
+    /**
+     * Record a packet event dispatch.
+     * This is used internally, do NOT call this method.
+     *
+     * @param user        Connection state.
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     * @param packetID    Packet ID.
+     * @param nanos       Time the listeners spent processing the event.
+     * @param cancelled   Did the listeners cancel the event?
+     */
+    public void recordDispatch(User user, PacketState state, boolean serverBound, byte packetID, long nanos, boolean cancelled) {
+        int flags = (serverBound ? FLAG_SERVER_BOUND : 0) | (cancelled ? FLAG_CANCELLED : 0);
+        record(RECORD_DISPATCH, user, state, packetID, flags, (int) Math.min(nanos, Integer.MAX_VALUE));
+    }
+
+    private void record(byte type, User user, PacketState state, byte packetID, int flags, int value) {
+        Session session = this.session;
+        if (session == null) {
+            return;
+        }
+        boolean[] packetTypes = this.packetTypes;
+        if (packetTypes != null && !packetTypes[packetID & 0xFF]) {
+            return;
+        }
+        if (session.write(type, user.getId(), state, packetID, (byte) flags, value)) {
+            records.increment();
+        } else {
+            droppedRecords.increment();
+        }
+    }
+
+    /**
+     * Amount of records written since the capture has been started.
+     *
+     * @return Written records.
+     */
+    public long getRecords() {
+        return records.sum();
+    }
+
+    /**
+     * Amount of records dropped since the capture has been started, because the next file wasn't mapped in time.
+     *
+     * @return Dropped records.
+     */
+    public long getDroppedRecords() {
+        return droppedRecords.sum();
+    }
+
+    private static final class Segment {
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position = new AtomicInteger(HEADER_SIZE);
+        private final int capacity;
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        private boolean isFull() {
+            return position.get() + RECORD_SIZE > capacity;
+        }
+
+        /**
+         * Reserve room for a record.
+         * The position never moves past the capacity, so a full file stays full no matter how often we are called.
+         *
+         * @return Position of the record, -1 if the file is full.
+         */
+        private int reserve() {
+            while (true) {
+                int position = this.position.get();
+                if (position + RECORD_SIZE > capacity) {
+                    return -1;
+                }
+                if (this.position.compareAndSet(position, position + RECORD_SIZE)) {
+                    return position;
+                }
+            }
+        }
+    }
+
+    private static final class Session {
+        private final PacketCapture capture;
+        private final File directory;
+        private final int fileSize;
+        private final int files;
+        private final long startNanos = System.nanoTime();
+        private final long startMillis = System.currentTimeMillis();
+        private final AtomicReference<Segment> current = new AtomicReference<>();
+        private final AtomicReference<Segment> next = new AtomicReference<>();
+        private final ExecutorService mapper = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "packetevents-capture");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private long sequence;
+
+        private Session(PacketCapture capture, File directory, int fileSize, int files) throws IOException {
+            this.capture = capture;
+            this.directory = directory;
+            this.fileSize = fileSize;
+            this.files = files;
+            current.set(map(0));
+            mapper.execute(this::prepareNext);
+        }
+
+        private boolean write(byte type, int connectionID, PacketState state, byte packetID, byte flags, int value) {
+            long timestamp = System.nanoTime() - startNanos;
+            while (true) {
+                Segment segment = current.get();
+                if (segment == null) {
+                    //The capture has been stopped.
+                    return false;
+                }
+                int position = segment.reserve();
+                if (position != -1) {
+                    MappedByteBuffer buffer = segment.buffer;
+                    buffer.putLong(position, timestamp);
+                    buffer.putInt(position + 8, connectionID);
+                    buffer.putInt(position + 12, value);
+                    buffer.put(position + 17, packetID);
+                    buffer.put(position + 18, state == null ? -1 : (byte) state.ordinal());
+                    buffer.put(position + 19, flags);
+                    //The type is written last, a reader skips records of type 0.
+                    buffer.put(position + 16, type);
+                    return true;
+                }
+                if (!rotate(segment)) {
+                    //The next file isn't mapped yet, we don't wait for it.
+                    return false;
+                }
+            }
+        }
+
+        private boolean rotate(Segment full) {
+            if (current.get() != full) {
+                return true;
+            }
+            Segment next = this.next.getAndSet(null);
+            if (next == null) {
+                return false;
+            }
+            if (current.compareAndSet(full, next)) {
+                try {
+                    mapper.execute(this::prepareNext);
+                } catch (RejectedExecutionException ex) {
+                    //The capture is being stopped.
+                }
+            } else {
+                this.next.set(next);
+            }
+            return true;
+        }
+
+        private void prepareNext() {
+            long sequence = ++this.sequence;
+            Segment segment = null;
+            for (int attempt = 1; segment == null; attempt++) {
+                try {
+                    segment = map(sequence);
+                } catch (IOException ex) {
+                    if (attempt >= MAP_ATTEMPTS) {
+                        PacketEvents.get().getPlugin().getLogger().severe("[packetevents] Failed to map the capture file "
+                                + (sequence % files) + " in " + directory + ", stopping the packet capture: " + ex);
+                        capture.fail(this);
+                        return;
+                    }
+                    PacketEvents.get().getPlugin().getLogger().warning("[packetevents] Failed to map the capture file "
+                            + (sequence % files) + " in " + directory + " (attempt " + attempt + "/" + MAP_ATTEMPTS + "), retrying: " + ex);
+                    try {
+                        Thread.sleep(100L * attempt);
+                    } catch (InterruptedException e) {
+                        //The capture is being stopped.
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            next.set(segment);
+            Segment current = this.current.get();
+            if (current != null && current.isFull()) {
+                //Every writer gave up on the full file, so we have to switch ourselves.
+                rotate(current);
+            }
+        }
+
+        private Segment map(long sequence) throws IOException {
+            File file = new File(directory, "capture-" + (sequence % files) + ".pecap");
+            MappedByteBuffer buffer;
+            //The mapping stays valid after the file channel has been closed.
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            }
+            //We might be overwriting an older file of the ring.
+            for (int i = HEADER_SIZE; i + 8 <= fileSize; i += 8) {
+                buffer.putLong(i, 0L);
+            }
+            for (int i = fileSize - fileSize % 8; i < fileSize; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, FORMAT_VERSION);
+            buffer.putShort(6, (short) RECORD_SIZE);
+            buffer.putLong(8, sequence);
+            buffer.putLong(16, startMillis);
+            buffer.putInt(24, files);
+            buffer.putInt(28, 0);
+            return new Segment(buffer);
+        }
+
+        private void close() {
+            mapper.shutdown();
+            try {
+                mapper.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            release();
+        }
+
+        /**
+         * Stop the session from the mapper thread, we can't wait for ourselves to terminate.
+         */
+        private void abort() {
+            mapper.shutdown();
+            release();
+        }
+
+        private void release() {
+            Segment segment = current.getAndSet(null);
+            next.set(null);
+            if (segment != null) {
+                segment.buffer.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.capture;
+
+import io.github.retrooper.packetevents.packettype.PacketState;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reader of the files written by the {@link PacketCapture}.
+ * The reader doesn't need a server, so captures can be analyzed or replayed offline.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public final class PacketCaptureReader {
+    private static final PacketState[] STATES = PacketState.values();
+
+    private PacketCaptureReader() {
+    }
+
+    /**
+     * A single record of a capture.
+     */
+    public static final class Record {
+        private final long timestamp;
+        private final int connectionID;
+        private final int dispatchNanos;
+        private final byte type;
+        private final byte packetID;
+        private final PacketState state;
+        private final byte flags;
+
+        private Record(ByteBuffer buffer, int position) {
+            this.timestamp = buffer.getLong(position);
+            this.connectionID = buffer.getInt(position + 8);
+            this.dispatchNanos = buffer.getInt(position + 12);
+            this.type = buffer.get(position + 16);
+            this.packetID = buffer.get(position + 17);
+            int state = buffer.get(position + 18);
+            this.state = state >= 0 && state < STATES.length ? STATES[state] : null;
+            this.flags = buffer.get(position + 19);
+        }
+
+        /**
+         * Time of the record.
+         *
+         * @return Nanoseconds since the start of the capture.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getConnectionId() {
+            return connectionID;
+        }
+
+        /**
+         * Time the listeners spent processing the event.
+         *
+         * @return Dispatch time in nanoseconds, 0 if this isn't a dispatch record.
+         */
+        public int getDispatchNanos() {
+            return dispatchNanos;
+        }
+
+        /**
+         * Record type.
+         *
+         * @return {@link PacketCapture#RECORD_PACKET} or {@link PacketCapture#RECORD_DISPATCH}.
+         */
+        public byte getType() {
+            return type;
+        }
+
+        public byte getPacketId() {
+            return packetID;
+        }
+
+        @Nullable
+        public PacketState getState() {
+            return state;
+        }
+
+        public boolean isServerBound() {
+            return (flags & PacketCapture.FLAG_SERVER_BOUND) != 0;
+        }
+
+        public boolean isCancelled() {
+            return (flags & PacketCapture.FLAG_CANCELLED) != 0;
+        }
+    }
+
+    /**
+     * Read every record of the capture in a directory, ordered by their timestamps.
+     * Files left over from older captures in the same directory are skipped.
+     *
+     * @param directory Capture directory.
+     * @return Records.
+     * @throws IOException If a capture file couldn't be read.
+     */
+    public static List<Record> read(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".pecap"));
+        List<ByteBuffer> buffers = new ArrayList<>();
+        long captureStart = Long.MIN_VALUE;
+        if (files != null) {
+            for (File file : files) {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+                if (buffer.capacity() < PacketCapture.HEADER_SIZE || buffer.getInt(0) != PacketCapture.MAGIC) {
+                    continue;
+                }
+                if (buffer.getShort(4) != PacketCapture.FORMAT_VERSION || buffer.getShort(6) != PacketCapture.RECORD_SIZE) {
+                    throw new IOException("Unsupported capture format in " + file);
+                }
+                buffers.add(buffer);
+                captureStart = Math.max(captureStart, buffer.getLong(16));
+            }
+        }
+        List<Record> records = new ArrayList<>();
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.getLong(16) != captureStart) {
+                continue;
+            }
+            for (int position = PacketCapture.HEADER_SIZE; position + PacketCapture.RECORD_SIZE <= buffer.capacity();
+                 position += PacketCapture.RECORD_SIZE) {
+                if (buffer.get(position + 16) == 0) {
+                    //Records that were reserved but never written also end up here.
+                    continue;
+                }
+                records.add(new Record(buffer, position));
+            }
+        }
+        //Netty threads write concurrently, so the records of a file aren't strictly ordered.
+        records.sort(Comparator.comparingLong(Record::getTimestamp));
+        return records;
+    }
+}
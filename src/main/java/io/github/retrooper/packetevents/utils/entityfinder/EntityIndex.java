@@ -0,0 +1,382 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.entityfinder;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.utils.boundingbox.BoundingBox;
+import io.github.retrooper.packetevents.utils.reflection.Reflection;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventException;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the loaded entities by their entity ID.
+ * The entities are kept in {@link EntityTable}s keyed by the primitive entity ID,
+ * a lookup is a single probe sequence without boxing the ID.
+ * Next to the table of every entity there is a table per world, so the entities of a world can be listed without reflection.
+ * Lookups never block and can be done on any thread, for example while processing a USE_ENTITY packet on a netty thread.
+ * The index is updated on the main thread by the spawn, remove and chunk (un)load hooks of PacketEvents.
+ * Entities that vanish without an event are removed by a periodic sweep.
+ * The index also publishes the dimensions of every entity, they are read from the bounding box on the main thread
+ * so other threads never read the live bounding box of an entity.
+ * Entities whose size can change (slimes, babies, armor stands, ...) are refreshed every second, every other entity with the sweep.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public final class EntityIndex implements Listener {
+    /**
+     * Ticks between sweeps removing the entities that have been removed without an event.
+     */
+    private static final long SWEEP_INTERVAL = 600L;
+    /**
+     * Ticks between refreshing the dimensions of the entities whose size can change.
+     */
+    private static final long RESIZE_INTERVAL = 20L;
+    /**
+     * Bukkit entity classes whose size can change after they have been spawned, the ones that don't exist on this server are left out.
+     */
+    private static final Class<?>[] RESIZABLE_ENTITY_CLASSES = resolveClasses("org.bukkit.entity.Ageable",
+            "org.bukkit.entity.Zombie", "org.bukkit.entity.Slime", "org.bukkit.entity.ArmorStand",
+            "org.bukkit.entity.Phantom", "org.bukkit.entity.PufferFish");
+    private final EntityTable entities = new EntityTable();
+    private final Map<UUID, EntityTable> worlds = new ConcurrentHashMap<>();
+    private volatile BukkitTask sweepTask;
+    private volatile BukkitTask resizeTask;
+
+    /**
+     * Index every loaded entity and start keeping the index up to date.
+     * This is used internally, do NOT call this method.
+     *
+     * @param plugin Plugin registering the hooks.
+     */
+    public void start(Plugin plugin) {
+        if (sweepTask != null) {
+            return;
+        }
+        for (World world : Bukkit.getWorlds()) {
+            addAll(world.getEntities());
+        }
+        //Since 1.17 the entities of a chunk are loaded separately, these events don't exist on older versions.
+        registerEntitiesEvent(plugin, "org.bukkit.event.world.EntitiesLoadEvent", true);
+        registerEntitiesEvent(plugin, "org.bukkit.event.world.EntitiesUnloadEvent", false);
+        sweepTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL);
+        resizeTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refreshResizableDimensions, RESIZE_INTERVAL, RESIZE_INTERVAL);
+    }
+
+    /**
+     * Stop updating the index and clear it.
+     * This is used internally, do NOT call this method.
+     */
+    public void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+        if (resizeTask != null) {
+            resizeTask.cancel();
+            resizeTask = null;
+        }
+        clear();
+    }
+
+    /**
+     * Is the index being kept up to date?
+     *
+     * @return Has the index been started?
+     */
+    public boolean isRunning() {
+        return sweepTask != null;
+    }
+
+    /**
+     * Get a loaded entity by its entity ID.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Entity, null if no loaded entity has the ID.
+     */
+    @Nullable
+    public Entity get(int entityID) {
+        return entities.get(entityID);
+    }
+
+    /**
+     * Get a loaded entity of a world by its entity ID.
+     * This can be called on any thread.
+     *
+     * @param world    World
+     * @param entityID Entity ID.
+     * @return Entity, null if no loaded entity in the world has the ID.
+     */
+    @Nullable
+    public Entity get(World world, int entityID) {
+        EntityTable table = worlds.get(world.getUID());
+        return table != null ? table.get(entityID) : null;
+    }
+
+    /**
+     * Get a snapshot of the loaded entities of a world.
+     * The snapshot is shared until the entities of the world change, iterating it doesn't copy anything.
+     * This can be called on any thread.
+     *
+     * @param world World
+     * @return Read-only list of the entities.
+     */
+    public List<Entity> getEntities(World world) {
+        EntityTable table = worlds.get(world.getUID());
+        return table != null ? table.snapshot() : Collections.emptyList();
+    }
+
+    /**
+     * Get the width of a loaded entity.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Width of the entity when it has last been read on the main thread, NaN if unknown.
+     */
+    public double getWidth(int entityID) {
+        long dimensions = entities.getAttachment(entityID);
+        return dimensions == EntityTable.NO_ATTACHMENT ? Double.NaN : Float.intBitsToFloat((int) (dimensions >>> 32));
+    }
+
+    /**
+     * Get the height of a loaded entity.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Height of the entity when it has last been read on the main thread, NaN if unknown.
+     */
+    public double getHeight(int entityID) {
+        long dimensions = entities.getAttachment(entityID);
+        return dimensions == EntityTable.NO_ATTACHMENT ? Double.NaN : Float.intBitsToFloat((int) dimensions);
+    }
+
+    /**
+     * Add an entity to the index.
+     * An entity with the same ID is replaced.
+     *
+     * @param entity Entity
+     */
+    public synchronized void add(Entity entity) {
+        //The bounding box may only be read on the main thread, where the entity is ticked, the sweep reads it later otherwise.
+        entities.add(entity, Bukkit.isPrimaryThread() ? readDimensions(entity) : EntityTable.NO_ATTACHMENT);
+        World world = entity.getWorld();
+        if (world != null) {
+            worlds.computeIfAbsent(world.getUID(), uuid -> new EntityTable()).add(entity);
+        }
+    }
+
+    public synchronized void addAll(Iterable<? extends Entity> entities) {
+        for (Entity entity : entities) {
+            add(entity);
+        }
+    }
+
+    public synchronized void addAll(Entity[] entities) {
+        for (Entity entity : entities) {
+            add(entity);
+        }
+    }
+
+    /**
+     * Remove an entity from the index.
+     *
+     * @param entityID Entity ID.
+     * @return Removed entity, null if no entity with the ID has been indexed.
+     */
+    @Nullable
+    public synchronized Entity remove(int entityID) {
+        Entity entity = entities.remove(entityID);
+        if (entity != null) {
+            for (EntityTable table : worlds.values()) {
+                if (table.remove(entityID) != null) {
+                    break;
+                }
+            }
+        }
+        return entity;
+    }
+
+    public synchronized void removeAll(Iterable<? extends Entity> entities) {
+        for (Entity entity : entities) {
+            remove(entity.getEntityId());
+        }
+    }
+
+    public synchronized void removeAll(Entity[] entities) {
+        for (Entity entity : entities) {
+            remove(entity.getEntityId());
+        }
+    }
+
+    /**
+     * Move an entity to the table of the world it is in now.
+     *
+     * @param entity Entity
+     * @param from   World the entity was in before.
+     */
+    public synchronized void changeWorld(Entity entity, World from) {
+        EntityTable table = worlds.get(from.getUID());
+        if (table != null) {
+            table.remove(entity.getEntityId());
+        }
+        add(entity);
+    }
+
+    /**
+     * Remove a world and all of its entities, for example after the world has been unloaded.
+     *
+     * @param world World
+     */
+    public synchronized void removeWorld(World world) {
+        EntityTable table = worlds.remove(world.getUID());
+        if (table != null) {
+            for (Entity entity : table.snapshot()) {
+                entities.remove(entity.getEntityId());
+            }
+        }
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public synchronized void clear() {
+        entities.clear();
+        worlds.clear();
+    }
+
+    /**
+     * Remove the entities that have been removed from their world without an event
+     * and move the entities that changed their world without an event.
+     * Players stay indexed until they quit, they are invalid while they are dead.
+     */
+    public synchronized void sweep() {
+        entities.removeIf(entity -> !(entity instanceof Player) && !entity.isValid());
+        List<Entity> movedEntities = new ArrayList<>();
+        for (Map.Entry<UUID, EntityTable> entry : worlds.entrySet()) {
+            UUID worldID = entry.getKey();
+            entry.getValue().removeIf(entity -> {
+                if (entities.get(entity.getEntityId()) != entity) {
+                    return true;
+                }
+                World world = entity.getWorld();
+                if (world != null && !world.getUID().equals(worldID)) {
+                    movedEntities.add(entity);
+                    return true;
+                }
+                return false;
+            });
+        }
+        addAll(movedEntities);
+        for (Entity entity : entities.snapshot()) {
+            entities.setAttachment(entity.getEntityId(), readDimensions(entity));
+        }
+    }
+
+    /**
+     * Refresh the dimensions of the entities whose size can change.
+     * This has to be called on the main thread.
+     */
+    private void refreshResizableDimensions() {
+        if (RESIZABLE_ENTITY_CLASSES.length == 0) {
+            return;
+        }
+        for (Entity entity : entities.snapshot()) {
+            for (Class<?> resizableClass : RESIZABLE_ENTITY_CLASSES) {
+                if (resizableClass.isInstance(entity)) {
+                    entities.setAttachment(entity.getEntityId(), readDimensions(entity));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the dimensions of an entity from its bounding box.
+     * This has to be called on the main thread.
+     *
+     * @param entity Entity
+     * @return Width and height packed into a long, {@link EntityTable#NO_ATTACHMENT} if the bounding box couldn't be read.
+     */
+    private static long readDimensions(Entity entity) {
+        BoundingBox boundingBox;
+        try {
+            boundingBox = PacketEvents.get().getServerUtils().getEntityBoundingBox(entity);
+        } catch (Exception ex) {
+            return EntityTable.NO_ATTACHMENT;
+        }
+        return ((long) Float.floatToIntBits((float) boundingBox.getWidthX()) << 32)
+                | (Float.floatToIntBits((float) boundingBox.getHeight()) & 0xFFFFFFFFL);
+    }
+
+    private static Class<?>[] resolveClasses(String... classNames) {
+        List<Class<?>> classes = new ArrayList<>(classNames.length);
+        for (String className : classNames) {
+            Class<?> resolvedClass = Reflection.getClassByNameWithoutException(className);
+            if (resolvedClass != null) {
+                classes.add(resolvedClass);
+            }
+        }
+        return classes.toArray(new Class<?>[0]);
+    }
+
+    private void registerEntitiesEvent(Plugin plugin, String eventClassName, boolean load) {
+        Class<?> eventClass = Reflection.getClassByNameWithoutException(eventClassName);
+        if (eventClass == null) {
+            return;
+        }
+        Method getEntities = Reflection.getMethod(eventClass, "getEntities", 0);
+        @SuppressWarnings("unchecked")
+        Class<? extends Event> entitiesEventClass = (Class<? extends Event>) eventClass;
+        Bukkit.getPluginManager().registerEvent(entitiesEventClass, this, EventPriority.MONITOR, (listener, event) -> {
+            if (!eventClass.isInstance(event)) {
+                return;
+            }
+            try {
+                @SuppressWarnings("unchecked")
+                Iterable<? extends Entity> entities = (Iterable<? extends Entity>) getEntities.invoke(event);
+                if (load) {
+                    addAll(entities);
+                } else {
+                    removeAll(entities);
+                }
+            } catch (Exception ex) {
+                throw new EventException(ex);
+            }
+        }, plugin);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.entityfinder;
+
+import org.bukkit.entity.Entity;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Open-addressing hash table of entities keyed by their primitive entity ID.
+ * Lookups and snapshots never block and can be done on any thread, modifications are synchronized.
+ * Every entity can carry a primitive long attachment, for example its dimensions.
+ *
+ * @author retrooper
+ * @see EntityIndex
+ * @since 1.8
+ */
+public final class EntityTable {
+    /**
+     * Attachment of entities that haven't been given one.
+     */
+    public static final long NO_ATTACHMENT = Long.MIN_VALUE;
+    private static final Object TOMBSTONE = new Object();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Entity[] EMPTY_SNAPSHOT = new Entity[0];
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    //Null if the table has been modified since the last snapshot
+    private volatile List<Entity> snapshot = Collections.emptyList();
+    //Guarded by this table
+    private int size, tombstones;
+
+    /**
+     * Get an entity by its entity ID.
+     *
+     * @param entityID Entity ID.
+     * @return Entity, null if no entity in this table has the ID.
+     */
+    @Nullable
+    public Entity get(int entityID) {
+        Table table = this.table;
+        int mask = table.mask;
+        for (int index = hash(entityID) & mask; ; index = (index + 1) & mask) {
+            //The value is published after the key, so we read it first.
+            Object value = table.values.get(index);
+            if (value == null) {
+                return null;
+            }
+            if (table.keys[index] == entityID && value != TOMBSTONE) {
+                Entity entity = (Entity) value;
+                //The slot might have been reused for another entity while we were reading it.
+                if (entity.getEntityId() == entityID) {
+                    return entity;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the attachment of an entity.
+     *
+     * @param entityID Entity ID.
+     * @return Attachment, {@link #NO_ATTACHMENT} if no entity in this table has the ID or it has no attachment.
+     */
+    public long getAttachment(int entityID) {
+        Table table = this.table;
+        int mask = table.mask;
+        for (int index = hash(entityID) & mask; ; index = (index + 1) & mask) {
+            Object value = table.values.get(index);
+            if (value == null) {
+                return NO_ATTACHMENT;
+            }
+            if (table.keys[index] == entityID && value != TOMBSTONE) {
+                long attachment = table.attachments.get(index);
+                //The attachment only belongs to the entity if the slot hasn't been reused while we were reading it.
+                if (table.values.get(index) == value && ((Entity) value).getEntityId() == entityID) {
+                    return attachment;
+                }
+                return NO_ATTACHMENT;
+            }
+        }
+    }
+
+    /**
+     * Set the attachment of an entity in this table.
+     *
+     * @param entityID   Entity ID.
+     * @param attachment Attachment.
+     * @return Is an entity with the ID in this table?
+     */
+    public synchronized boolean setAttachment(int entityID, long attachment) {
+        Table table = this.table;
+        int mask = table.mask;
+        for (int index = hash(entityID) & mask; ; index = (index + 1) & mask) {
+            Object value = table.values.get(index);
+            if (value == null) {
+                return false;
+            }
+            if (value != TOMBSTONE && table.keys[index] == entityID) {
+                table.attachments.set(index, attachment);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of the entities in this table.
+     * The snapshot is only rebuilt if the table has been modified since the last snapshot.
+     *
+     * @return Read-only list of the entities.
+     */
+    public List<Entity> snapshot() {
+        List<Entity> snapshot = this.snapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (this) {
+            if (this.snapshot == null) {
+                Table table = this.table;
+                Entity[] entities = size == 0 ? EMPTY_SNAPSHOT : new Entity[size];
+                int count = 0;
+                for (int index = 0; index < table.values.length(); index++) {
+                    Object value = table.values.get(index);
+                    if (value != null && value != TOMBSTONE) {
+                        entities[count++] = (Entity) value;
+                    }
+                }
+                this.snapshot = Collections.unmodifiableList(Arrays.asList(entities));
+            }
+            return this.snapshot;
+        }
+    }
+
+    /**
+     * Add an entity without an attachment to the table.
+     * An entity with the same ID is replaced.
+     *
+     * @param entity Entity
+     */
+    public void add(Entity entity) {
+        add(entity, NO_ATTACHMENT);
+    }
+
+    /**
+     * Add an entity to the table.
+     * An entity with the same ID is replaced.
+     *
+     * @param entity     Entity
+     * @param attachment Attachment of the entity.
+     */
+    public synchronized void add(Entity entity, long attachment) {
+        int entityID = entity.getEntityId();
+        Table table = this.table;
+        int mask = table.mask;
+        int freeIndex = -1;
+        int index = hash(entityID) & mask;
+        for (; ; index = (index + 1) & mask) {
+            Object value = table.values.get(index);
+            if (value == null) {
+                break;
+            }
+            if (value == TOMBSTONE) {
+                if (freeIndex == -1) {
+                    freeIndex = index;
+                }
+            } else if (table.keys[index] == entityID) {
+                table.attachments.set(index, attachment);
+                table.values.set(index, entity);
+                invalidateSnapshot();
+                return;
+            }
+        }
+        if (freeIndex != -1) {
+            tombstones--;
+            index = freeIndex;
+        }
+        table.keys[index] = entityID;
+        table.attachments.set(index, attachment);
+        table.values.set(index, entity);
+        size++;
+        invalidateSnapshot();
+        if ((size + tombstones) * 2 > table.values.length()) {
+            resize();
+        }
+    }
+
+    /**
+     * Remove an entity from the table.
+     *
+     * @param entityID Entity ID.
+     * @return Removed entity, null if no entity with the ID is in this table.
+     */
+    @Nullable
+    public synchronized Entity remove(int entityID) {
+        Table table = this.table;
+        int mask = table.mask;
+        for (int index = hash(entityID) & mask; ; index = (index + 1) & mask) {
+            Object value = table.values.get(index);
+            if (value == null) {
+                return null;
+            }
+            if (value != TOMBSTONE && table.keys[index] == entityID) {
+                removeAt(table, index);
+                return (Entity) value;
+            }
+        }
+    }
+
+    /**
+     * Remove every entity matching a filter.
+     *
+     * @param filter Filter
+     * @return Amount of removed entities.
+     */
+    public synchronized int removeIf(Predicate<? super Entity> filter) {
+        Table table = this.table;
+        int removed = 0;
+        for (int index = 0; index < table.values.length(); index++) {
+            Object value = table.values.get(index);
+            if (value != null && value != TOMBSTONE && filter.test((Entity) value)) {
+                removeAt(table, index);
+                removed++;
+            }
+        }
+        if (tombstones > size) {
+            resize();
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+        tombstones = 0;
+        invalidateSnapshot();
+    }
+
+    private void removeAt(Table table, int index) {
+        table.values.set(index, TOMBSTONE);
+        size--;
+        tombstones++;
+        invalidateSnapshot();
+    }
+
+    private void invalidateSnapshot() {
+        snapshot = null;
+    }
+
+    private void resize() {
+        Table oldTable = table;
+        int capacity = oldTable.values.length();
+        //Only grow if the table is mostly filled by entities, otherwise we just get rid of the tombstones.
+        while (size * 4 > capacity) {
+            capacity <<= 1;
+        }
+        while (capacity > INITIAL_CAPACITY && size * 8 < capacity) {
+            capacity >>>= 1;
+        }
+        Table newTable = new Table(capacity);
+        int mask = newTable.mask;
+        for (int i = 0; i < oldTable.values.length(); i++) {
+            Object value = oldTable.values.get(i);
+            if (value != null && value != TOMBSTONE) {
+                int entityID = oldTable.keys[i];
+                int index = hash(entityID) & mask;
+                while (newTable.values.get(index) != null) {
+                    index = (index + 1) & mask;
+                }
+                newTable.keys[index] = entityID;
+                newTable.attachments.set(index, oldTable.attachments.get(i));
+                newTable.values.set(index, value);
+            }
+        }
+        tombstones = 0;
+        //Readers still probing the old table see the entities that were in it before the resize.
+        table = newTable;
+    }
+
+    private static int hash(int entityID) {
+        //Entity IDs are sequential, spread them over the whole table.
+        int hash = entityID * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Table {
+        private final int[] keys;
+        private final AtomicReferenceArray<Object> values;
+        private final AtomicLongArray attachments;
+        private final int mask;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            attachments = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.entitytracker;
+
+import io.github.retrooper.packetevents.utils.boundingbox.BoundingBox;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Tracks what a client believes about the entities around it.
+ * The tracker is updated with the entity packets sent to the client (spawns, relative moves, teleports and destroys),
+ * so it knows which entities the client has spawned and where the client has last been told they are.
+ * The entities are stored in primitive arrays of an open-addressing hash table keyed by the entity ID.
+ * Only the netty thread of the connection updates the tracker,
+ * other threads read it with an optimistic read that only falls back to a lock if the tracker changed while reading.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#entityTracking(boolean)
+ * @since 1.8
+ */
+public final class ClientEntityTracker {
+    /**
+     * Dimensions of a player standing upright, named entity spawns are always players.
+     */
+    public static final double PLAYER_WIDTH = 0.6, PLAYER_HEIGHT = 1.8;
+    private static final int INITIAL_CAPACITY = 64;
+    //x, y, z, previous x, previous y, previous z, width, height
+    private static final int STRIDE = 8;
+    private final StampedLock lock = new StampedLock();
+    //Guarded by the lock
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * The client has spawned an entity.
+     * This is used internally, do NOT call this method.
+     *
+     * @param entityID Entity ID.
+     * @param x        X coordinate.
+     * @param y        Y coordinate.
+     * @param z        Z coordinate.
+     * @param width    Width of the entity, NaN if unknown.
+     * @param height   Height of the entity, NaN if unknown.
+     */
+    public void spawn(int entityID, double x, double y, double z, double width, double height) {
+        long stamp = lock.writeLock();
+        try {
+            Table table = this.table;
+            int index = find(table, entityID);
+            if (index < 0) {
+                if ((size + 1) * 2 > table.keys.length) {
+                    table = resize();
+                }
+                index = insertionIndex(table, entityID);
+                table.keys[index] = entityID;
+                table.used[index] = true;
+                size++;
+            }
+            int offset = index * STRIDE;
+            double[] data = table.data;
+            data[offset] = data[offset + 3] = x;
+            data[offset + 1] = data[offset + 4] = y;
+            data[offset + 2] = data[offset + 5] = z;
+            data[offset + 6] = width;
+            data[offset + 7] = height;
+            table.relativeMoves[index] = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The client has received a relative move of an entity.
+     * This is used internally, do NOT call this method.
+     *
+     * @param entityID Entity ID.
+     * @param deltaX   Delta X.
+     * @param deltaY   Delta Y.
+     * @param deltaZ   Delta Z.
+     */
+    public void move(int entityID, double deltaX, double deltaY, double deltaZ) {
+        long stamp = lock.writeLock();
+        try {
+            Table table = this.table;
+            int index = find(table, entityID);
+            if (index >= 0) {
+                double[] data = table.data;
+                int offset = index * STRIDE;
+                data[offset + 3] = data[offset];
+                data[offset + 4] = data[offset + 1];
+                data[offset + 5] = data[offset + 2];
+                data[offset] += deltaX;
+                data[offset + 1] += deltaY;
+                data[offset + 2] += deltaZ;
+                table.relativeMoves[index]++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The client has received a teleport of an entity.
+     * This is used internally, do NOT call this method.
+     *
+     * @param entityID Entity ID.
+     * @param x        X coordinate.
+     * @param y        Y coordinate.
+     * @param z        Z coordinate.
+     */
+    public void teleport(int entityID, double x, double y, double z) {
+        long stamp = lock.writeLock();
+        try {
+            Table table = this.table;
+            int index = find(table, entityID);
+            if (index >= 0) {
+                double[] data = table.data;
+                int offset = index * STRIDE;
+                data[offset + 3] = data[offset];
+                data[offset + 4] = data[offset + 1];
+                data[offset + 5] = data[offset + 2];
+                data[offset] = x;
+                data[offset + 1] = y;
+                data[offset + 2] = z;
+                table.relativeMoves[index] = 0;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The client has destroyed entities.
+     * This is used internally, do NOT call this method.
+     *
+     * @param entityIDs Entity IDs.
+     */
+    public void destroy(int... entityIDs) {
+        long stamp = lock.writeLock();
+        try {
+            Table table = this.table;
+            for (int entityID : entityIDs) {
+                int index = find(table, entityID);
+                if (index >= 0) {
+                    removeAt(table, index);
+                    size--;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The client has forgotten every entity, for example because it respawned in another world.
+     * This is used internally, do NOT call this method.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new Table(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Has the client spawned an entity?
+     *
+     * @param entityID Entity ID.
+     * @return Does the client know the entity?
+     */
+    public boolean isSpawned(int entityID) {
+        long stamp = lock.tryOptimisticRead();
+        boolean spawned = find(table, entityID) >= 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                spawned = find(table, entityID) >= 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return spawned;
+    }
+
+    /**
+     * Get what the client believes about an entity.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Snapshot of the entity, null if the client hasn't spawned the entity.
+     */
+    @Nullable
+    public TrackedEntity get(int entityID) {
+        long stamp = lock.tryOptimisticRead();
+        TrackedEntity entity = read(table, entityID);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                entity = read(table, entityID);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Get the last position of an entity sent to the client.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Position, null if the client hasn't spawned the entity.
+     */
+    @Nullable
+    public Vector3d getPosition(int entityID) {
+        TrackedEntity entity = get(entityID);
+        return entity != null ? entity.getPosition() : null;
+    }
+
+    /**
+     * Get the bounding box of an entity at the last position sent to the client.
+     * This can be called on any thread.
+     *
+     * @param entityID Entity ID.
+     * @return Bounding box, null if the client hasn't spawned the entity or its dimensions are unknown.
+     */
+    @Nullable
+    public BoundingBox getBoundingBox(int entityID) {
+        TrackedEntity entity = get(entityID);
+        return entity != null ? entity.getBoundingBox() : null;
+    }
+
+    /**
+     * Get the IDs of the entities the client has spawned.
+     * This can be called on any thread.
+     *
+     * @return Entity IDs.
+     */
+    public int[] getEntityIds() {
+        long stamp = lock.readLock();
+        try {
+            Table table = this.table;
+            int[] entityIDs = new int[size];
+            int count = 0;
+            for (int index = 0; index < table.keys.length; index++) {
+                if (table.used[index]) {
+                    entityIDs[count++] = table.keys[index];
+                }
+            }
+            return entityIDs;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Nullable
+    static BoundingBox boundingBox(double x, double y, double z, double width, double height) {
+        if (Double.isNaN(width) || Double.isNaN(height)) {
+            return null;
+        }
+        double halfWidth = width / 2.0;
+        return new BoundingBox(x - halfWidth, y, z - halfWidth, x + halfWidth, y + height, z + halfWidth);
+    }
+
+    @Nullable
+    private static TrackedEntity read(Table table, int entityID) {
+        int index = find(table, entityID);
+        if (index < 0) {
+            return null;
+        }
+        double[] data = table.data;
+        int offset = index * STRIDE;
+        return new TrackedEntity(entityID, data[offset], data[offset + 1], data[offset + 2],
+                data[offset + 3], data[offset + 4], data[offset + 5], data[offset + 6], data[offset + 7],
+                table.relativeMoves[index]);
+    }
+
+    private static int find(Table table, int entityID) {
+        int mask = table.mask;
+        int index = hash(entityID) & mask;
+        //Optimistic readers might see the table while it is being modified, so the probe length is bounded.
+        for (int probes = 0; probes <= mask; probes++) {
+            if (!table.used[index]) {
+                return -1;
+            }
+            if (table.keys[index] == entityID) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int insertionIndex(Table table, int entityID) {
+        int mask = table.mask;
+        int index = hash(entityID) & mask;
+        while (table.used[index]) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Remove an entry and shift the following entries of the probe sequence back, so we don't need tombstones.
+     */
+    private static void removeAt(Table table, int index) {
+        int mask = table.mask;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (table.used[next]) {
+            int home = hash(table.keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table.keys[hole] = table.keys[next];
+                System.arraycopy(table.data, next * STRIDE, table.data, hole * STRIDE, STRIDE);
+                table.relativeMoves[hole] = table.relativeMoves[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table.used[hole] = false;
+    }
+
+    private Table resize() {
+        Table oldTable = table;
+        Table newTable = new Table(oldTable.keys.length << 1);
+        for (int oldIndex = 0; oldIndex < oldTable.keys.length; oldIndex++) {
+            if (oldTable.used[oldIndex]) {
+                int index = insertionIndex(newTable, oldTable.keys[oldIndex]);
+                newTable.keys[index] = oldTable.keys[oldIndex];
+                newTable.used[index] = true;
+                System.arraycopy(oldTable.data, oldIndex * STRIDE, newTable.data, index * STRIDE, STRIDE);
+                newTable.relativeMoves[index] = oldTable.relativeMoves[oldIndex];
+            }
+        }
+        table = newTable;
+        return newTable;
+    }
+
+    private static int hash(int entityID) {
+        //Entity IDs are sequential, spread them over the whole table.
+        int hash = entityID * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Table {
+        private final int[] keys;
+        private final boolean[] used;
+        private final double[] data;
+        private final int[] relativeMoves;
+        private final int mask;
+
+        private Table(int capacity) {
+            keys = new int[capacity];
+            used = new boolean[capacity];
+            data = new double[capacity * STRIDE];
+            relativeMoves = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.entitytracker;
+
+import io.github.retrooper.packetevents.utils.boundingbox.BoundingBox;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Snapshot of what a client believes about an entity.
+ *
+ * @author retrooper
+ * @see ClientEntityTracker#get(int)
+ * @since 1.8
+ */
+public final class TrackedEntity {
+    private final int entityID;
+    private final double x, y, z;
+    private final double previousX, previousY, previousZ;
+    private final double width, height;
+    private final int relativeMoves;
+
+    TrackedEntity(int entityID, double x, double y, double z, double previousX, double previousY, double previousZ,
+                  double width, double height, int relativeMoves) {
+        this.entityID = entityID;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.previousX = previousX;
+        this.previousY = previousY;
+        this.previousZ = previousZ;
+        this.width = width;
+        this.height = height;
+        this.relativeMoves = relativeMoves;
+    }
+
+    public int getEntityId() {
+        return entityID;
+    }
+
+    /**
+     * Last position sent to the client.
+     *
+     * @return Position
+     */
+    public Vector3d getPosition() {
+        return new Vector3d(x, y, z);
+    }
+
+    /**
+     * Position sent to the client before the last position.
+     * The client interpolates between the two positions, so it might still render the entity in between.
+     *
+     * @return Previous position.
+     */
+    public Vector3d getPreviousPosition() {
+        return new Vector3d(previousX, previousY, previousZ);
+    }
+
+    /**
+     * Width of the entity, NaN if the dimensions of the entity are unknown.
+     *
+     * @return Width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Height of the entity, NaN if the dimensions of the entity are unknown.
+     *
+     * @return Height
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Amount of relative moves sent since the entity has been spawned or teleported.
+     * Relative moves are rounded, the position might have drifted a little with every one of them.
+     *
+     * @return Relative moves.
+     */
+    public int getRelativeMoves() {
+        return relativeMoves;
+    }
+
+    /**
+     * Bounding box of the entity at the last position sent to the client.
+     *
+     * @return Bounding box, null if the dimensions of the entity are unknown.
+     */
+    @Nullable
+    public BoundingBox getBoundingBox() {
+        return ClientEntityTracker.boundingBox(x, y, z, width, height);
+    }
+}
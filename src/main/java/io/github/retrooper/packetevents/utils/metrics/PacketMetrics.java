@@ -0,0 +1,234 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.metrics;
+
+import io.github.retrooper.packetevents.event.PacketListenerAbstract;
+import io.github.retrooper.packetevents.packettype.PacketState;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free packet metrics recorder.
+ * PacketEvents records how many packets pass through the netty pipeline (per packet state, direction and packet ID),
+ * how much time the listeners spend processing them and how often they get cancelled.
+ * Every counter is a {@link LongAdder}, so recording never blocks a netty thread and
+ * is cheap enough to be enabled on production servers.
+ * Use {@link #snapshot()} to export the recorded metrics to your own monitoring.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#packetMetrics(boolean)
+ * @since 1.8
+ */
+public class PacketMetrics {
+    /**
+     * Amount of buckets in the listener time histograms.
+     * The bucket i counts the samples between 2^(i-1) (inclusive) and 2^i (exclusive) nanoseconds,
+     * the last bucket also counts everything above that.
+     */
+    public static final int HISTOGRAM_BUCKETS = 32;
+    private static final PacketState[] STATES = PacketState.values();
+    //Indexed by the packet state, the direction and the unsigned packet ID
+    private final AtomicReferenceArray<PacketRecorder> packets = new AtomicReferenceArray<>(STATES.length * 2 * 256);
+    private final Map<PacketListenerAbstract, ListenerRecorder> listeners = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile long startTimestamp = System.currentTimeMillis();
+
+    /**
+     * Are the packet metrics being recorded?
+     *
+     * @return Is recording enabled?
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enable or disable recording the packet metrics.
+     * Disabling this doesn't reset the metrics that have already been recorded.
+     *
+     * @param enabled Should we record metrics?
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Record a packet passing through the netty pipeline.
+     * This is used internally, do NOT call this method.
+     *
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     * @param packetID    Packet ID.
+     */
+    public void recordPacket(PacketState state, boolean serverBound, byte packetID) {
+        getPacketRecorder(state, serverBound, packetID).count.increment();
+    }
+
+    /**
+     * Record a packet event dispatch.
+     * This is used internally, do NOT call this method.
+     *
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     * @param packetID    Packet ID.
+     * @param nanos       Time the listeners spent processing the event.
+     * @param cancelled   Did the listeners cancel the event?
+     */
+    public void recordDispatch(PacketState state, boolean serverBound, byte packetID, long nanos, boolean cancelled) {
+        PacketRecorder recorder = getPacketRecorder(state, serverBound, packetID);
+        recorder.listenerNanos.add(nanos);
+        recorder.histogram[bucket(nanos)].increment();
+        if (cancelled) {
+            recorder.cancelled.increment();
+        }
+    }
+
+    /**
+     * Record the time a listener spent processing an event.
+     * This is used internally, do NOT call this method.
+     *
+     * @param listener  Packet listener.
+     * @param nanos     Time the listener spent processing the event.
+     * @param cancelled Did this listener cancel the event?
+     */
+    public void recordListener(PacketListenerAbstract listener, long nanos, boolean cancelled) {
+        ListenerRecorder recorder = listeners.get(listener);
+        if (recorder == null) {
+            //The listener has been unregistered while it was processing the event.
+            return;
+        }
+        recorder.calls.increment();
+        recorder.nanos.add(nanos);
+        if (cancelled) {
+            recorder.cancelled.increment();
+        }
+    }
+
+    /**
+     * Start recording the metrics of a registered listener.
+     * This is used internally, do NOT call this method.
+     *
+     * @param listener Packet listener.
+     */
+    public void addListener(PacketListenerAbstract listener) {
+        listeners.putIfAbsent(listener, new ListenerRecorder());
+    }
+
+    /**
+     * Drop the metrics of an unregistered listener, so we don't keep the listener (and its plugin) loaded.
+     * This is used internally, do NOT call this method.
+     *
+     * @param listener Packet listener.
+     */
+    public void removeListener(PacketListenerAbstract listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Reset every metric that has been recorded so far.
+     * Samples recorded concurrently with the reset might get lost.
+     */
+    public void reset() {
+        for (int i = 0; i < packets.length(); i++) {
+            packets.set(i, null);
+        }
+        listeners.replaceAll((listener, recorder) -> new ListenerRecorder());
+        startTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Take a snapshot of the metrics recorded so far.
+     * The snapshot is a copy, it won't change if more metrics are recorded.
+     * Only packets that have been seen at least once are included.
+     *
+     * @return Packet metrics snapshot.
+     */
+    public PacketMetricsSnapshot snapshot() {
+        List<PacketMetricsSnapshot.PacketEntry> packetEntries = new ArrayList<>();
+        for (int i = 0; i < packets.length(); i++) {
+            PacketRecorder recorder = packets.get(i);
+            if (recorder != null) {
+                long[] histogram = new long[HISTOGRAM_BUCKETS];
+                for (int bucket = 0; bucket < HISTOGRAM_BUCKETS; bucket++) {
+                    histogram[bucket] = recorder.histogram[bucket].sum();
+                }
+                packetEntries.add(new PacketMetricsSnapshot.PacketEntry(STATES[i >>> 9], ((i >>> 8) & 1) == 0, (byte) i,
+                        recorder.count.sum(), recorder.cancelled.sum(), recorder.listenerNanos.sum(), histogram));
+            }
+        }
+        Map<PacketListenerAbstract, PacketMetricsSnapshot.ListenerEntry> listenerEntries = new LinkedHashMap<>();
+        for (Map.Entry<PacketListenerAbstract, ListenerRecorder> entry : listeners.entrySet()) {
+            ListenerRecorder recorder = entry.getValue();
+            long calls = recorder.calls.sum();
+            if (calls == 0L) {
+                //Only include the listeners that have processed an event.
+                continue;
+            }
+            listenerEntries.put(entry.getKey(), new PacketMetricsSnapshot.ListenerEntry(entry.getKey(),
+                    calls, recorder.cancelled.sum(), recorder.nanos.sum()));
+        }
+        return new PacketMetricsSnapshot(startTimestamp, System.currentTimeMillis(), packetEntries, listenerEntries);
+    }
+
+    private PacketRecorder getPacketRecorder(PacketState state, boolean serverBound, byte packetID) {
+        int index = (state.ordinal() << 9) | (serverBound ? 0 : 256) | (packetID & 0xFF);
+        PacketRecorder recorder = packets.get(index);
+        if (recorder == null) {
+            PacketRecorder newRecorder = new PacketRecorder();
+            recorder = packets.compareAndSet(index, null, newRecorder) ? newRecorder : packets.get(index);
+        }
+        return recorder;
+    }
+
+    /**
+     * Get the histogram bucket of a sample.
+     *
+     * @param nanos Sample in nanoseconds.
+     * @return Index of the bucket.
+     */
+    static int bucket(long nanos) {
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+
+    private static final class PacketRecorder {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder listenerNanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[HISTOGRAM_BUCKETS];
+
+        private PacketRecorder() {
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                histogram[i] = new LongAdder();
+            }
+        }
+    }
+
+    private static final class ListenerRecorder {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.metrics;
+
+import io.github.retrooper.packetevents.event.PacketListenerAbstract;
+import io.github.retrooper.packetevents.packettype.PacketState;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable copy of the packet metrics recorded by PacketEvents.
+ *
+ * @author retrooper
+ * @see PacketMetrics#snapshot()
+ * @since 1.8
+ */
+public class PacketMetricsSnapshot {
+    private final long startTimestamp;
+    private final long timestamp;
+    private final List<PacketEntry> packets;
+    private final Map<PacketListenerAbstract, ListenerEntry> listeners;
+
+    PacketMetricsSnapshot(long startTimestamp, long timestamp, List<PacketEntry> packets,
+                          Map<PacketListenerAbstract, ListenerEntry> listeners) {
+        this.startTimestamp = startTimestamp;
+        this.timestamp = timestamp;
+        this.packets = Collections.unmodifiableList(packets);
+        this.listeners = Collections.unmodifiableMap(listeners);
+    }
+
+    /**
+     * Timestamp of when PacketEvents started recording these metrics (or when they were last reset).
+     *
+     * @return Start timestamp in milliseconds.
+     */
+    public long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    /**
+     * Timestamp of when this snapshot was taken.
+     *
+     * @return Timestamp in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the metrics of every packet type that has been seen at least once.
+     *
+     * @return Packet metrics.
+     */
+    public List<PacketEntry> getPackets() {
+        return packets;
+    }
+
+    /**
+     * Get the metrics of a packet type.
+     *
+     * @param state       Packet state.
+     * @param serverBound Was the packet sent by the client?
+     * @param packetID    Packet ID.
+     * @return Packet metrics, null if the packet has never been seen.
+     */
+    public PacketEntry getPacket(PacketState state, boolean serverBound, byte packetID) {
+        for (PacketEntry entry : packets) {
+            if (entry.state == state && entry.serverBound == serverBound && entry.packetID == packetID) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the metrics of every listener that has processed at least one event.
+     *
+     * @return Listener metrics.
+     */
+    public Map<PacketListenerAbstract, ListenerEntry> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Metrics of one packet type.
+     * The listener time includes every event dispatched for the packet,
+     * so the post events of PLAY packets are included too.
+     */
+    public static class PacketEntry {
+        private final PacketState state;
+        private final boolean serverBound;
+        private final byte packetID;
+        private final long count;
+        private final long cancelled;
+        private final long listenerNanos;
+        private final long[] histogram;
+
+        PacketEntry(PacketState state, boolean serverBound, byte packetID, long count, long cancelled,
+                    long listenerNanos, long[] histogram) {
+            this.state = state;
+            this.serverBound = serverBound;
+            this.packetID = packetID;
+            this.count = count;
+            this.cancelled = cancelled;
+            this.listenerNanos = listenerNanos;
+            this.histogram = histogram;
+        }
+
+        public PacketState getState() {
+            return state;
+        }
+
+        /**
+         * Was the packet sent by the client?
+         *
+         * @return Is the packet server-bound?
+         */
+        public boolean isServerBound() {
+            return serverBound;
+        }
+
+        public byte getPacketId() {
+            return packetID;
+        }
+
+        /**
+         * Amount of packets that passed through the netty pipeline.
+         *
+         * @return Packet count.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Amount of packets the listeners cancelled.
+         *
+         * @return Cancellation count.
+         */
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Amount of events that were dispatched to the listeners.
+         *
+         * @return Dispatch count.
+         */
+        public long getDispatched() {
+            long dispatched = 0;
+            for (long bucket : histogram) {
+                dispatched += bucket;
+            }
+            return dispatched;
+        }
+
+        /**
+         * Total time the listeners spent processing this packet type.
+         *
+         * @return Listener time in nanoseconds.
+         */
+        public long getListenerNanos() {
+            return listenerNanos;
+        }
+
+        /**
+         * Histogram of the time the listeners spent processing one event.
+         * See {@link PacketMetrics#HISTOGRAM_BUCKETS} for the bucket boundaries.
+         *
+         * @return Copy of the histogram buckets.
+         */
+        public long[] getHistogram() {
+            return histogram.clone();
+        }
+
+        /**
+         * Estimate a percentile of the listener time histogram.
+         * The result is the upper boundary of the bucket the percentile falls in,
+         * so it is accurate to a factor of two.
+         *
+         * @param percentile Percentile between 0 and 100.
+         * @return Listener time in nanoseconds.
+         */
+        public long getPercentileNanos(double percentile) {
+            long dispatched = getDispatched();
+            if (dispatched == 0) {
+                return 0;
+            }
+            long threshold = (long) Math.ceil(dispatched * Math.min(Math.max(percentile, 0), 100) / 100.0);
+            long seen = 0;
+            for (int bucket = 0; bucket < histogram.length; bucket++) {
+                seen += histogram[bucket];
+                if (seen >= threshold && seen != 0) {
+                    return bucket == histogram.length - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Metrics of one packet listener.
+     */
+    public static class ListenerEntry {
+        private final PacketListenerAbstract listener;
+        private final long calls;
+        private final long cancelled;
+        private final long nanos;
+
+        ListenerEntry(PacketListenerAbstract listener, long calls, long cancelled, long nanos) {
+            this.listener = listener;
+            this.calls = calls;
+            this.cancelled = cancelled;
+            this.nanos = nanos;
+        }
+
+        public PacketListenerAbstract getListener() {
+            return listener;
+        }
+
+        /**
+         * Amount of events the listener processed.
+         *
+         * @return Call count.
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Amount of events the listener cancelled.
+         *
+         * @return Cancellation count.
+         */
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Cumulative time the listener spent processing events.
+         *
+         * @return Listener time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -28,6 +28,10 @@ public interface ByteBufUtil {
 
     void release(Object byteBuf);
 
+    void releaseMessage(Object msg);
+
+    Object retainedDuplicate(Object byteBuf);
+
     byte[] getBytes(Object byteBuf);
 
     void setBytes(Object byteBuf, byte[] bytes);
@@ -20,6 +20,7 @@ package io.github.retrooper.packetevents.utils.netty.bytebuf;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.EmptyArrays;
 
 public final class ByteBufUtil_8 implements ByteBufUtil {
@@ -44,6 +45,18 @@ public final class ByteBufUtil_8 implements ByteBufUtil {
         ((ByteBuf) byteBuf).release();
     }
 
+    @Override
+    public void releaseMessage(Object msg) {
+        //Raw NMS packets aren't reference counted, this does nothing for them.
+        ReferenceCountUtil.release(msg);
+    }
+
+    @Override
+    public Object retainedDuplicate(Object byteBuf) {
+        //ByteBuf#retainedDuplicate only exists since netty 4.1
+        return ((ByteBuf) byteBuf).duplicate().retain();
+    }
+
     @Override
     public byte[] getBytes(Object byteBuf) {
         final ByteBuf bb = (ByteBuf) byteBuf;
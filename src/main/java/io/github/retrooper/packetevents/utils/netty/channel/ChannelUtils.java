@@ -19,6 +19,7 @@
 package io.github.retrooper.packetevents.utils.netty.channel;
 
 import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.utils.player.User;
 import io.github.retrooper.packetevents.utils.server.ServerVersion;
 
 import java.net.InetSocketAddress;
@@ -34,4 +35,93 @@ public final class ChannelUtils {
             return ChannelUtils8.getSocketAddress(ch);
         }
     }
+
+    /**
+     * Get the class of the packet encoder in a channel's pipeline.
+     *
+     * @param ch Netty channel.
+     * @return Encoder class, null if the channel has no encoder.
+     */
+    public static Class<?> getEncoderClass(Object ch) {
+        if (ch == null) {
+            return null;
+        }
+        if (PacketEvents.get().getServerUtils().getVersion() == ServerVersion.v_1_7_10) {
+            return ChannelUtils7.getEncoderClass(ch);
+        } else {
+            return ChannelUtils8.getEncoderClass(ch);
+        }
+    }
+
+    /**
+     * Serialize an NMS packet with the vanilla packet encoder of a channel.
+     * The resulting byte buffer can be written to every channel with the same encoder and protocol state,
+     * it will still be compressed and encrypted per channel.
+     *
+     * @param ch           Netty channel.
+     * @param rawNMSPacket Client-bound raw NMS packet.
+     * @return Encoded byte buffer, null if the channel doesn't have a vanilla encoder or the encoding failed.
+     */
+    public static Object encodePacket(Object ch, Object rawNMSPacket) {
+        if (ch == null) {
+            return null;
+        }
+        if (PacketEvents.get().getServerUtils().getVersion() == ServerVersion.v_1_7_10) {
+            return ChannelUtils7.encodePacket(ch, rawNMSPacket);
+        } else {
+            return ChannelUtils8.encodePacket(ch, rawNMSPacket);
+        }
+    }
+
+    /**
+     * Get the user PacketEvents stores on a channel.
+     *
+     * @param ch Netty channel.
+     * @return User, null if PacketEvents hasn't injected the channel.
+     */
+    public static User getUser(Object ch) {
+        if (ch == null) {
+            return null;
+        }
+        if (PacketEvents.get().getServerUtils().getVersion() == ServerVersion.v_1_7_10) {
+            return ChannelUtils7.getUser(ch);
+        } else {
+            return ChannelUtils8.getUser(ch);
+        }
+    }
+
+    /**
+     * Check if a channel can currently accept writes without buffering them beyond its high water mark.
+     *
+     * @param ch Netty channel.
+     * @return Is the channel writable?
+     */
+    public static boolean isWritable(Object ch) {
+        if (ch == null) {
+            return false;
+        }
+        if (PacketEvents.get().getServerUtils().getVersion() == ServerVersion.v_1_7_10) {
+            return ChannelUtils7.isWritable(ch);
+        } else {
+            return ChannelUtils8.isWritable(ch);
+        }
+    }
+
+    /**
+     * Run a task on the event loop of a channel.
+     * If we already are on the event loop, the task is run right away.
+     *
+     * @param ch   Netty channel.
+     * @param task Task.
+     */
+    public static void runInEventLoop(Object ch, Runnable task) {
+        if (ch == null) {
+            return;
+        }
+        if (PacketEvents.get().getServerUtils().getVersion() == ServerVersion.v_1_7_10) {
+            ChannelUtils7.runInEventLoop(ch, task);
+        } else {
+            ChannelUtils8.runInEventLoop(ch, task);
+        }
+    }
 }
@@ -18,13 +18,78 @@
 
 package io.github.retrooper.packetevents.utils.netty.channel;
 
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.injector.modern.HandshakeChannelHandlerModern;
+import io.github.retrooper.packetevents.injector.modern.PlayerChannelHandlerModern;
+import io.github.retrooper.packetevents.utils.player.User;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
 
+import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 
 public final class ChannelUtils8 {
+    private static Method encodeMethod;
+
     public static InetSocketAddress getSocketAddress(Object ch) {
         Channel channel = (Channel) ch;
         return ((InetSocketAddress) channel.remoteAddress());
     }
+
+    public static Class<?> getEncoderClass(Object ch) {
+        Channel channel = (Channel) ch;
+        ChannelHandler encoder = channel.pipeline().get("encoder");
+        return encoder == null ? null : encoder.getClass();
+    }
+
+    public static Object encodePacket(Object ch, Object rawNMSPacket) {
+        Channel channel = (Channel) ch;
+        ChannelHandlerContext ctx = channel.pipeline().context("encoder");
+        //Only the vanilla encoder is safe to use, other encoders (protocol hacks) might depend on the channel.
+        if (ctx == null || !(ctx.handler() instanceof MessageToByteEncoder)
+                || !ctx.handler().getClass().getName().startsWith("net.minecraft")) {
+            return null;
+        }
+        ByteBuf buffer = ctx.alloc().buffer();
+        try {
+            if (encodeMethod == null) {
+                Method method = MessageToByteEncoder.class.getDeclaredMethod("encode", ChannelHandlerContext.class, Object.class, ByteBuf.class);
+                method.setAccessible(true);
+                encodeMethod = method;
+            }
+            encodeMethod.invoke(ctx.handler(), ctx, rawNMSPacket, buffer);
+            return buffer;
+        } catch (Exception ex) {
+            buffer.release();
+            return null;
+        }
+    }
+
+    public static User getUser(Object ch) {
+        Channel channel = (Channel) ch;
+        ChannelHandler handler = channel.pipeline().get(PacketEvents.get().getHandlerName());
+        if (handler instanceof PlayerChannelHandlerModern) {
+            return ((PlayerChannelHandlerModern) handler).user;
+        } else if (handler instanceof HandshakeChannelHandlerModern) {
+            return ((HandshakeChannelHandlerModern) handler).user;
+        }
+        return null;
+    }
+
+    public static boolean isWritable(Object ch) {
+        Channel channel = (Channel) ch;
+        return channel.isWritable();
+    }
+
+    public static void runInEventLoop(Object ch, Runnable task) {
+        Channel channel = (Channel) ch;
+        if (channel.eventLoop().inEventLoop()) {
+            task.run();
+        } else {
+            channel.eventLoop().execute(task);
+        }
+    }
 }
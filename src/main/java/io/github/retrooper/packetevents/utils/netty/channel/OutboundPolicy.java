@@ -0,0 +1,55 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.netty.channel;
+
+/**
+ * What the {@link OutboundScheduler} does with a packet while the channel of its receiver isn't writable.
+ *
+ * @author retrooper
+ * @see OutboundScheduler#setPolicy(byte, OutboundPolicy)
+ * @since 1.8
+ */
+public enum OutboundPolicy {
+    /**
+     * The packet is always written right away, even ahead of the packets that are already queued.
+     * Only use this for packets the client handles independently of the packets around them (keep-alives, pings, kicks).
+     */
+    CRITICAL,
+    /**
+     * The packet is queued and written in order once the channel is writable again.
+     */
+    NORMAL,
+    /**
+     * The packet is queued in order like a {@link #NORMAL} packet, but it may be dropped.
+     * If too many deferred and coalesced packets are queued, new ones are dropped.
+     */
+    DEFER,
+    /**
+     * Like {@link #DEFER}, but only the latest queued packet with the same packet ID and entity ID is kept.
+     * The newer packet takes the place of the queued one, as long as no other packet of the entity
+     * (or packet of no known entity) has been queued after it.
+     * Only use this for packets that carry an absolute state (teleports, head rotations, velocities).
+     * The entity ID is the first int field of the packet, packets without one are coalesced by their packet ID alone.
+     */
+    COALESCE,
+    /**
+     * The packet is dropped.
+     */
+    DROP
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.netty.channel;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.packettype.PacketClassInfo;
+import io.github.retrooper.packetevents.packettype.PacketType;
+import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
+import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entitydestroy.WrappedPacketOutEntityDestroy;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-channel scheduler for the packets sent with PacketEvents.
+ * While the channel is writable, packets are written right away.
+ * Once the client can't keep up (the channel's outbound buffer exceeds its high water mark),
+ * packets are queued, coalesced or dropped depending on their {@link OutboundPolicy},
+ * instead of piling up in netty's outbound buffer.
+ * There is a single queue, it is drained in order as soon as the channel becomes writable again,
+ * so the client always applies the packets in the order they have been sent.
+ * A coalesced packet replaces the queued packet of the same entity in place,
+ * unless another packet that might depend on it (of the same entity, or of no known entity) has been queued after it.
+ * Packets minecraft sends itself aren't scheduled.
+ * Every method but the metric getters has to be called on the event loop of the channel.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#outboundScheduling(boolean)
+ * @see io.github.retrooper.packetevents.utils.player.User#getOutboundScheduler()
+ * @since 1.8
+ */
+public final class OutboundScheduler {
+    /**
+     * Maximum amount of queued deferred and coalesced packets per channel.
+     */
+    private static final int MAX_DEFERRED_PACKETS = 1024;
+    private static final long NO_COALESCE_KEY = Long.MIN_VALUE;
+    private static final OutboundPolicy[] POLICIES = new OutboundPolicy[256];
+    /**
+     * Client-bound packet IDs whose first int field is the ID of the entity they belong to.
+     */
+    private static final boolean[] ENTITY_PACKETS = new boolean[256];
+    private static volatile byte[] coalescedPacketIDs = new byte[0];
+    private final Object channel;
+    private final ArrayDeque<QueuedPacket> queue = new ArrayDeque<>();
+    private final Map<Long, QueuedPacket> coalescedPackets = new HashMap<>();
+    private int deferredPackets;
+    private volatile int queuedPackets;
+    private volatile int peakQueuedPackets;
+    private volatile long droppedPackets;
+    private volatile long coalescedPacketCount;
+
+    static {
+        //Only packets the client handles independently of the packets around them may skip the queue.
+        setPolicy(PacketType.Play.Server.KEEP_ALIVE, OutboundPolicy.CRITICAL);
+        setPolicy(PacketType.Play.Server.TRANSACTION, OutboundPolicy.CRITICAL);
+        setPolicy(PacketType.Play.Server.PING, OutboundPolicy.CRITICAL);
+        setPolicy(PacketType.Play.Server.KICK_DISCONNECT, OutboundPolicy.CRITICAL);
+        setPolicy(PacketType.Play.Server.ENTITY_METADATA, OutboundPolicy.DEFER);
+        setPolicy(PacketType.Play.Server.ENTITY_TELEPORT, OutboundPolicy.COALESCE);
+        setPolicy(PacketType.Play.Server.ENTITY_HEAD_ROTATION, OutboundPolicy.COALESCE);
+        setPolicy(PacketType.Play.Server.ENTITY_VELOCITY, OutboundPolicy.COALESCE);
+        setPolicy(PacketType.Play.Server.WORLD_PARTICLES, OutboundPolicy.DROP);
+        setPolicy(PacketType.Play.Server.NAMED_SOUND_EFFECT, OutboundPolicy.DROP);
+        setPolicy(PacketType.Play.Server.CUSTOM_SOUND_EFFECT, OutboundPolicy.DROP);
+        setPolicy(PacketType.Play.Server.ENTITY_SOUND, OutboundPolicy.DROP);
+        setPolicy(PacketType.Play.Server.ANIMATION, OutboundPolicy.DROP);
+        setPolicy(PacketType.Play.Server.BLOCK_BREAK_ANIMATION, OutboundPolicy.DROP);
+        byte[] entityPackets = {PacketType.Play.Server.SPAWN_ENTITY, PacketType.Play.Server.SPAWN_ENTITY_LIVING,
+                PacketType.Play.Server.NAMED_ENTITY_SPAWN, PacketType.Play.Server.REL_ENTITY_MOVE,
+                PacketType.Play.Server.REL_ENTITY_MOVE_LOOK, PacketType.Play.Server.ENTITY_LOOK,
+                PacketType.Play.Server.ENTITY_TELEPORT, PacketType.Play.Server.ENTITY_HEAD_ROTATION,
+                PacketType.Play.Server.ENTITY_VELOCITY, PacketType.Play.Server.ENTITY_METADATA,
+                PacketType.Play.Server.ENTITY_EQUIPMENT, PacketType.Play.Server.ENTITY_EFFECT,
+                PacketType.Play.Server.REMOVE_ENTITY_EFFECT, PacketType.Play.Server.ENTITY_STATUS,
+                PacketType.Play.Server.ANIMATION, PacketType.Play.Server.UPDATE_ATTRIBUTES};
+        for (byte packetID : entityPackets) {
+            ENTITY_PACKETS[packetID & 0xFF] = true;
+        }
+    }
+
+    private static final class QueuedPacket {
+        private final long coalesceKey;
+        private final boolean deferred;
+        private Object packet;
+
+        private QueuedPacket(long coalesceKey, boolean deferred, Object packet) {
+            this.coalesceKey = coalesceKey;
+            this.deferred = deferred;
+            this.packet = packet;
+        }
+    }
+
+    public OutboundScheduler(Object channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Set the policy of a client-bound packet type.
+     * Packet types without a policy are {@link OutboundPolicy#NORMAL}.
+     *
+     * @param packetID Client-bound packet ID.
+     * @param policy   Policy of the packet type.
+     */
+    public static synchronized void setPolicy(byte packetID, OutboundPolicy policy) {
+        if (packetID == PacketType.INVALID) {
+            throw new IllegalArgumentException("Cannot set the outbound policy of an invalid packet ID!");
+        }
+        POLICIES[packetID & 0xFF] = policy;
+        int count = 0;
+        byte[] coalescedPacketIDs = new byte[256];
+        for (int i = 0; i < POLICIES.length; i++) {
+            if (POLICIES[i] == OutboundPolicy.COALESCE) {
+                coalescedPacketIDs[count++] = (byte) i;
+            }
+        }
+        OutboundScheduler.coalescedPacketIDs = Arrays.copyOf(coalescedPacketIDs, count);
+    }
+
+    /**
+     * Get the policy of a client-bound packet type.
+     *
+     * @param packetID Client-bound packet ID.
+     * @return Policy of the packet type.
+     */
+    public static OutboundPolicy getPolicy(byte packetID) {
+        OutboundPolicy policy = POLICIES[packetID & 0xFF];
+        return policy == null ? OutboundPolicy.NORMAL : policy;
+    }
+
+    /**
+     * Send a packet through this scheduler.
+     * This can be called from any thread.
+     *
+     * @param packet Client-bound raw NMS packet (or encoded byte buffer).
+     */
+    public void send(Object packet) {
+        ChannelUtils.runInEventLoop(channel, () -> {
+            if (schedule(packet)) {
+                PacketEvents.get().getInjector().flushPackets(channel);
+            }
+        });
+    }
+
+    /**
+     * Send multiple packets through this scheduler.
+     * The channel is only flushed once.
+     * This can be called from any thread.
+     *
+     * @param packets Client-bound raw NMS packets, this list must not be modified after it has been passed.
+     */
+    public void sendAll(List<Object> packets) {
+        ChannelUtils.runInEventLoop(channel, () -> {
+            boolean written = false;
+            for (Object packet : packets) {
+                written |= schedule(packet);
+            }
+            if (written) {
+                PacketEvents.get().getInjector().flushPackets(channel);
+            }
+        });
+    }
+
+    /**
+     * Write or queue a packet.
+     *
+     * @param packet Client-bound raw NMS packet.
+     * @return Has the packet been written?
+     */
+    private boolean schedule(Object packet) {
+        byte packetID = PacketClassInfo.of(packet).getPacketId();
+        OutboundPolicy policy = getPolicy(packetID);
+        if (policy == OutboundPolicy.CRITICAL
+                || (queuedPackets == 0 && ChannelUtils.isWritable(channel))) {
+            PacketEvents.get().getInjector().writePacket(channel, packet);
+            return true;
+        }
+        if (policy == OutboundPolicy.DROP) {
+            discard(packet);
+            droppedPackets++;
+            return false;
+        }
+        long coalesceKey = NO_COALESCE_KEY;
+        if (policy == OutboundPolicy.COALESCE) {
+            coalesceKey = getCoalesceKey(packetID, packet);
+            QueuedPacket queuedPacket = coalescedPackets.get(coalesceKey);
+            if (queuedPacket != null) {
+                //The newer packet replaces the queued one, but keeps its position in the queue.
+                discard(queuedPacket.packet);
+                queuedPacket.packet = packet;
+                coalescedPacketCount++;
+                return false;
+            }
+        }
+        boolean deferred = policy == OutboundPolicy.DEFER || policy == OutboundPolicy.COALESCE;
+        if (deferred && deferredPackets >= MAX_DEFERRED_PACKETS) {
+            discard(packet);
+            droppedPackets++;
+            return false;
+        }
+        //Queued packets may not be replaced by packets sent after this one anymore, the client would apply them out of order.
+        invalidateCoalescedPackets(packetID, packet);
+        QueuedPacket queuedPacket = new QueuedPacket(coalesceKey, deferred, packet);
+        queue.add(queuedPacket);
+        if (coalesceKey != NO_COALESCE_KEY) {
+            coalescedPackets.put(coalesceKey, queuedPacket);
+        }
+        if (deferred) {
+            deferredPackets++;
+        }
+        queued(1);
+        return false;
+    }
+
+    /**
+     * Stop coalescing the queued packets a packet might depend on.
+     * These are the packets of the same entity, or every packet if the packet doesn't belong to a known entity.
+     *
+     * @param packetID Packet ID.
+     * @param packet   Client-bound raw NMS packet that is being queued.
+     */
+    private void invalidateCoalescedPackets(byte packetID, Object packet) {
+        if (coalescedPackets.isEmpty()) {
+            return;
+        }
+        if (packetID != PacketType.INVALID && ENTITY_PACKETS[packetID & 0xFF]) {
+            int entityID = getEntityId(packet);
+            if (entityID != Integer.MIN_VALUE) {
+                invalidateCoalescedPackets(entityID);
+                return;
+            }
+        } else if (packetID == PacketType.Play.Server.ENTITY_DESTROY) {
+            int[] entityIDs;
+            try {
+                entityIDs = new WrappedPacketOutEntityDestroy(new NMSPacket(packet)).getEntityIds();
+            } catch (Exception ex) {
+                entityIDs = null;
+            }
+            if (entityIDs != null) {
+                for (int entityID : entityIDs) {
+                    invalidateCoalescedPackets(entityID);
+                }
+                return;
+            }
+        }
+        coalescedPackets.clear();
+    }
+
+    private void invalidateCoalescedPackets(int entityID) {
+        for (byte packetID : coalescedPacketIDs) {
+            coalescedPackets.remove(getCoalesceKey(packetID, entityID));
+        }
+    }
+
+    private static long getCoalesceKey(byte packetID, Object packet) {
+        int entityID = getEntityId(packet);
+        return getCoalesceKey(packetID, entityID == Integer.MIN_VALUE ? 0 : entityID);
+    }
+
+    private static long getCoalesceKey(byte packetID, int entityID) {
+        return ((long) (packetID & 0xFF) << 32) | (entityID & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Read the entity ID of an entity packet.
+     *
+     * @param packet Client-bound raw NMS packet.
+     * @return Entity ID, {@link Integer#MIN_VALUE} if the packet doesn't have one.
+     */
+    private static int getEntityId(Object packet) {
+        try {
+            return new WrappedPacket(new NMSPacket(packet)).readInt(0);
+        } catch (Exception ex) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Release a packet that won't be written.
+     * Encoded byte buffers are reference counted, raw NMS packets aren't.
+     *
+     * @param packet Client-bound raw NMS packet (or encoded byte buffer).
+     */
+    private static void discard(Object packet) {
+        PacketEvents.get().getByteBufUtil().releaseMessage(packet);
+    }
+
+    private void queued(int amount) {
+        int queuedPackets = this.queuedPackets + amount;
+        this.queuedPackets = queuedPackets;
+        if (queuedPackets > peakQueuedPackets) {
+            peakQueuedPackets = queuedPackets;
+        }
+    }
+
+    /**
+     * Write the queued packets in order until the channel isn't writable anymore.
+     * This is used internally, do NOT call this method.
+     */
+    public void drain() {
+        if (queuedPackets == 0) {
+            return;
+        }
+        int written = 0;
+        while (ChannelUtils.isWritable(channel)) {
+            QueuedPacket queuedPacket = queue.poll();
+            if (queuedPacket == null) {
+                break;
+            }
+            if (queuedPacket.coalesceKey != NO_COALESCE_KEY) {
+                coalescedPackets.remove(queuedPacket.coalesceKey, queuedPacket);
+            }
+            if (queuedPacket.deferred) {
+                deferredPackets--;
+            }
+            PacketEvents.get().getInjector().writePacket(channel, queuedPacket.packet);
+            written++;
+        }
+        if (written != 0) {
+            queued(-written);
+            PacketEvents.get().getInjector().flushPackets(channel);
+        }
+    }
+
+    /**
+     * Discard every queued packet.
+     * This is used internally, do NOT call this method.
+     */
+    public void clear() {
+        QueuedPacket queuedPacket;
+        while ((queuedPacket = queue.poll()) != null) {
+            discard(queuedPacket.packet);
+        }
+        coalescedPackets.clear();
+        deferredPackets = 0;
+        queuedPackets = 0;
+    }
+
+    /**
+     * Amount of packets waiting for the channel to become writable.
+     *
+     * @return Queue depth.
+     */
+    public int getQueuedPackets() {
+        return queuedPackets;
+    }
+
+    /**
+     * Highest queue depth this scheduler has reached.
+     *
+     * @return Peak queue depth.
+     */
+    public int getPeakQueuedPackets() {
+        return peakQueuedPackets;
+    }
+
+    /**
+     * Amount of packets that have been dropped, because the channel wasn't writable.
+     *
+     * @return Dropped packets.
+     */
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    /**
+     * Amount of queued packets that have been replaced by a newer packet.
+     *
+     * @return Coalesced packets.
+     */
+    public long getCoalescedPackets() {
+        return coalescedPacketCount;
+    }
+}
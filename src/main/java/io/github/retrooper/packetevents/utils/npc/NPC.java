@@ -29,16 +29,17 @@ import io.github.retrooper.packetevents.packetwrappers.play.out.playerinfo.Wrapp
 import io.github.retrooper.packetevents.utils.gameprofile.WrappedGameProfile;
 import io.github.retrooper.packetevents.utils.nms.NMSUtils;
 import io.github.retrooper.packetevents.utils.player.GameMode;
+import io.github.retrooper.packetevents.utils.player.PacketBatch;
 import io.github.retrooper.packetevents.utils.vector.Vector3d;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 
 public class NPC {
     private final String name;
@@ -46,9 +47,10 @@ public class NPC {
     private final UUID uuid;
     private final WrappedGameProfile gameProfile;
     private final Map<UUID, Boolean> spawnedForPlayerMap = new ConcurrentHashMap<>();
-    private Vector3d position;
-    private float yaw, pitch;
-    private boolean onGround;
+    private volatile World world;
+    private volatile Vector3d position;
+    private volatile float yaw, pitch;
+    private volatile boolean onGround;
 
     public NPC(String name) {
         this.name = name;
@@ -82,22 +84,26 @@ public class NPC {
 
     public NPC(String name, Location location) {
         this(name, new Vector3d(location.getX(), location.getY(), location.getZ()), location.getYaw(), location.getPitch());
+        this.world = location.getWorld();
     }
 
     public void despawn(Player player) {
-        boolean spawned = spawnedForPlayerMap.getOrDefault(player.getUniqueId(), false);
-        spawnedForPlayerMap.remove(player.getUniqueId());
-        if (spawned) {
-            try {
-                CompletableFuture.runAsync(() -> {
-                    WrappedPacketOutPlayerInfo playerInfo = new WrappedPacketOutPlayerInfo(WrappedPacketOutPlayerInfo.PlayerInfoAction.REMOVE_PLAYER, new WrappedPacketOutPlayerInfo.PlayerInfo(name, gameProfile, GameMode.SURVIVAL, 0));
-                    PacketEvents.get().getPlayerUtils().sendPacket(player, playerInfo);
-                    WrappedPacketOutEntityDestroy wrappedPacketOutEntityDestroy = new WrappedPacketOutEntityDestroy(entityID);
-                    PacketEvents.get().getPlayerUtils().sendPacket(player, wrappedPacketOutEntityDestroy);
-                }).get();
-            } catch (InterruptedException | ExecutionException e) {
-                e.printStackTrace();
-            }
+        PacketBatch batch = new PacketBatch();
+        despawn(batch, player);
+        batch.send();
+    }
+
+    /**
+     * Queue the packets despawning this NPC for a player.
+     * Nothing is queued if the NPC hasn't been spawned for the player.
+     *
+     * @param batch  Batch the packets are added to.
+     * @param player Player the NPC should be despawned for.
+     */
+    void despawn(PacketBatch batch, Player player) {
+        if (spawnedForPlayerMap.remove(player.getUniqueId()) != null) {
+            batch.add(player, new WrappedPacketOutPlayerInfo(WrappedPacketOutPlayerInfo.PlayerInfoAction.REMOVE_PLAYER, new WrappedPacketOutPlayerInfo.PlayerInfo(name, gameProfile, GameMode.SURVIVAL, 0)));
+            batch.add(player, new WrappedPacketOutEntityDestroy(entityID));
         }
     }
 
@@ -106,18 +112,22 @@ public class NPC {
     }
 
     public void spawn(Player player) {
-        try {
-            if (!hasSpawned(player)) {
-                CompletableFuture.runAsync(() -> {
-                    WrappedPacketOutPlayerInfo playerInfo = new WrappedPacketOutPlayerInfo(WrappedPacketOutPlayerInfo.PlayerInfoAction.ADD_PLAYER, new WrappedPacketOutPlayerInfo.PlayerInfo(name, gameProfile, GameMode.SURVIVAL, 0));
-                    PacketEvents.get().getPlayerUtils().sendPacket(player, playerInfo);
-                    WrappedPacketOutNamedEntitySpawn wrappedPacketOutNamedEntitySpawn = new WrappedPacketOutNamedEntitySpawn(entityID, uuid, position, yaw, pitch);
-                    PacketEvents.get().getPlayerUtils().sendPacket(player, wrappedPacketOutNamedEntitySpawn);
-                    spawnedForPlayerMap.put(player.getUniqueId(), true);
-                }).get();
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            e.printStackTrace();
+        PacketBatch batch = new PacketBatch();
+        spawn(batch, player);
+        batch.send();
+    }
+
+    /**
+     * Queue the packets spawning this NPC for a player at its current position.
+     * Nothing is queued if the NPC has already been spawned for the player.
+     *
+     * @param batch  Batch the packets are added to.
+     * @param player Player the NPC should be spawned for.
+     */
+    void spawn(PacketBatch batch, Player player) {
+        if (spawnedForPlayerMap.putIfAbsent(player.getUniqueId(), true) == null) {
+            batch.add(player, new WrappedPacketOutPlayerInfo(WrappedPacketOutPlayerInfo.PlayerInfoAction.ADD_PLAYER, new WrappedPacketOutPlayerInfo.PlayerInfo(name, gameProfile, GameMode.SURVIVAL, 0)));
+            batch.add(player, new WrappedPacketOutNamedEntitySpawn(entityID, uuid, position, yaw, pitch));
         }
     }
 
@@ -145,6 +155,20 @@ public class NPC {
         this.onGround = onGround;
     }
 
+    /**
+     * Get the world the NPC is in.
+     * The {@link NPCEngine} only shows the NPC to players in this world.
+     *
+     * @return World, null if it hasn't been set.
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    public void setWorld(World world) {
+        this.world = world;
+    }
+
     public Vector3d getPosition() {
         return position;
     }
@@ -157,6 +181,12 @@ public class NPC {
         return yaw;
     }
 
+    void setLocation(Vector3d position, float yaw, float pitch) {
+        this.position = position;
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+
     public void teleport(Player player, Vector3d targetPosition, float yaw, float pitch) {
         this.position = targetPosition;
         this.yaw = yaw;
@@ -218,11 +248,7 @@ public class NPC {
         this.position = targetPosition;
         this.yaw = yaw;
         this.pitch = pitch;
-        for (Player player : players) {
-            if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, new WrappedPacketOutEntityTeleport(entityID, position, yaw, pitch, onGround));
-            }
-        }
+        sendPackets(players, new WrappedPacketOutEntityTeleport(entityID, position, yaw, pitch, onGround));
     }
 
     public void move(List<Player> players, Vector3d targetPosition) {
@@ -237,11 +263,7 @@ public class NPC {
         } else {
             sentPacket = new WrappedPacketOutEntity.WrappedPacketOutRelEntityMove(entityID, distX, distY, distZ, onGround);
         }
-        for (Player player : players) {
-            if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, sentPacket);
-            }
-        }
+        sendPackets(players, sentPacket);
     }
 
     public void moveAndRotate(List<Player> players, Vector3d targetPosition, float yaw, float pitch) {
@@ -258,11 +280,7 @@ public class NPC {
         } else {
             sentPacket = new WrappedPacketOutEntity.WrappedPacketOutRelEntityMoveLook(entityID, distX, distY, distZ, yaw, pitch, onGround);
         }
-        for (Player player : players) {
-            if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, sentPacket);
-            }
-        }
+        sendPackets(players, sentPacket);
     }
 
     public void rotate(List<Player> players, float yaw, float pitch) {
@@ -270,23 +288,14 @@ public class NPC {
         this.pitch = pitch;
         WrappedPacketOutEntity.WrappedPacketOutEntityLook lookPacket = new WrappedPacketOutEntity.WrappedPacketOutEntityLook(entityID, (byte) (yaw * 256 / 360), (byte) (pitch * 256 / 360), onGround);
         WrappedPacketOutEntityHeadRotation headRotationPacket = new WrappedPacketOutEntityHeadRotation(entityID, (byte) (yaw * 256 / 360));
-        for (Player player : players) {
-            if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, lookPacket);
-                PacketEvents.get().getPlayerUtils().sendPacket(player, headRotationPacket);
-            }
-        }
+        sendPackets(players, lookPacket, headRotationPacket);
     }
 
     @Deprecated
     public void moveDelta(List<Player> players, Vector3d deltaPosition) {
         this.position = this.position.add(deltaPosition);
         WrappedPacketOutEntityTeleport teleportPacket = new WrappedPacketOutEntityTeleport(entityID, position, yaw, pitch, onGround);
-        for (Player player : players) {
-            if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, teleportPacket);
-            }
-        }
+        sendPackets(players, teleportPacket);
     }
 
     @Deprecated
@@ -295,10 +304,27 @@ public class NPC {
         this.yaw = yaw;
         this.pitch = pitch;
         WrappedPacketOutEntityTeleport teleportPacket = new WrappedPacketOutEntityTeleport(entityID, position, yaw, pitch, onGround);
+        sendPackets(players, teleportPacket);
+    }
+
+    /**
+     * Send packets to every player the NPC has been spawned for.
+     * The wrappers are only converted once and every player's packets are flushed at once.
+     *
+     * @param players  Players that might receive the packets.
+     * @param wrappers Client-bound wrappers.
+     */
+    private void sendPackets(List<Player> players, SendableWrapper... wrappers) {
+        List<Player> receivers = new ArrayList<>(players.size());
         for (Player player : players) {
             if (hasSpawned(player)) {
-                PacketEvents.get().getPlayerUtils().sendPacket(player, teleportPacket);
+                receivers.add(player);
             }
         }
+        PacketBatch batch = new PacketBatch();
+        for (SendableWrapper wrapper : wrappers) {
+            batch.add(receivers, wrapper);
+        }
+        batch.send();
     }
 }
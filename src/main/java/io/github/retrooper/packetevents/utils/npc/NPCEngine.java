@@ -0,0 +1,420 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.npc;
+
+import io.github.retrooper.packetevents.packetwrappers.play.out.entity.WrappedPacketOutEntity;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityheadrotation.WrappedPacketOutEntityHeadRotation;
+import io.github.retrooper.packetevents.packetwrappers.play.out.entityteleport.WrappedPacketOutEntityTeleport;
+import io.github.retrooper.packetevents.utils.player.PacketBatch;
+import io.github.retrooper.packetevents.utils.server.ServerVersion;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tick driven NPC engine on top of the {@link NPCManager}.
+ * The viewers are found with the spatial index of the NPC manager, so every player only checks the NPCs around them.
+ * The engine keeps track of the players every NPC has been spawned for.
+ * NPCs are automatically spawned for players entering the view distance of the NPC and despawned for players leaving it.
+ * Movement and rotation changes can be made on any thread, they are accumulated during the tick.
+ * At the end of the tick every changed NPC sends one relative move, look or teleport packet to its viewers,
+ * all packets of the tick are written with a single flush per player.
+ *
+ * @author retrooper
+ * @since 1.8
+ */
+public class NPCEngine {
+    /**
+     * Amount of ticks a moving NPC is moved with relative moves before it is teleported to correct the client's position.
+     */
+    private static final long RESYNC_INTERVAL = 400L;
+    private final NPCManager npcManager;
+    private final Map<Integer, TrackedNPC> trackedNPCs = new ConcurrentHashMap<>();
+    private final Queue<TrackedNPC> untrackedNPCs = new ConcurrentLinkedQueue<>();
+    private final PacketBatch batch = new PacketBatch();
+    private volatile double viewDistance = 48.0;
+    private double deltaDivisor;
+    private long maxDelta;
+    private long currentTick;
+    private BukkitTask tickTask;
+
+    public NPCEngine(NPCManager npcManager) {
+        this.npcManager = npcManager;
+    }
+
+    /**
+     * Start ticking the engine once per server tick.
+     *
+     * @param plugin Plugin scheduling the tick task.
+     */
+    public void start(Plugin plugin) {
+        if (tickTask == null) {
+            tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Stop ticking the engine and despawn every tracked NPC for its viewers.
+     * This has to be called on the main thread.
+     */
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        for (TrackedNPC trackedNPC : trackedNPCs.values()) {
+            despawnAll(trackedNPC);
+        }
+        TrackedNPC trackedNPC;
+        while ((trackedNPC = untrackedNPCs.poll()) != null) {
+            despawnAll(trackedNPC);
+        }
+        batch.send();
+    }
+
+    public boolean isRunning() {
+        return tickTask != null;
+    }
+
+    /**
+     * Distance players have to be within to see an NPC.
+     *
+     * @return View distance in blocks.
+     */
+    public double getViewDistance() {
+        return viewDistance;
+    }
+
+    public void setViewDistance(double viewDistance) {
+        if (viewDistance <= 0) {
+            throw new IllegalArgumentException("The view distance must be positive, got " + viewDistance);
+        }
+        this.viewDistance = viewDistance;
+    }
+
+    /**
+     * Let the engine spawn, despawn and move an NPC.
+     * The NPC is registered in the NPC manager and has to be in a world, see {@link NPC#setWorld(World)}.
+     *
+     * @param npc NPC
+     */
+    public void track(NPC npc) {
+        npcManager.registerNPC(npc);
+        trackedNPCs.computeIfAbsent(npc.getEntityId(), id -> new TrackedNPC(npc));
+    }
+
+    /**
+     * Stop tracking an NPC and unregister it from the NPC manager.
+     * The NPC is despawned for its viewers at the end of the tick.
+     *
+     * @param npc NPC
+     */
+    public void untrack(NPC npc) {
+        npcManager.unregisterNPC(npc);
+        TrackedNPC trackedNPC = trackedNPCs.remove(npc.getEntityId());
+        if (trackedNPC != null) {
+            untrackedNPCs.add(trackedNPC);
+        }
+    }
+
+    public boolean isTracked(NPC npc) {
+        return trackedNPCs.containsKey(npc.getEntityId());
+    }
+
+    /**
+     * Get the players a tracked NPC has been spawned for.
+     *
+     * @param npc NPC
+     * @return Read-only view of the viewers, empty if the NPC isn't tracked.
+     */
+    public Set<Player> getViewers(NPC npc) {
+        TrackedNPC trackedNPC = trackedNPCs.get(npc.getEntityId());
+        if (trackedNPC == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(trackedNPC.viewers.keySet());
+    }
+
+    /**
+     * Move a tracked NPC. The movement is sent to the viewers at the end of the tick.
+     * This method can be called on any thread.
+     *
+     * @param npc      NPC
+     * @param position Target position.
+     */
+    public void move(NPC npc, Vector3d position) {
+        TrackedNPC trackedNPC = getTracked(npc);
+        synchronized (trackedNPC) {
+            npc.setLocation(position, npc.getYaw(), npc.getPitch());
+            trackedNPC.dirty = true;
+        }
+    }
+
+    /**
+     * Rotate a tracked NPC. The rotation is sent to the viewers at the end of the tick.
+     * This method can be called on any thread.
+     *
+     * @param npc   NPC
+     * @param yaw   Target yaw.
+     * @param pitch Target pitch.
+     */
+    public void rotate(NPC npc, float yaw, float pitch) {
+        TrackedNPC trackedNPC = getTracked(npc);
+        synchronized (trackedNPC) {
+            npc.setLocation(npc.getPosition(), yaw, pitch);
+            trackedNPC.dirty = true;
+        }
+    }
+
+    /**
+     * Move and rotate a tracked NPC. The changes are sent to the viewers at the end of the tick.
+     * This method can be called on any thread.
+     *
+     * @param npc      NPC
+     * @param position Target position.
+     * @param yaw      Target yaw.
+     * @param pitch    Target pitch.
+     */
+    public void moveAndRotate(NPC npc, Vector3d position, float yaw, float pitch) {
+        TrackedNPC trackedNPC = getTracked(npc);
+        synchronized (trackedNPC) {
+            npc.setLocation(position, yaw, pitch);
+            trackedNPC.dirty = true;
+        }
+    }
+
+    /**
+     * Teleport a tracked NPC. The viewers receive a teleport packet at the end of the tick,
+     * no matter how far the NPC has moved.
+     * This method can be called on any thread.
+     *
+     * @param npc      NPC
+     * @param position Target position.
+     * @param yaw      Target yaw.
+     * @param pitch    Target pitch.
+     */
+    public void teleport(NPC npc, Vector3d position, float yaw, float pitch) {
+        TrackedNPC trackedNPC = getTracked(npc);
+        synchronized (trackedNPC) {
+            npc.setLocation(position, yaw, pitch);
+            trackedNPC.dirty = true;
+            trackedNPC.teleport = true;
+        }
+    }
+
+    /**
+     * Send the accumulated changes of every tracked NPC and update the viewers of every tracked NPC.
+     * PacketEvents already does this once per tick if the engine has been started.
+     * This has to be called on the main thread.
+     */
+    public void tick() {
+        if (deltaDivisor == 0) {
+            //Relative moves are encoded in a byte (1/32 blocks) on 1.8 and in a short (1/4096 blocks) on 1.9+
+            if (ServerVersion.getVersion().isOlderThan(ServerVersion.v_1_9)) {
+                deltaDivisor = 32.0;
+                maxDelta = Byte.MAX_VALUE;
+            } else {
+                deltaDivisor = 4096.0;
+                maxDelta = Short.MAX_VALUE;
+            }
+        }
+        currentTick++;
+        TrackedNPC untrackedNPC;
+        while ((untrackedNPC = untrackedNPCs.poll()) != null) {
+            despawnAll(untrackedNPC);
+        }
+        for (TrackedNPC trackedNPC : trackedNPCs.values()) {
+            if (!trackedNPC.viewers.isEmpty()) {
+                addUpdates(trackedNPC);
+            }
+            npcManager.updateNPC(trackedNPC.npc);
+        }
+        //Look up the NPCs around every player instead of comparing every NPC with every player.
+        double radius = viewDistance;
+        for (World world : Bukkit.getWorlds()) {
+            for (Player player : world.getPlayers()) {
+                Location location = player.getLocation();
+                npcManager.getSpatialIndex().forEachInRadius(world, location.getX(), location.getY(), location.getZ(), radius, npc -> {
+                    TrackedNPC trackedNPC = trackedNPCs.get(npc.getEntityId());
+                    if (trackedNPC != null) {
+                        addViewer(trackedNPC, player);
+                    }
+                });
+            }
+        }
+        for (TrackedNPC trackedNPC : trackedNPCs.values()) {
+            removeStaleViewers(trackedNPC);
+        }
+        batch.send();
+    }
+
+    private TrackedNPC getTracked(NPC npc) {
+        TrackedNPC trackedNPC = trackedNPCs.get(npc.getEntityId());
+        if (trackedNPC == null) {
+            throw new IllegalStateException("The NPC " + npc.getName() + " isn't tracked by the NPC engine!");
+        }
+        return trackedNPC;
+    }
+
+    private void addUpdates(TrackedNPC trackedNPC) {
+        NPC npc = trackedNPC.npc;
+        Vector3d position;
+        float yaw, pitch;
+        boolean teleport;
+        synchronized (trackedNPC) {
+            if (!trackedNPC.dirty) {
+                return;
+            }
+            position = npc.getPosition();
+            yaw = npc.getYaw();
+            pitch = npc.getPitch();
+            teleport = trackedNPC.teleport;
+            trackedNPC.dirty = false;
+            trackedNPC.teleport = false;
+        }
+        long x = encodePosition(position.x);
+        long y = encodePosition(position.y);
+        long z = encodePosition(position.z);
+        long deltaX = x - trackedNPC.x;
+        long deltaY = y - trackedNPC.y;
+        long deltaZ = z - trackedNPC.z;
+        byte yawAngle = encodeAngle(yaw);
+        byte pitchAngle = encodeAngle(pitch);
+        boolean moved = deltaX != 0 || deltaY != 0 || deltaZ != 0;
+        boolean rotated = yawAngle != trackedNPC.yawAngle || pitchAngle != trackedNPC.pitchAngle;
+        if (!teleport && !moved && !rotated) {
+            return;
+        }
+        Set<Player> viewers = trackedNPC.viewers.keySet();
+        int entityID = npc.getEntityId();
+        boolean onGround = npc.isOnGround();
+        if (teleport || (moved && (currentTick - trackedNPC.lastTeleportTick >= RESYNC_INTERVAL
+                || Math.abs(deltaX) > maxDelta || Math.abs(deltaY) > maxDelta || Math.abs(deltaZ) > maxDelta))) {
+            batch.add(viewers, new WrappedPacketOutEntityTeleport(entityID, position, yaw, pitch, onGround));
+            trackedNPC.lastTeleportTick = currentTick;
+        } else if (moved && rotated) {
+            batch.add(viewers, new WrappedPacketOutEntity.WrappedPacketOutRelEntityMoveLook(entityID,
+                    deltaX / deltaDivisor, deltaY / deltaDivisor, deltaZ / deltaDivisor, yaw, pitch, onGround));
+        } else if (moved) {
+            batch.add(viewers, new WrappedPacketOutEntity.WrappedPacketOutRelEntityMove(entityID,
+                    deltaX / deltaDivisor, deltaY / deltaDivisor, deltaZ / deltaDivisor, onGround));
+        } else {
+            batch.add(viewers, new WrappedPacketOutEntity.WrappedPacketOutEntityLook(entityID, yaw, pitch, onGround));
+        }
+        if (rotated) {
+            batch.add(viewers, new WrappedPacketOutEntityHeadRotation(entityID, yaw));
+        }
+        trackedNPC.setSentLocation(x, y, z, yawAngle, pitchAngle);
+    }
+
+    private void addViewer(TrackedNPC trackedNPC, Player player) {
+        Viewer viewer = trackedNPC.viewers.get(player);
+        if (viewer == null) {
+            if (trackedNPC.viewers.isEmpty()) {
+                //Nobody received the changes up until now, the spawn packet contains the current location.
+                trackedNPC.resetSentLocation();
+            }
+            trackedNPC.npc.spawn(batch, player);
+            trackedNPC.viewers.put(player, new Viewer(currentTick));
+        } else {
+            viewer.lastSeenTick = currentTick;
+        }
+    }
+
+    private void removeStaleViewers(TrackedNPC trackedNPC) {
+        //Despawn the NPC for the players who left the view distance, the world or the server.
+        Iterator<Map.Entry<Player, Viewer>> iterator = trackedNPC.viewers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Player, Viewer> entry = iterator.next();
+            if (entry.getValue().lastSeenTick != currentTick) {
+                trackedNPC.npc.despawn(batch, entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void despawnAll(TrackedNPC trackedNPC) {
+        for (Player player : trackedNPC.viewers.keySet()) {
+            trackedNPC.npc.despawn(batch, player);
+        }
+        trackedNPC.viewers.clear();
+    }
+
+    private long encodePosition(double value) {
+        return (long) Math.floor(value * deltaDivisor);
+    }
+
+    private static byte encodeAngle(float angle) {
+        return (byte) (angle * 256.0F / 360.0F);
+    }
+
+    private final class TrackedNPC {
+        private final NPC npc;
+        private final Map<Player, Viewer> viewers = new ConcurrentHashMap<>();
+        //Guarded by this tracked NPC
+        private boolean dirty, teleport;
+        //Location the viewers know about, only accessed on the main thread
+        private long x, y, z;
+        private byte yawAngle, pitchAngle;
+        private long lastTeleportTick;
+
+        private TrackedNPC(NPC npc) {
+            this.npc = npc;
+        }
+
+        private void resetSentLocation() {
+            synchronized (this) {
+                Vector3d position = npc.getPosition();
+                setSentLocation(encodePosition(position.x), encodePosition(position.y), encodePosition(position.z),
+                        encodeAngle(npc.getYaw()), encodeAngle(npc.getPitch()));
+                dirty = false;
+                teleport = false;
+            }
+            lastTeleportTick = currentTick;
+        }
+
+        private void setSentLocation(long x, long y, long z, byte yawAngle, byte pitchAngle) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yawAngle = yawAngle;
+            this.pitchAngle = pitchAngle;
+        }
+    }
+
+    private static final class Viewer {
+        private long lastSeenTick;
+
+        private Viewer(long lastSeenTick) {
+            this.lastSeenTick = lastSeenTick;
+        }
+    }
+}
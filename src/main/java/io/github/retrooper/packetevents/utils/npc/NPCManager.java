@@ -18,14 +18,19 @@
 
 package io.github.retrooper.packetevents.utils.npc;
 
+import io.github.retrooper.packetevents.utils.spatial.SpatialIndex;
+import io.github.retrooper.packetevents.utils.vector.Vector3d;
+import org.bukkit.World;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class NPCManager {
     private final Map<Integer, NPC> npcMap = new ConcurrentHashMap<>();
+    private final SpatialIndex<NPC> spatialIndex = new SpatialIndex<>();
 
     @Nullable
     public NPC getNPCById(int entityID) {
@@ -38,9 +43,55 @@ public class NPCManager {
 
     public void registerNPC(NPC npc) {
         npcMap.put(npc.getEntityId(), npc);
+        updateNPC(npc);
     }
 
     public void unregisterNPC(NPC npc) {
         npcMap.remove(npc.getEntityId());
+        spatialIndex.remove(npc.getEntityId());
+    }
+
+    /**
+     * Update the position of a registered NPC in the spatial index.
+     * The {@link NPCEngine} does this for the NPCs it tracks,
+     * call this after moving an NPC yourself.
+     *
+     * @param npc NPC
+     */
+    public void updateNPC(NPC npc) {
+        if (!npcMap.containsKey(npc.getEntityId())) {
+            return;
+        }
+        World world = npc.getWorld();
+        if (world == null) {
+            spatialIndex.remove(npc.getEntityId());
+        } else {
+            Vector3d position = npc.getPosition();
+            spatialIndex.put(npc.getEntityId(), npc, world, position.x, position.y, position.z);
+        }
+    }
+
+    /**
+     * Get the registered NPCs within a radius around a position.
+     * This can be called on any thread.
+     *
+     * @param world  World
+     * @param x      X coordinate of the center.
+     * @param y      Y coordinate of the center.
+     * @param z      Z coordinate of the center.
+     * @param radius Radius in blocks.
+     * @return NPCs within the radius.
+     */
+    public List<NPC> getNPCsInRadius(World world, double x, double y, double z, double radius) {
+        return spatialIndex.getInRadius(world, x, y, z, radius);
+    }
+
+    /**
+     * Get the spatial index of the registered NPCs, keyed by their entity ID.
+     *
+     * @return Spatial index
+     */
+    public SpatialIndex<NPC> getSpatialIndex() {
+        return spatialIndex;
     }
 }
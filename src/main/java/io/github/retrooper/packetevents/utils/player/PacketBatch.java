@@ -0,0 +1,152 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.player;
+
+import io.github.retrooper.packetevents.PacketEvents;
+import io.github.retrooper.packetevents.packetwrappers.api.SendableWrapper;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of client-bound packets.
+ * Sending packets one by one flushes the netty channel after every single packet.
+ * A packet batch collects the packets per player and writes all packets of a player in one event loop task,
+ * the channel is only flushed once at the end.
+ * Wrappers added for multiple players are only converted to an NMS packet once.
+ * This class is not thread-safe, every thread should use its own batch.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#tickPacketBatching(boolean)
+ * @since 1.8
+ */
+public class PacketBatch {
+    private Map<Object, List<Object>> packets = new IdentityHashMap<>();
+    private int size;
+
+    /**
+     * Add a client-bound wrapper to the batch.
+     *
+     * @param player  Packet receiver.
+     * @param wrapper Client-bound wrapper supporting sending.
+     * @return Same packet batch instance.
+     */
+    public PacketBatch add(Player player, SendableWrapper wrapper) {
+        Object nmsPacket = asNMSPacket(wrapper);
+        if (nmsPacket != null) {
+            addNMS(player, nmsPacket);
+        }
+        return this;
+    }
+
+    /**
+     * Add a client-bound wrapper for multiple players to the batch.
+     * The wrapper is only converted to an NMS packet once.
+     *
+     * @param players Packet receivers.
+     * @param wrapper Client-bound wrapper supporting sending.
+     * @return Same packet batch instance.
+     */
+    public PacketBatch add(Collection<? extends Player> players, SendableWrapper wrapper) {
+        if (!players.isEmpty()) {
+            Object nmsPacket = asNMSPacket(wrapper);
+            if (nmsPacket != null) {
+                addNMS(players, nmsPacket);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Add a client-bound raw NMS packet to the batch.
+     *
+     * @param player Packet receiver.
+     * @param packet Client-bound raw NMS packet.
+     * @return Same packet batch instance.
+     */
+    public PacketBatch addNMS(Player player, Object packet) {
+        Object channel = PacketEvents.get().getPlayerUtils().getChannel(player);
+        if (channel != null) {
+            addChannel(channel, packet);
+        }
+        return this;
+    }
+
+    /**
+     * Add a client-bound raw NMS packet for multiple players to the batch.
+     *
+     * @param players Packet receivers.
+     * @param packet  Client-bound raw NMS packet.
+     * @return Same packet batch instance.
+     */
+    public PacketBatch addNMS(Collection<? extends Player> players, Object packet) {
+        for (Player player : players) {
+            addNMS(player, packet);
+        }
+        return this;
+    }
+
+    void addChannel(Object channel, Object packet) {
+        packets.computeIfAbsent(channel, c -> new ArrayList<>()).add(packet);
+        size++;
+    }
+
+    /**
+     * Amount of packets in this batch.
+     *
+     * @return Packet count.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Send all packets in this batch and clear it.
+     * The batch can be re-used afterwards.
+     */
+    public void send() {
+        if (size == 0) {
+            return;
+        }
+        Map<Object, List<Object>> sentPackets = packets;
+        //The injector might still be sending the old lists, so we start over with new ones.
+        packets = new IdentityHashMap<>();
+        size = 0;
+        for (Map.Entry<Object, List<Object>> entry : sentPackets.entrySet()) {
+            PacketEvents.get().getPlayerUtils().sendNMSPacketsInternal(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static Object asNMSPacket(SendableWrapper wrapper) {
+        try {
+            return wrapper.asNMSPacket();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -25,6 +25,8 @@ import io.github.retrooper.packetevents.packetwrappers.play.out.namedentityspawn
 import io.github.retrooper.packetevents.utils.gameprofile.GameProfileUtil;
 import io.github.retrooper.packetevents.utils.gameprofile.WrappedGameProfile;
 import io.github.retrooper.packetevents.utils.geyser.GeyserUtils;
+import io.github.retrooper.packetevents.utils.netty.bytebuf.ByteBufUtil;
+import io.github.retrooper.packetevents.utils.netty.channel.ChannelUtils;
 import io.github.retrooper.packetevents.utils.nms.NMSUtils;
 import io.github.retrooper.packetevents.utils.server.ServerVersion;
 import io.github.retrooper.packetevents.utils.versionlookup.VersionLookupUtils;
@@ -32,10 +34,15 @@ import io.github.retrooper.packetevents.utils.versionlookup.v_1_7_10.SpigotVersi
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -48,10 +55,30 @@ import java.util.concurrent.ConcurrentHashMap;
  * @since 1.6.8
  */
 public final class PlayerUtils {
+    /**
+     * @deprecated PacketEvents stores the login time in the {@link User}, this map isn't updated anymore.
+     */
+    @Deprecated
     public final Map<UUID, Long> loginTime = new ConcurrentHashMap<>();
+    /**
+     * @deprecated PacketEvents stores the ping in the {@link User}, this map isn't updated anymore.
+     */
+    @Deprecated
     public final Map<UUID, Integer> playerPingMap = new ConcurrentHashMap<>();
+    /**
+     * @deprecated PacketEvents stores the smoothed ping in the {@link User}, this map isn't updated anymore.
+     */
+    @Deprecated
     public final Map<UUID, Integer> playerSmoothedPingMap = new ConcurrentHashMap<>();
+    /**
+     * Client versions of players PacketEvents hasn't injected.
+     * The client versions of injected players are stored in their {@link User}.
+     */
     public final Map<InetSocketAddress, ClientVersion> clientVersionsMap = new ConcurrentHashMap<>();
+    /**
+     * @deprecated PacketEvents stores the keep alive timestamp in the {@link User}, this map isn't updated anymore.
+     */
+    @Deprecated
     public final Map<UUID, Long> keepAliveMap = new ConcurrentHashMap<>();
     public final Map<String, Object> channels = new ConcurrentHashMap<>();
     /**
@@ -62,9 +89,25 @@ public final class PlayerUtils {
      * We will compare this version(received from the packet) and the one from the ViaVersion API and the one from the ProtocolSupport API.
      * ProtocolSupport compatibility might not work.
      * If ViaVersion or ProtocolSupport aren't available, we will trust this one.
+     *
+     * @deprecated PacketEvents stores the handshake client version in the {@link User}, this map isn't updated anymore.
+     * @see User#getHandshakeClientVersion()
      */
+    @Deprecated
     public final Map<InetSocketAddress, ClientVersion> tempClientVersionMap = new ConcurrentHashMap<>();
 
+    /**
+     * Packets sent on the main thread during the current tick.
+     * This is only used if tick packet batching is enabled.
+     */
+    private final PacketBatch tickBatch = new PacketBatch();
+    private BukkitTask tickBatchTask;
+    private volatile boolean tickBatching;
+    /**
+     * Should the packets we send go through the outbound scheduler of the receiver?
+     */
+    private volatile boolean outboundScheduling;
+
     /**
      * Use reflection to read the ping value NMS calculates for the player.
      * NMS smooths the player ping.
@@ -77,6 +120,29 @@ public final class PlayerUtils {
         return NMSUtils.getPlayerPing(player);
     }
 
+    /**
+     * Get the connection state PacketEvents stores for a player.
+     *
+     * @param player Target player.
+     * @return User, null if PacketEvents hasn't injected the player.
+     */
+    @Nullable
+    public User getUser(@NotNull Player player) {
+        return ChannelUtils.getUser(getChannel(player));
+    }
+
+    /**
+     * Get the connection state PacketEvents stores on a netty channel.
+     * Unlike {@link #getUser(Player)} this also works for connections that haven't become a player yet.
+     *
+     * @param channel Netty channel.
+     * @return User, null if PacketEvents hasn't injected the channel.
+     */
+    @Nullable
+    public User getUser(Object channel) {
+        return ChannelUtils.getUser(channel);
+    }
+
     /**
      * Use the ping PacketEvents calculates for the player. (Updates every incoming Keep Alive packet)
      *
@@ -84,7 +150,8 @@ public final class PlayerUtils {
      * @return Non-smoothed ping.
      */
     public int getPing(Player player) {
-        return getPing(player.getUniqueId());
+        User user = getUser(player);
+        return user == null ? 0 : user.getPing();
     }
 
     /**
@@ -95,7 +162,8 @@ public final class PlayerUtils {
      */
     @Deprecated
     public int getSmoothedPing(final Player player) {
-        return getSmoothedPing(player.getUniqueId());
+        User user = getUser(player);
+        return user == null ? 0 : user.getSmoothedPing();
     }
 
     //TODO Don't calculate ping internally, use NMS' smoothed ping. On 1.17 use the Player#getPing which you contributed.
@@ -109,15 +177,8 @@ public final class PlayerUtils {
      */
     @Deprecated
     public int getPing(UUID uuid) {
-        Integer ping = playerPingMap.get(uuid);
-        if (ping == null) {
-            Long joinTime = loginTime.get(uuid);
-            if (joinTime == null) {
-                return 0;
-            }
-            return (int) (System.currentTimeMillis() - joinTime);
-        }
-        return ping;
+        Player player = Bukkit.getPlayer(uuid);
+        return player == null ? 0 : getPing(player);
     }
 
     /**
@@ -128,15 +189,8 @@ public final class PlayerUtils {
      */
     @Deprecated
     public int getSmoothedPing(UUID uuid) {
-        Integer smoothedPing = playerSmoothedPingMap.get(uuid);
-        if (smoothedPing == null) {
-            Long joinTime = loginTime.get(uuid);
-            if (joinTime == null) {
-                return 0;
-            }
-            return (int) (System.currentTimeMillis() - joinTime);
-        }
-        return smoothedPing;
+        Player player = Bukkit.getPlayer(uuid);
+        return player == null ? 0 : getSmoothedPing(player);
     }
 
     /**
@@ -144,21 +198,21 @@ public final class PlayerUtils {
      *
      * @param player Target player.
      * @return Client Version.
-     * @see #clientVersionsMap
+     * @see User#getClientVersion()
      */
     @NotNull
     public ClientVersion getClientVersion(@NotNull final Player player) {
         if (player.getAddress() == null) {
             return ClientVersion.UNKNOWN;
         }
-        ClientVersion version = clientVersionsMap.get(player.getAddress());
+        User user = getUser(player);
+        ClientVersion version = user != null ? user.getClientVersion() : clientVersionsMap.get(player.getAddress());
         // If a player's version didn't resolve, we should try and resolve it again
         if (version == null || !version.isResolved()) {
             //Prioritize asking ViaVersion and ProtocolSupport as they modify the protocol version in the packet we access it from.
             if (VersionLookupUtils.isDependencyAvailable()) {
                 try {
                     version = ClientVersion.getClientVersion(VersionLookupUtils.getProtocolVersion(player));
-                    clientVersionsMap.put(player.getAddress(), version);
                 } catch (Exception ex) {
                     //Try ask the dependency again the next time, for now it is temporarily unresolved...
                     //Temporary unresolved means there is still hope, an exception was thrown on the dependency's end.
@@ -166,7 +220,7 @@ public final class PlayerUtils {
                 }
             } else {
                 //We can trust the version we retrieved from the packet.
-                version = tempClientVersionMap.get(player.getAddress());
+                version = user != null ? user.getHandshakeClientVersion() : null;
                 if (version == null) {
                     //We couldn't snatch that version from the packet.
                     int protocolVersion;
@@ -182,6 +236,10 @@ public final class PlayerUtils {
                     }
                     version = ClientVersion.getClientVersion(protocolVersion);
                 }
+            }
+            if (user != null) {
+                user.setClientVersion(version);
+            } else {
                 clientVersionsMap.put(player.getAddress(), version);
             }
         }
@@ -216,7 +274,7 @@ public final class PlayerUtils {
     public void sendPacket(Player player, SendableWrapper wrapper) {
         try {
             Object nmsPacket = wrapper.asNMSPacket();
-            PacketEvents.get().getInjector().sendPacket(getChannel(player), nmsPacket);
+            sendNMSPacketInternal(getChannel(player), nmsPacket);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -226,7 +284,7 @@ public final class PlayerUtils {
     public void sendPacket(Object channel, SendableWrapper wrapper) {
         try {
             Object nmsPacket = wrapper.asNMSPacket();
-            PacketEvents.get().getInjector().sendPacket(channel, nmsPacket);
+            sendNMSPacketInternal(channel, nmsPacket);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -239,12 +297,171 @@ public final class PlayerUtils {
      * @param packet Client-bound raw NMS packet.
      */
     public void sendNMSPacket(Player player, Object packet) {
-        PacketEvents.get().getInjector().sendPacket(getChannel(player), packet);
+        sendNMSPacketInternal(getChannel(player), packet);
     }
 
     @Deprecated
     public void sendNMSPacket(Object channel, Object packet) {
-        PacketEvents.get().getInjector().sendPacket(channel, packet);
+        sendNMSPacketInternal(channel, packet);
+    }
+
+    /**
+     * Send the same client-bound(server-sided) wrapper to multiple players.
+     * The wrapper is only converted to an NMS packet once.
+     * If no packet listener is interested in the packet, it is also only serialized once per client version
+     * and the same bytes are written to every player with a vanilla packet encoder.
+     * Players whose packets are encoded differently (protocol hacks) still receive the NMS packet.
+     *
+     * @param players Packet receivers.
+     * @param wrapper Client-bound wrapper supporting sending.
+     */
+    public void broadcastPacket(Collection<? extends Player> players, SendableWrapper wrapper) {
+        if (players.isEmpty()) {
+            return;
+        }
+        try {
+            Object nmsPacket = wrapper.asNMSPacket();
+            broadcastNMSPacket(players, nmsPacket);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Send the same client-bound(server-sided) raw NMS packet to multiple players.
+     *
+     * @param players Packet receivers.
+     * @param packet  Client-bound raw NMS packet.
+     * @see #broadcastPacket(Collection, SendableWrapper)
+     */
+    public void broadcastNMSPacket(Collection<? extends Player> players, Object packet) {
+        if (players.isEmpty()) {
+            return;
+        }
+        //Our listeners have to see the NMS packet, they can't process encoded packets.
+        Player anyPlayer = players.iterator().next();
+        if (players.size() == 1 || PacketEvents.get().getInternalPacketProcessor().isWriteProcessed(anyPlayer, packet)) {
+            for (Player player : players) {
+                sendNMSPacketInternal(getChannel(player), packet);
+            }
+            return;
+        }
+        //Players of the same client version receive the same bytes.
+        Map<ClientVersion, List<Object>> channelsByVersion = new EnumMap<>(ClientVersion.class);
+        for (Player player : players) {
+            Object channel = getChannel(player);
+            if (channel != null) {
+                channelsByVersion.computeIfAbsent(getClientVersion(player), v -> new ArrayList<>()).add(channel);
+            }
+        }
+        for (Map.Entry<ClientVersion, List<Object>> entry : channelsByVersion.entrySet()) {
+            List<Object> channels = entry.getValue();
+            Object encoderChannel = channels.get(0);
+            //We can't group players we don't know the version of.
+            boolean encodeOnce = channels.size() > 1 && entry.getKey().isResolved();
+            Object encodedPacket = encodeOnce ? ChannelUtils.encodePacket(encoderChannel, packet) : null;
+            if (encodedPacket == null) {
+                for (Object channel : channels) {
+                    sendNMSPacketInternal(channel, packet);
+                }
+                continue;
+            }
+            ByteBufUtil byteBufUtil = PacketEvents.get().getByteBufUtil();
+            Class<?> encoderClass = ChannelUtils.getEncoderClass(encoderChannel);
+            for (Object channel : channels) {
+                if (ChannelUtils.getEncoderClass(channel) == encoderClass) {
+                    sendNMSPacketInternal(channel, byteBufUtil.retainedDuplicate(encodedPacket));
+                } else {
+                    sendNMSPacketInternal(channel, packet);
+                }
+            }
+            byteBufUtil.release(encodedPacket);
+        }
+    }
+
+    private void sendNMSPacketInternal(Object channel, Object packet) {
+        if (tickBatching && channel != null && Bukkit.isPrimaryThread()) {
+            //We will flush once the tick is over.
+            tickBatch.addChannel(channel, packet);
+            return;
+        }
+        User user = outboundScheduling ? ChannelUtils.getUser(channel) : null;
+        if (user != null) {
+            user.getOutboundScheduler().send(packet);
+        } else {
+            PacketEvents.get().getInjector().sendPacket(channel, packet);
+        }
+    }
+
+    /**
+     * Send multiple packets to a channel and only flush once.
+     *
+     * @param channel Netty channel.
+     * @param packets Client-bound raw NMS packets, this list must not be modified after it has been passed.
+     */
+    void sendNMSPacketsInternal(Object channel, List<Object> packets) {
+        User user = outboundScheduling ? ChannelUtils.getUser(channel) : null;
+        if (user != null) {
+            user.getOutboundScheduler().sendAll(packets);
+        } else {
+            PacketEvents.get().getInjector().sendPackets(channel, packets);
+        }
+    }
+
+    /**
+     * Enable or disable scheduling the packets we send by the writability of the receiver's channel.
+     * This is used internally, do NOT call this method.
+     *
+     * @param outboundScheduling Should we use the outbound schedulers?
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#outboundScheduling(boolean)
+     */
+    public void setOutboundScheduling(boolean outboundScheduling) {
+        this.outboundScheduling = outboundScheduling;
+    }
+
+    /**
+     * Are the packets we send scheduled by the writability of the receiver's channel?
+     *
+     * @return Is outbound scheduling enabled?
+     */
+    public boolean isOutboundScheduling() {
+        return outboundScheduling;
+    }
+
+    /**
+     * Start coalescing the packets sent on the main thread until the end of the tick.
+     * This is used internally, do NOT call this method.
+     *
+     * @param plugin Plugin scheduling the flush task.
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#tickPacketBatching(boolean)
+     */
+    public void startTickBatching(Plugin plugin) {
+        if (tickBatchTask == null) {
+            tickBatchTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flushTickBatch, 1L, 1L);
+            tickBatching = true;
+        }
+    }
+
+    /**
+     * Stop coalescing packets and send the packets that are still queued.
+     * This is used internally, do NOT call this method.
+     */
+    public void stopTickBatching() {
+        tickBatching = false;
+        if (tickBatchTask != null) {
+            tickBatchTask.cancel();
+            tickBatchTask = null;
+        }
+        flushTickBatch();
+    }
+
+    /**
+     * Send the packets that have been coalesced during this tick right away.
+     * This has to be called on the main thread.
+     * PacketEvents already does this once per tick if tick packet batching is enabled.
+     */
+    public void flushTickBatch() {
+        tickBatch.send();
     }
 
     public WrappedGameProfile getGameProfile(Player player) {
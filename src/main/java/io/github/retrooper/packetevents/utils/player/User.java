@@ -0,0 +1,480 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.player;
+
+import io.github.retrooper.packetevents.packettype.PacketState;
+import io.github.retrooper.packetevents.utils.entitytracker.ClientEntityTracker;
+import io.github.retrooper.packetevents.utils.netty.channel.OutboundScheduler;
+import io.github.retrooper.packetevents.utils.ratelimit.PacketRateLimiter;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Connection state of a single netty channel.
+ * A user is created as soon as PacketEvents injects a channel, long before the connection becomes a player,
+ * and it is freed together with the channel.
+ * Plugins can attach their own data to a user with a {@link UserKey},
+ * this replaces keeping your own maps keyed by UUID or name that you have to clean up yourself.
+ *
+ * @author retrooper
+ * @see PlayerUtils#getUser(Player)
+ * @see io.github.retrooper.packetevents.event.eventtypes.NMSPacketEvent#getUser()
+ * @since 1.8
+ */
+public final class User {
+    private static final AtomicReferenceArray<Object> NO_ATTACHMENTS = new AtomicReferenceArray<>(0);
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private final int id = NEXT_ID.incrementAndGet();
+    private final Object channel;
+    private final PacketRateLimiter rateLimiter = new PacketRateLimiter();
+    private volatile Player player;
+    private volatile PacketState state;
+    private volatile PacketState pendingState;
+    private volatile ClientVersion handshakeClientVersion;
+    private volatile ClientVersion clientVersion;
+    private volatile long loginTime;
+    private volatile long keepAliveTimestamp;
+    private volatile int ping = -1;
+    private volatile int smoothedPing = -1;
+    private volatile AtomicReferenceArray<Object> attachments;
+    private volatile OutboundScheduler outboundScheduler;
+    private volatile ClientEntityTracker entityTracker;
+    private volatile boolean closed;
+    private volatile boolean captured;
+
+    public User(Object channel) {
+        this.channel = channel;
+        this.attachments = new AtomicReferenceArray<>(Math.max(UserKey.getRegisteredKeys(), 4));
+    }
+
+    /**
+     * Unique ID of the connection.
+     * This identifies the connection in packet captures.
+     *
+     * @return Connection ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Netty channel of the connection.
+     *
+     * @return Netty channel.
+     */
+    public Object getChannel() {
+        return channel;
+    }
+
+    /**
+     * Player of the connection.
+     *
+     * @return Player, null until the connection has reached the PLAY state.
+     */
+    @Nullable
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     * The login time is set the first time the connection is associated with a player.
+     *
+     * @param player Player of the connection.
+     */
+    public void setPlayer(Player player) {
+        if (player != null && loginTime == 0L) {
+            loginTime = System.currentTimeMillis();
+        }
+        this.player = player;
+    }
+
+    /**
+     * Protocol state of the connection.
+     * We follow the state transitions of the connection (handshake, status or login, configuration and play),
+     * so the state doesn't have to be guessed from the packet classes.
+     *
+     * @return Protocol state, null if we injected the connection too late to follow its state.
+     */
+    @Nullable
+    public PacketState getState() {
+        return state;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param state Protocol state of the connection.
+     */
+    public void setState(PacketState state) {
+        this.state = state;
+        this.pendingState = null;
+    }
+
+    /**
+     * The protocol state the connection switches to once the client has acknowledged the switch.
+     *
+     * @return Pending protocol state, null if no switch is pending.
+     */
+    @Nullable
+    public PacketState getPendingState() {
+        return pendingState;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     * The pending state becomes the protocol state after the next server-bound packet has been processed.
+     *
+     * @param pendingState Pending protocol state.
+     */
+    public void setPendingState(PacketState pendingState) {
+        this.pendingState = pendingState;
+    }
+
+    /**
+     * The client version the client sent in the handshake.
+     * Protocol hacks such as ViaVersion might modify this version.
+     *
+     * @return Handshake client version, null if the handshake hasn't been processed.
+     * @see PlayerUtils#getClientVersion(Player)
+     */
+    @Nullable
+    public ClientVersion getHandshakeClientVersion() {
+        return handshakeClientVersion;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param handshakeClientVersion Client version of the handshake.
+     */
+    public void setHandshakeClientVersion(ClientVersion handshakeClientVersion) {
+        this.handshakeClientVersion = handshakeClientVersion;
+    }
+
+    /**
+     * The resolved client version.
+     *
+     * @return Client version, null if it hasn't been resolved yet.
+     * @see PlayerUtils#getClientVersion(Player)
+     */
+    @Nullable
+    public ClientVersion getClientVersion() {
+        return clientVersion;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param clientVersion Resolved client version.
+     */
+    public void setClientVersion(ClientVersion clientVersion) {
+        this.clientVersion = clientVersion;
+    }
+
+    /**
+     * Time the connection was associated with a player.
+     *
+     * @return Login time in milliseconds, 0 if the connection hasn't become a player yet.
+     */
+    public long getLoginTime() {
+        return loginTime;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param loginTime Login time in milliseconds.
+     */
+    public void setLoginTime(long loginTime) {
+        this.loginTime = loginTime;
+    }
+
+    /**
+     * Time the last keep alive packet was sent to the client.
+     *
+     * @return Keep alive timestamp in milliseconds, 0 if none has been sent.
+     */
+    public long getKeepAliveTimestamp() {
+        return keepAliveTimestamp;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param keepAliveTimestamp Keep alive timestamp in milliseconds.
+     */
+    public void setKeepAliveTimestamp(long keepAliveTimestamp) {
+        this.keepAliveTimestamp = keepAliveTimestamp;
+    }
+
+    /**
+     * The ping PacketEvents calculates for the connection. (Updates every incoming Keep Alive packet)
+     * Until the first keep alive response we use the time since the player joined.
+     *
+     * @return Non-smoothed ping.
+     */
+    public int getPing() {
+        int ping = this.ping;
+        return ping < 0 ? getTimeSinceLogin() : ping;
+    }
+
+    /**
+     * The ping PacketEvents calculates and smooths in the same way NMS does. (Updates every incoming Keep Alive packet)
+     *
+     * @return Smoothed ping.
+     */
+    public int getSmoothedPing() {
+        int smoothedPing = this.smoothedPing;
+        return smoothedPing < 0 ? getTimeSinceLogin() : smoothedPing;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param ping         Non-smoothed ping.
+     * @param smoothedPing Smoothed ping.
+     */
+    public void setPing(int ping, int smoothedPing) {
+        this.ping = ping;
+        this.smoothedPing = smoothedPing;
+    }
+
+    private int getTimeSinceLogin() {
+        long loginTime = this.loginTime;
+        return loginTime == 0L ? 0 : (int) (System.currentTimeMillis() - loginTime);
+    }
+
+    /**
+     * Scheduler of the packets PacketEvents sends to this connection.
+     * Its queue depth tells you how far behind the client is.
+     *
+     * @return Outbound scheduler.
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#outboundScheduling(boolean)
+     */
+    public OutboundScheduler getOutboundScheduler() {
+        OutboundScheduler outboundScheduler = this.outboundScheduler;
+        if (outboundScheduler == null) {
+            synchronized (this) {
+                outboundScheduler = this.outboundScheduler;
+                if (outboundScheduler == null) {
+                    this.outboundScheduler = outboundScheduler = new OutboundScheduler(channel);
+                }
+            }
+        }
+        return outboundScheduler;
+    }
+
+    /**
+     * What the client believes about the entities around it.
+     * The tracker stays empty unless entity tracking is enabled.
+     *
+     * @return Client entity tracker.
+     * @see io.github.retrooper.packetevents.settings.PacketEventsSettings#entityTracking(boolean)
+     */
+    public ClientEntityTracker getEntityTracker() {
+        ClientEntityTracker entityTracker = this.entityTracker;
+        if (entityTracker == null) {
+            synchronized (this) {
+                entityTracker = this.entityTracker;
+                if (entityTracker == null) {
+                    this.entityTracker = entityTracker = new ClientEntityTracker();
+                }
+            }
+        }
+        return entityTracker;
+    }
+
+    /**
+     * Is this connection captured, even if the packet capture doesn't capture every connection?
+     *
+     * @return Is the connection captured?
+     * @see io.github.retrooper.packetevents.utils.capture.PacketCapture#setCaptured(Player, boolean)
+     */
+    public boolean isCaptured() {
+        return captured;
+    }
+
+    /**
+     * This is used internally, do NOT call this method.
+     *
+     * @param captured Should the connection be captured?
+     */
+    public void setCaptured(boolean captured) {
+        this.captured = captured;
+    }
+
+    /**
+     * Rate limiter of the packets this connection sends.
+     *
+     * @return Rate limiter.
+     * @see PacketRateLimiter#setLimit(byte, int, int, io.github.retrooper.packetevents.utils.ratelimit.RateLimitAction)
+     */
+    public PacketRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Get an attachment of this user.
+     * If the key has an initializer and nothing has been attached yet, the initial value is attached and returned.
+     *
+     * @param key Attachment key.
+     * @param <T> Type of the attachment.
+     * @return Attached value, null if nothing is attached or the user has been closed.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T get(UserKey<T> key) {
+        int index = key.getIndex();
+        AtomicReferenceArray<Object> attachments = this.attachments;
+        Object value = index < attachments.length() ? attachments.get(index) : null;
+        if (value == null) {
+            Supplier<? extends T> initializer = key.getInitializer();
+            if (initializer == null || closed) {
+                return null;
+            }
+            T initialValue = initializer.get();
+            //Another thread might have beaten us to it.
+            value = putIfAbsent(index, initialValue);
+            if (value == null) {
+                return initialValue;
+            }
+        }
+        return (T) value;
+    }
+
+    /**
+     * Attach a value to this user.
+     * Values attached to a closed user are discarded.
+     *
+     * @param key   Attachment key.
+     * @param value Value to attach, null removes the attachment.
+     * @param <T>   Type of the attachment.
+     */
+    public <T> void set(UserKey<T> key, @Nullable T value) {
+        int index = key.getIndex();
+        AtomicReferenceArray<Object> attachments;
+        do {
+            attachments = ensureCapacity(index);
+            if (attachments == null) {
+                return;
+            }
+            attachments.set(index, value);
+            //Retry if the array was replaced in the meantime, our value might not have been copied.
+        } while (attachments != this.attachments);
+    }
+
+    /**
+     * Remove an attachment of this user.
+     *
+     * @param key Attachment key.
+     * @param <T> Type of the attachment.
+     * @return Previously attached value.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <T> T remove(UserKey<T> key) {
+        int index = key.getIndex();
+        AtomicReferenceArray<Object> attachments = this.attachments;
+        if (index >= attachments.length()) {
+            return null;
+        }
+        T value = (T) attachments.get(index);
+        set(key, null);
+        return value;
+    }
+
+    private Object putIfAbsent(int index, Object value) {
+        while (true) {
+            AtomicReferenceArray<Object> attachments = ensureCapacity(index);
+            if (attachments == null) {
+                return null;
+            }
+            Object current = attachments.get(index);
+            if (current != null) {
+                return current;
+            }
+            if (attachments.compareAndSet(index, null, value) && attachments == this.attachments) {
+                return null;
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Object> ensureCapacity(int index) {
+        AtomicReferenceArray<Object> attachments = this.attachments;
+        if (index < attachments.length()) {
+            return closed ? null : attachments;
+        }
+        synchronized (this) {
+            attachments = this.attachments;
+            if (closed) {
+                return null;
+            }
+            if (index >= attachments.length()) {
+                int length = Math.max(index + 1, Math.max(UserKey.getRegisteredKeys(), attachments.length() * 2));
+                AtomicReferenceArray<Object> grown = new AtomicReferenceArray<>(length);
+                for (int i = 0; i < attachments.length(); i++) {
+                    grown.set(i, attachments.get(i));
+                }
+                this.attachments = attachments = grown;
+            }
+            return attachments;
+        }
+    }
+
+    /**
+     * Has the channel of this user been closed?
+     *
+     * @return Is the user closed?
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Free this user.
+     * All attachments are released, so even connections that never became a player (status pings) don't leak anything.
+     * This is used internally, do NOT call this method.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            attachments = NO_ATTACHMENTS;
+        }
+        player = null;
+        OutboundScheduler outboundScheduler = this.outboundScheduler;
+        if (outboundScheduler != null) {
+            outboundScheduler.clear();
+        }
+        ClientEntityTracker entityTracker = this.entityTracker;
+        if (entityTracker != null) {
+            entityTracker.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        Player player = this.player;
+        return "User{id=" + id + ", channel=" + channel + ", player=" + (player == null ? null : player.getName()) + "}";
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.player;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Key of a typed {@link User} attachment slot.
+ * Every key is assigned its own slot index when it is registered,
+ * so reading an attachment is a plain array access instead of a map lookup.
+ * Register your keys once (for example in a static field) and reuse them, keys can't be unregistered.
+ *
+ * @param <T> Type of the attached value.
+ * @author retrooper
+ * @see User#get(UserKey)
+ * @since 1.8
+ */
+public final class UserKey<T> {
+    private static final AtomicInteger SLOT_COUNTER = new AtomicInteger();
+    private final int index;
+    private final String name;
+    private final Supplier<? extends T> initializer;
+
+    private UserKey(String name, Supplier<? extends T> initializer) {
+        this.index = SLOT_COUNTER.getAndIncrement();
+        this.name = Objects.requireNonNull(name, "name");
+        this.initializer = initializer;
+    }
+
+    /**
+     * Register a new attachment key.
+     * The attachment is null until you set it.
+     *
+     * @param name Name of the key, only used for debugging.
+     * @param <T>  Type of the attached value.
+     * @return New attachment key.
+     */
+    public static <T> UserKey<T> register(String name) {
+        return new UserKey<>(name, null);
+    }
+
+    /**
+     * Register a new attachment key with an initial value.
+     * The initializer is called the first time the attachment of a user is accessed.
+     *
+     * @param name        Name of the key, only used for debugging.
+     * @param initializer Creates the initial value of the attachment.
+     * @param <T>         Type of the attached value.
+     * @return New attachment key.
+     */
+    public static <T> UserKey<T> register(String name, Supplier<? extends T> initializer) {
+        return new UserKey<>(name, Objects.requireNonNull(initializer, "initializer"));
+    }
+
+    /**
+     * Amount of keys registered so far.
+     *
+     * @return Registered keys.
+     */
+    static int getRegisteredKeys() {
+        return SLOT_COUNTER.get();
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    Supplier<? extends T> getInitializer() {
+        return initializer;
+    }
+
+    /**
+     * Name of the key.
+     *
+     * @return Key name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return "UserKey{" + name + "#" + index + "}";
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.ratelimit;
+
+import io.github.retrooper.packetevents.packettype.PacketType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Per-connection token bucket rate limiter of server-bound packets.
+ * The limits are configured per packet ID and apply to every connection.
+ * The channel handler checks every incoming packet before any event is constructed,
+ * so a client spamming a packet type can't make the listeners process its packets.
+ * Every bucket is stored as a single timestamp (generic cell rate algorithm), checking a packet never allocates.
+ * A limiter is only used by the event loop of its channel.
+ *
+ * @author retrooper
+ * @see io.github.retrooper.packetevents.utils.player.User#getRateLimiter()
+ * @since 1.8
+ */
+public final class PacketRateLimiter {
+    private static final RateLimit[] LIMITS = new RateLimit[256];
+    private static volatile boolean enabled;
+    /**
+     * Theoretical arrival time of the next packet, indexed by the unsigned packet ID.
+     * This is allocated once the connection sends its first limited packet.
+     */
+    private long[] arrivalTimes;
+    private volatile long limitedPackets;
+    private volatile boolean kicked;
+
+    /**
+     * Limit a server-bound packet type.
+     *
+     * @param packetID         Server-bound packet ID.
+     * @param burst            Amount of packets a connection may send at once.
+     * @param packetsPerSecond Amount of packets a connection may send per second on average.
+     * @param action           What to do with the packets exceeding the limit.
+     * @return The limit.
+     */
+    public static RateLimit setLimit(byte packetID, int burst, int packetsPerSecond, RateLimitAction action) {
+        if (packetID == PacketType.INVALID) {
+            throw new IllegalArgumentException("Cannot rate limit an invalid packet ID!");
+        }
+        if (burst < 1 || packetsPerSecond < 1) {
+            throw new IllegalArgumentException("The burst and the packets per second must be positive!");
+        }
+        RateLimit limit = new RateLimit(packetID, burst, packetsPerSecond, action);
+        synchronized (LIMITS) {
+            LIMITS[packetID & 0xFF] = limit;
+            enabled = true;
+        }
+        return limit;
+    }
+
+    /**
+     * Stop limiting a server-bound packet type.
+     *
+     * @param packetID Server-bound packet ID.
+     */
+    public static void removeLimit(byte packetID) {
+        synchronized (LIMITS) {
+            LIMITS[packetID & 0xFF] = null;
+            boolean enabled = false;
+            for (RateLimit limit : LIMITS) {
+                if (limit != null) {
+                    enabled = true;
+                    break;
+                }
+            }
+            PacketRateLimiter.enabled = enabled;
+        }
+    }
+
+    /**
+     * Get the limit of a server-bound packet type.
+     *
+     * @param packetID Server-bound packet ID.
+     * @return The limit, null if the packet type isn't limited.
+     */
+    @Nullable
+    public static RateLimit getLimit(byte packetID) {
+        return LIMITS[packetID & 0xFF];
+    }
+
+    /**
+     * Is any packet type limited?
+     *
+     * @return Are there any limits?
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take a token from the bucket of a packet.
+     * This is used internally, do NOT call this method.
+     *
+     * @param packetID Server-bound packet ID.
+     * @return The limit the packet exceeded, null if the packet may be processed.
+     */
+    @Nullable
+    public RateLimit acquire(byte packetID) {
+        RateLimit limit = LIMITS[packetID & 0xFF];
+        if (limit == null) {
+            return null;
+        }
+        long[] arrivalTimes = this.arrivalTimes;
+        if (arrivalTimes == null) {
+            arrivalTimes = this.arrivalTimes = new long[256];
+            Arrays.fill(arrivalTimes, Long.MIN_VALUE);
+        }
+        int index = packetID & 0xFF;
+        long now = System.nanoTime();
+        long arrivalTime = Math.max(arrivalTimes[index], now);
+        if (arrivalTime - now > limit.tolerance) {
+            limitedPackets++;
+            limit.recordLimited();
+            return limit;
+        }
+        arrivalTimes[index] = arrivalTime + limit.interval;
+        return null;
+    }
+
+    /**
+     * Mark the connection as kicked.
+     * This is used internally, do NOT call this method.
+     *
+     * @return Has the connection not been kicked before?
+     */
+    public boolean markKicked() {
+        if (kicked) {
+            return false;
+        }
+        kicked = true;
+        return true;
+    }
+
+    /**
+     * Amount of packets of this connection that exceeded their limit.
+     *
+     * @return Limited packets.
+     */
+    public long getLimitedPackets() {
+        return limitedPackets;
+    }
+}
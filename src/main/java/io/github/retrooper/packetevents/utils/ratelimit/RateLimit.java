@@ -0,0 +1,93 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.ratelimit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket limit of a server-bound packet type.
+ * Every connection may send a burst of {@link #getBurst()} packets,
+ * afterwards the bucket refills with {@link #getPacketsPerSecond()} packets per second.
+ *
+ * @author retrooper
+ * @see PacketRateLimiter#setLimit(byte, int, int, RateLimitAction)
+ * @since 1.8
+ */
+public final class RateLimit {
+    private final byte packetID;
+    private final int burst;
+    private final int packetsPerSecond;
+    private final RateLimitAction action;
+    final long interval;
+    final long tolerance;
+    private final LongAdder limitedPackets = new LongAdder();
+
+    RateLimit(byte packetID, int burst, int packetsPerSecond, RateLimitAction action) {
+        this.packetID = packetID;
+        this.burst = burst;
+        this.packetsPerSecond = packetsPerSecond;
+        this.action = action;
+        this.interval = 1_000_000_000L / packetsPerSecond;
+        this.tolerance = interval * (burst - 1);
+    }
+
+    public byte getPacketId() {
+        return packetID;
+    }
+
+    /**
+     * Amount of packets a connection may send at once.
+     *
+     * @return Bucket capacity.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Amount of packets the bucket refills with every second.
+     *
+     * @return Refill rate.
+     */
+    public int getPacketsPerSecond() {
+        return packetsPerSecond;
+    }
+
+    public RateLimitAction getAction() {
+        return action;
+    }
+
+    /**
+     * Amount of packets that exceeded this limit, summed over every connection.
+     *
+     * @return Limited packets.
+     */
+    public long getLimitedPackets() {
+        return limitedPackets.sum();
+    }
+
+    void recordLimited() {
+        limitedPackets.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit{packetID=" + packetID + ", burst=" + burst + ", packetsPerSecond=" + packetsPerSecond + ", action=" + action + "}";
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.utils.reflection;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cached field accessors of a class.
+ * Fields can either be looked up by their declaration index or by their index among the fields of the same type.
+ * The accessors of primitive fields are resolved right away and stored in plain arrays,
+ * so looking them up doesn't involve any map lookups.
+ *
+ * @author retrooper
+ * @see FieldAccessor
+ * @since 1.8
+ */
+public final class ClassAccessor {
+    private static final Map<Class<?>, ClassAccessor> CLASS_ACCESSOR_CACHE = new ConcurrentHashMap<>();
+    private static final FieldAccessor[] EMPTY_FIELD_ACCESSOR_ARRAY = new FieldAccessor[0];
+    private final Class<?> cls;
+    private final Field[] declaredFields;
+    private final AtomicReferenceArray<FieldAccessor> declaredFieldAccessors;
+    private final FieldAccessor[] booleanFields, byteFields, shortFields, intFields, longFields, floatFields, doubleFields;
+    private final Map<Class<?>, FieldAccessor[]> fieldsByType = new ConcurrentHashMap<>();
+
+    private ClassAccessor(Class<?> cls) {
+        this.cls = cls;
+        this.declaredFields = cls.getDeclaredFields();
+        this.declaredFieldAccessors = new AtomicReferenceArray<>(declaredFields.length);
+        this.booleanFields = findFields(boolean.class);
+        this.byteFields = findFields(byte.class);
+        this.shortFields = findFields(short.class);
+        this.intFields = findFields(int.class);
+        this.longFields = findFields(long.class);
+        this.floatFields = findFields(float.class);
+        this.doubleFields = findFields(double.class);
+    }
+
+    /**
+     * Get the cached field accessors of a class.
+     *
+     * @param cls Class
+     * @return Field accessors of the class.
+     */
+    public static ClassAccessor get(Class<?> cls) {
+        return CLASS_ACCESSOR_CACHE.computeIfAbsent(cls, ClassAccessor::new);
+    }
+
+    public Class<?> getAccessedClass() {
+        return cls;
+    }
+
+    /**
+     * Get a field by its declaration index.
+     *
+     * @param index Index in {@link Class#getDeclaredFields()}.
+     * @return Field accessor, null if there is no field at that index.
+     */
+    public FieldAccessor getDeclaredField(int index) {
+        if (index < 0 || index >= declaredFields.length) {
+            return null;
+        }
+        FieldAccessor accessor = declaredFieldAccessors.get(index);
+        if (accessor == null) {
+            accessor = new FieldAccessor(declaredFields[index]);
+            declaredFieldAccessors.set(index, accessor);
+        }
+        return accessor;
+    }
+
+    /**
+     * Get a field by its index among the declared fields of the exact same type.
+     *
+     * @param type  Type of the field.
+     * @param index Index among the fields of that type.
+     * @return Field accessor, null if there is no such field.
+     */
+    public FieldAccessor getField(Class<?> type, int index) {
+        FieldAccessor[] fields = getFields(type);
+        return index >= 0 && index < fields.length ? fields[index] : null;
+    }
+
+    /**
+     * Get all declared fields of the exact same type.
+     *
+     * @param type Type of the fields.
+     * @return Field accessors, ordered by declaration.
+     */
+    public FieldAccessor[] getFields(Class<?> type) {
+        if (type.isPrimitive()) {
+            if (type == double.class) {
+                return doubleFields;
+            } else if (type == float.class) {
+                return floatFields;
+            } else if (type == boolean.class) {
+                return booleanFields;
+            } else if (type == int.class) {
+                return intFields;
+            } else if (type == long.class) {
+                return longFields;
+            } else if (type == byte.class) {
+                return byteFields;
+            } else if (type == short.class) {
+                return shortFields;
+            }
+        }
+        FieldAccessor[] fields = fieldsByType.get(type);
+        if (fields == null) {
+            fields = fieldsByType.computeIfAbsent(type, this::findFields);
+        }
+        return fields;
+    }
+
+    private FieldAccessor[] findFields(Class<?> type) {
+        List<FieldAccessor> ret = new ArrayList<>();
+        for (Field field : declaredFields) {
+            if (field.getType().equals(type)) {
+                ret.add(new FieldAccessor(field));
+            }
+        }
+        return ret.isEmpty() ? EMPTY_FIELD_ACCESSOR_ARRAY : ret.toArray(EMPTY_FIELD_ACCESSOR_ARRAY);
+    }
+}
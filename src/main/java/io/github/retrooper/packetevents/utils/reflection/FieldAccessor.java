@@ -0,0 +1,260 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.retrooper.packetevents.utils.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Fast accessor of a single field.
+ * The getter and setter are method handles adapted to take the owner as an {@link Object},
+ * primitive fields can be read and written without boxing.
+ * Writing to fields method handles refuse to write to (final fields on some JVMs) falls back to reflection.
+ *
+ * @author retrooper
+ * @see ClassAccessor
+ * @since 1.8
+ */
+public final class FieldAccessor {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private final Field field;
+    //Typed handles, primitive fields use primitive handles
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    //Handles boxing primitives, (Object)Object and (Object, Object)void
+    private final MethodHandle boxedGetter;
+    private final MethodHandle boxedSetter;
+
+    public FieldAccessor(Field field) {
+        if (!field.isAccessible()) {
+            field.setAccessible(true);
+        }
+        this.field = field;
+        Class<?> type = field.getType();
+        Class<?> erasedType = type.isPrimitive() ? type : Object.class;
+        boolean isStatic = Modifier.isStatic(field.getModifiers());
+        try {
+            MethodHandle getter = LOOKUP.unreflectGetter(field);
+            if (isStatic) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            this.getter = getter.asType(MethodType.methodType(erasedType, Object.class));
+            this.boxedGetter = getter.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("PacketEvents failed to access the " + field.getName() + " field in the " + field.getDeclaringClass().getName() + " class!", e);
+        }
+        MethodHandle setter;
+        try {
+            setter = LOOKUP.unreflectSetter(field);
+            if (isStatic) {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+        } catch (IllegalAccessException e) {
+            //We will fall back to reflection
+            setter = null;
+        }
+        this.setter = setter != null ? setter.asType(MethodType.methodType(void.class, Object.class, erasedType)) : null;
+        this.boxedSetter = setter != null ? setter.asType(MethodType.methodType(void.class, Object.class, Object.class)) : null;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public Object get(Object owner) {
+        try {
+            return (Object) boxedGetter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public boolean getBoolean(Object owner) {
+        try {
+            return (boolean) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public byte getByte(Object owner) {
+        try {
+            return (byte) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public short getShort(Object owner) {
+        try {
+            return (short) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public int getInt(Object owner) {
+        try {
+            return (int) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public long getLong(Object owner) {
+        try {
+            return (long) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public float getFloat(Object owner) {
+        try {
+            return (float) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public double getDouble(Object owner) {
+        try {
+            return (double) getter.invokeExact(owner);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void set(Object owner, Object value) {
+        if (boxedSetter == null) {
+            try {
+                field.set(owner, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        try {
+            boxedSetter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setBoolean(Object owner, boolean value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setByte(Object owner, byte value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setShort(Object owner, short value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setInt(Object owner, int value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setLong(Object owner, long value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setFloat(Object owner, float value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    public void setDouble(Object owner, double value) {
+        if (setter == null) {
+            set(owner, value);
+            return;
+        }
+        try {
+            setter.invokeExact(owner, value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -23,31 +23,30 @@ import io.github.retrooper.packetevents.packetwrappers.NMSPacket;
 import io.github.retrooper.packetevents.packetwrappers.WrappedPacket;
 import io.github.retrooper.packetevents.utils.boundingbox.BoundingBox;
 import io.github.retrooper.packetevents.utils.entityfinder.EntityFinderUtils;
+import io.github.retrooper.packetevents.utils.entityfinder.EntityIndex;
 import io.github.retrooper.packetevents.utils.nms.NMSUtils;
+import io.github.retrooper.packetevents.utils.npc.NPCEngine;
 import io.github.retrooper.packetevents.utils.npc.NPCManager;
 import io.github.retrooper.packetevents.utils.reflection.Reflection;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public final class ServerUtils {
     private static Method getLevelEntityGetterIterable;
     private static Class<?> persistentEntitySectionManagerClass, levelEntityGetterClass;
-    private static byte v_1_17 = -1;
+    private static byte v_1_13 = -1, v_1_17 = -1;
     private static Class<?> geyserClass;
     private boolean geyserClassChecked;
     private final NPCManager npcManager = new NPCManager();
-
-    //Initialized in PacketEvents#load
-    public Map<Integer, Entity> entityCache;
+    private final NPCEngine npcEngine = new NPCEngine(npcManager);
+    private final EntityIndex entityIndex = new EntityIndex();
 
     /**
      * Get the server version.
@@ -94,6 +93,26 @@ public final class ServerUtils {
         return npcManager;
     }
 
+    /**
+     * Get the NPC Engine.
+     * The engine isn't ticking until you start it.
+     *
+     * @return NPC Engine
+     * @see NPCEngine#start(org.bukkit.plugin.Plugin)
+     */
+    public NPCEngine getNPCEngine() {
+        return npcEngine;
+    }
+
+    /**
+     * Get the index of the loaded entities by their entity ID.
+     *
+     * @return Entity Index
+     */
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
+    }
+
     public BoundingBox getEntityBoundingBox(Entity entity) {
         Object nmsEntity = NMSUtils.getNMSEntity(entity);
         Object aabb = NMSUtils.getNMSAxisAlignedBoundingBox(nmsEntity);
@@ -107,56 +126,41 @@ public final class ServerUtils {
         return new BoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
     }
 
-    @Nullable
-    private Entity getEntityByIdIterateWorld(@NotNull World world, int entityID) {
-        for (Entity entity : PacketEvents.get().getServerUtils().getEntityList(world)) {
-            if (entity.getEntityId() == entityID) {
-                entityCache.putIfAbsent(entity.getEntityId(), entity);
-                return entity;
-            }
-        }
-        return null;
-    }
-
+    /**
+     * Get an entity by its entity ID.
+     * The entity is looked up in the {@link EntityIndex}, this can be called on any thread.
+     *
+     * @param world    World the entity is probably in, only used on servers older than 1.13.
+     * @param entityID Entity ID.
+     * @return Entity, null if no loaded entity has the ID.
+     */
     @Nullable
     public Entity getEntityById(@Nullable World world, int entityID) {
-        Entity e = entityCache.get(entityID);
-        if (e != null) {
-            return e;
+        Entity entity = entityIndex.get(entityID);
+        if (entity != null) {
+            return entity;
         }
-
-        if (v_1_17 == -1) {
-            v_1_17 = (byte) (getVersion().isNewerThanOrEquals(ServerVersion.v_1_17) ? 1 : 0);
+        if (v_1_13 == -1) {
+            v_1_13 = (byte) (getVersion().isNewerThanOrEquals(ServerVersion.v_1_13) ? 1 : 0);
         }
-
-        if (v_1_17 == 1) {
-            try {
-                if (world != null) {
-                    Entity newEntity = getEntityByIdIterateWorld(world, entityID);
-                    if (newEntity != null) {
-                        return newEntity;
-                    }
-                }
-            }
-            catch (Exception ex) {
-                //We are retrying below
-            }
-            try {
+        if (v_1_13 == 0) {
+            //Older servers don't call the spawn event for every entity, so we ask the worlds' entity ID maps.
+            entity = EntityFinderUtils.getEntityByIdWithWorldUnsafe(world, entityID);
+            if (entity == null) {
                 for (World w : Bukkit.getWorlds()) {
-                    Entity newEntity = getEntityByIdIterateWorld(w, entityID);
-                    if (newEntity != null) {
-                        return newEntity;
+                    if (w != world) {
+                        entity = EntityFinderUtils.getEntityByIdWithWorldUnsafe(w, entityID);
+                        if (entity != null) {
+                            break;
+                        }
                     }
                 }
             }
-            catch (Exception ex) {
-                //No entity found
-                return null;
+            if (entity != null && entity.isValid()) {
+                entityIndex.add(entity);
             }
-        } else {
-            return EntityFinderUtils.getEntityByIdUnsafe(world, entityID);
         }
-        return null;
+        return entity;
     }
 
     @Nullable
@@ -164,7 +168,18 @@ public final class ServerUtils {
         return getEntityById(null, entityID);
     }
 
+    /**
+     * Get the loaded entities of a world.
+     * Once PacketEvents has been initialized, the list is copied from the {@link EntityIndex},
+     * use {@link EntityIndex#getEntities(World)} if you don't need your own copy.
+     *
+     * @param world World
+     * @return Mutable list of the entities.
+     */
     public List<Entity> getEntityList(World world) {
+        if (entityIndex.isRunning()) {
+            return new ArrayList<>(entityIndex.getEntities(world));
+        }
         if (v_1_17 == -1) {
             v_1_17 = (byte) (getVersion().isNewerThanOrEquals(ServerVersion.v_1_17) ? 1 : 0);
         }
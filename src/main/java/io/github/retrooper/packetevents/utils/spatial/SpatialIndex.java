@@ -0,0 +1,623 @@
+/*
+ * This file is part of packetevents - https://github.com/retrooper/packetevents
+ * Copyright (C) 2021 retrooper and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.retrooper.packetevents.utils.spatial;
+
+import io.github.retrooper.packetevents.utils.math.MathUtils;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent spatial index of values with an integer ID, for example entities or NPCs.
+ * The values are grouped by their world and the 16x16x16 chunk section they are in,
+ * radius and box queries only visit the sections intersecting the query.
+ * The values and the sections of a world are kept in open-addressing hash tables keyed by primitive IDs,
+ * so neither lookups nor queries box their keys.
+ * Queries never block, they can run on any thread (including netty threads) while the values are moved.
+ * Inserting, moving and removing values is thread-safe as well, a move within the same chunk section only updates the coordinates.
+ * The coordinates of a value are updated one after the other,
+ * a query running at the same time as a move might see a mix of the old and the new coordinates.
+ *
+ * @param <T> Type of the indexed values.
+ * @author retrooper
+ * @since 1.8
+ */
+public class SpatialIndex<T> {
+    private static final Entry<?>[] EMPTY_ENTRIES = new Entry<?>[0];
+    private final KeyedTable<Entry<T>> entries = new KeyedTable<>();
+    private final Map<UUID, WorldIndex<T>> worlds = new ConcurrentHashMap<>();
+
+    /**
+     * Insert a value or move it if the ID has already been indexed.
+     *
+     * @param id    ID of the value.
+     * @param value Value
+     * @param world World the value is in.
+     * @param x     X coordinate.
+     * @param y     Y coordinate.
+     * @param z     Z coordinate.
+     */
+    public void put(int id, T value, World world, double x, double y, double z) {
+        put(id, value, world.getUID(), x, y, z);
+    }
+
+    /**
+     * Insert a value or move it if the ID has already been indexed.
+     *
+     * @param id      ID of the value.
+     * @param value   Value
+     * @param worldID UUID of the world the value is in.
+     * @param x       X coordinate.
+     * @param y       Y coordinate.
+     * @param z       Z coordinate.
+     */
+    public void put(int id, T value, UUID worldID, double x, double y, double z) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            entry = entries.putIfAbsent(new Entry<>(id));
+        }
+        synchronized (entry) {
+            if (entry.removed) {
+                //The entry has been removed while we were waiting for the lock.
+                put(id, value, worldID, x, y, z);
+                return;
+            }
+            entry.value = value;
+            WorldIndex<T> world = worlds.computeIfAbsent(worldID, uuid -> new WorldIndex<>());
+            move(entry, world, x, y, z);
+        }
+    }
+
+    /**
+     * Move an indexed value within its world.
+     *
+     * @param id ID of the value.
+     * @param x  X coordinate.
+     * @param y  Y coordinate.
+     * @param z  Z coordinate.
+     * @return Has the ID been indexed?
+     */
+    public boolean move(int id, double x, double y, double z) {
+        Entry<T> entry = entries.get(id);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            //The entry might not have been placed in a section by put yet.
+            if (entry.removed || entry.section == null) {
+                return false;
+            }
+            move(entry, entry.section.world, x, y, z);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a value from the index.
+     *
+     * @param id ID of the value.
+     * @return Removed value, null if the ID hasn't been indexed.
+     */
+    @Nullable
+    public T remove(int id) {
+        Entry<T> entry = entries.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            entry.removed = true;
+            if (entry.section != null) {
+                entry.section.remove(entry);
+                entry.section = null;
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * Get an indexed value.
+     *
+     * @param id ID of the value.
+     * @return Value, null if the ID hasn't been indexed.
+     */
+    @Nullable
+    public T get(int id) {
+        Entry<T> entry = entries.get(id);
+        return entry != null ? entry.value : null;
+    }
+
+    public boolean contains(int id) {
+        return entries.get(id) != null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove every value in a world, for example after the world has been unloaded.
+     *
+     * @param world World
+     */
+    public void removeWorld(World world) {
+        WorldIndex<T> worldIndex = worlds.remove(world.getUID());
+        if (worldIndex != null) {
+            KeyedTable.Slots slots = worldIndex.sections.slots();
+            for (int index = 0; index < slots.capacity(); index++) {
+                Section<T> section = slots.valueAt(index);
+                if (section != null) {
+                    for (Entry<T> entry : section.entries) {
+                        remove(entry.id);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        KeyedTable.Slots slots = entries.slots();
+        for (int index = 0; index < slots.capacity(); index++) {
+            Entry<T> entry = slots.valueAt(index);
+            if (entry != null) {
+                remove(entry.id);
+            }
+        }
+    }
+
+    /**
+     * Pass every value within a radius around a position to the consumer.
+     *
+     * @param world    World
+     * @param x        X coordinate of the center.
+     * @param y        Y coordinate of the center.
+     * @param z        Z coordinate of the center.
+     * @param radius   Radius in blocks.
+     * @param consumer Receives the values within the radius.
+     */
+    public void forEachInRadius(World world, double x, double y, double z, double radius, Consumer<? super T> consumer) {
+        WorldIndex<T> worldIndex = worlds.get(world.getUID());
+        if (worldIndex != null) {
+            query(worldIndex, x - radius, y - radius, z - radius, x + radius, y + radius, z + radius,
+                    x, y, z, radius * radius, consumer);
+        }
+    }
+
+    /**
+     * Pass every value within a box to the consumer.
+     *
+     * @param world    World
+     * @param minX     Minimum X coordinate of the box.
+     * @param minY     Minimum Y coordinate of the box.
+     * @param minZ     Minimum Z coordinate of the box.
+     * @param maxX     Maximum X coordinate of the box.
+     * @param maxY     Maximum Y coordinate of the box.
+     * @param maxZ     Maximum Z coordinate of the box.
+     * @param consumer Receives the values within the box.
+     */
+    public void forEachInBox(World world, double minX, double minY, double minZ,
+                             double maxX, double maxY, double maxZ, Consumer<? super T> consumer) {
+        WorldIndex<T> worldIndex = worlds.get(world.getUID());
+        if (worldIndex != null) {
+            query(worldIndex, minX, minY, minZ, maxX, maxY, maxZ, 0, 0, 0, -1, consumer);
+        }
+    }
+
+    public List<T> getInRadius(World world, double x, double y, double z, double radius) {
+        List<T> values = new ArrayList<>();
+        forEachInRadius(world, x, y, z, radius, values::add);
+        return values;
+    }
+
+    public List<T> getInBox(World world, double minX, double minY, double minZ,
+                            double maxX, double maxY, double maxZ) {
+        List<T> values = new ArrayList<>();
+        forEachInBox(world, minX, minY, minZ, maxX, maxY, maxZ, values::add);
+        return values;
+    }
+
+    /**
+     * Pass every value within a box to the consumer, and optionally within a radius around a center.
+     *
+     * @param radiusSquared Squared radius around the center, negative to only check the box.
+     */
+    private void query(WorldIndex<T> worldIndex, double minX, double minY, double minZ,
+                       double maxX, double maxY, double maxZ,
+                       double centerX, double centerY, double centerZ, double radiusSquared,
+                       Consumer<? super T> consumer) {
+        int minSectionX = MathUtils.floor(minX) >> 4;
+        int minSectionY = MathUtils.floor(minY) >> 4;
+        int minSectionZ = MathUtils.floor(minZ) >> 4;
+        int maxSectionX = MathUtils.floor(maxX) >> 4;
+        int maxSectionY = MathUtils.floor(maxY) >> 4;
+        int maxSectionZ = MathUtils.floor(maxZ) >> 4;
+        long sectionCount = (long) (maxSectionX - minSectionX + 1)
+                * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+        KeyedTable<Section<T>> sections = worldIndex.sections;
+        if (sectionCount > sections.size()) {
+            //There are less populated sections than sections in the query, so we rather check every populated section.
+            KeyedTable.Slots slots = sections.slots();
+            for (int index = 0; index < slots.capacity(); index++) {
+                Section<T> section = slots.valueAt(index);
+                if (section != null
+                        && section.x >= minSectionX && section.x <= maxSectionX
+                        && section.y >= minSectionY && section.y <= maxSectionY
+                        && section.z >= minSectionZ && section.z <= maxSectionZ) {
+                    visit(section, minX, minY, minZ, maxX, maxY, maxZ, centerX, centerY, centerZ, radiusSquared, consumer);
+                }
+            }
+        } else {
+            for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++) {
+                for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++) {
+                    for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                        Section<T> section = sections.get(sectionKey(sectionX, sectionY, sectionZ));
+                        if (section != null) {
+                            visit(section, minX, minY, minZ, maxX, maxY, maxZ, centerX, centerY, centerZ, radiusSquared, consumer);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> void visit(Section<T> section, double minX, double minY, double minZ,
+                                  double maxX, double maxY, double maxZ,
+                                  double centerX, double centerY, double centerZ, double radiusSquared,
+                                  Consumer<? super T> consumer) {
+        for (Entry<T> entry : section.entries) {
+            double x = entry.x;
+            double y = entry.y;
+            double z = entry.z;
+            if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+                continue;
+            }
+            if (radiusSquared >= 0) {
+                double distX = x - centerX;
+                double distY = y - centerY;
+                double distZ = z - centerZ;
+                if (distX * distX + distY * distY + distZ * distZ > radiusSquared) {
+                    continue;
+                }
+            }
+            consumer.accept(entry.value);
+        }
+    }
+
+    private static <T> void move(Entry<T> entry, WorldIndex<T> world, double x, double y, double z) {
+        int sectionX = MathUtils.floor(x) >> 4;
+        int sectionY = MathUtils.floor(y) >> 4;
+        int sectionZ = MathUtils.floor(z) >> 4;
+        Section<T> oldSection = entry.section;
+        if (oldSection != null && oldSection.world == world
+                && oldSection.x == sectionX && oldSection.y == sectionY && oldSection.z == sectionZ) {
+            entry.x = x;
+            entry.y = y;
+            entry.z = z;
+            return;
+        }
+        if (oldSection != null) {
+            oldSection.remove(entry);
+        }
+        entry.x = x;
+        entry.y = y;
+        entry.z = z;
+        long key = sectionKey(sectionX, sectionY, sectionZ);
+        Section<T> section;
+        do {
+            section = world.sections.get(key);
+            if (section == null) {
+                section = world.sections.putIfAbsent(new Section<>(world, sectionX, sectionY, sectionZ));
+            }
+        } while (!section.add(entry));
+        entry.section = section;
+    }
+
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) sectionX & 0x3FFFFFL) << 42 | ((long) sectionZ & 0x3FFFFFL) << 20 | (sectionY & 0xFFFFFL);
+    }
+
+    /**
+     * A value of a {@link KeyedTable}, it knows its own key.
+     */
+    private interface Keyed {
+        long key();
+    }
+
+    private static final class Entry<T> implements Keyed {
+        private final int id;
+        private volatile T value;
+        private volatile double x, y, z;
+        //Guarded by this entry
+        private Section<T> section;
+        private boolean removed;
+
+        private Entry(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public long key() {
+            return id;
+        }
+    }
+
+    private static final class WorldIndex<T> {
+        private final KeyedTable<Section<T>> sections = new KeyedTable<>();
+    }
+
+    /**
+     * Values of a chunk section.
+     * The entries are copied on write, readers iterate the array they read without any locking.
+     */
+    private static final class Section<T> implements Keyed {
+        private final WorldIndex<T> world;
+        private final int x, y, z;
+        private final long key;
+        @SuppressWarnings("unchecked")
+        private volatile Entry<T>[] entries = (Entry<T>[]) EMPTY_ENTRIES;
+        //Guarded by this section
+        private boolean discarded;
+
+        private Section(WorldIndex<T> world, int x, int y, int z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.key = sectionKey(x, y, z);
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+
+        private synchronized boolean add(Entry<T> entry) {
+            if (discarded) {
+                return false;
+            }
+            Entry<T>[] oldEntries = entries;
+            Entry<T>[] newEntries = Arrays.copyOf(oldEntries, oldEntries.length + 1);
+            newEntries[oldEntries.length] = entry;
+            entries = newEntries;
+            return true;
+        }
+
+        private synchronized void remove(Entry<T> entry) {
+            Entry<T>[] oldEntries = entries;
+            for (int i = 0; i < oldEntries.length; i++) {
+                if (oldEntries[i] == entry) {
+                    if (oldEntries.length == 1) {
+                        //Writers that still hold this section will create a new one.
+                        discarded = true;
+                        world.sections.remove(key, this);
+                        @SuppressWarnings("unchecked")
+                        Entry<T>[] empty = (Entry<T>[]) EMPTY_ENTRIES;
+                        entries = empty;
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        Entry<T>[] newEntries = (Entry<T>[]) new Entry<?>[oldEntries.length - 1];
+                        System.arraycopy(oldEntries, 0, newEntries, 0, i);
+                        System.arraycopy(oldEntries, i + 1, newEntries, i, oldEntries.length - i - 1);
+                        entries = newEntries;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Open-addressing hash table keyed by a primitive long, the key of a value is part of the value.
+     * Lookups and iterations never block and can be done on any thread, modifications are synchronized.
+     *
+     * @param <V> Type of the values.
+     */
+    private static final class KeyedTable<V extends Keyed> {
+        private static final Object TOMBSTONE = new Object();
+        private static final int INITIAL_CAPACITY = 16;
+        private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+        private volatile int size;
+        //Guarded by this table
+        private int tombstones;
+
+        @Nullable
+        private V get(long key) {
+            Slots slots = this.slots;
+            int mask = slots.mask;
+            for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+                //The value is published after the key, so we read it first.
+                Object value = slots.values.get(index);
+                if (value == null) {
+                    return null;
+                }
+                if (value != TOMBSTONE && slots.keys[index] == key) {
+                    @SuppressWarnings("unchecked")
+                    V keyedValue = (V) value;
+                    //The slot might have been reused for another value while we were reading it.
+                    if (keyedValue.key() == key) {
+                        return keyedValue;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Insert a value unless a value with the same key is already in the table.
+         *
+         * @param value Value
+         * @return The value in the table.
+         */
+        private synchronized V putIfAbsent(V value) {
+            long key = value.key();
+            Slots slots = this.slots;
+            int mask = slots.mask;
+            int freeIndex = -1;
+            int index = hash(key) & mask;
+            for (; ; index = (index + 1) & mask) {
+                Object current = slots.values.get(index);
+                if (current == null) {
+                    break;
+                }
+                if (current == TOMBSTONE) {
+                    if (freeIndex == -1) {
+                        freeIndex = index;
+                    }
+                } else if (slots.keys[index] == key) {
+                    @SuppressWarnings("unchecked")
+                    V existing = (V) current;
+                    return existing;
+                }
+            }
+            if (freeIndex != -1) {
+                tombstones--;
+                index = freeIndex;
+            }
+            slots.keys[index] = key;
+            slots.values.set(index, value);
+            size++;
+            if ((size + tombstones) * 2 > slots.capacity()) {
+                resize();
+            }
+            return value;
+        }
+
+        @Nullable
+        private synchronized V remove(long key) {
+            Slots slots = this.slots;
+            int mask = slots.mask;
+            for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+                Object value = slots.values.get(index);
+                if (value == null) {
+                    return null;
+                }
+                if (value != TOMBSTONE && slots.keys[index] == key) {
+                    removeAt(slots, index);
+                    @SuppressWarnings("unchecked")
+                    V removed = (V) value;
+                    return removed;
+                }
+            }
+        }
+
+        private synchronized boolean remove(long key, V expected) {
+            Slots slots = this.slots;
+            int mask = slots.mask;
+            for (int index = hash(key) & mask; ; index = (index + 1) & mask) {
+                Object value = slots.values.get(index);
+                if (value == null) {
+                    return false;
+                }
+                if (value != TOMBSTONE && slots.keys[index] == key) {
+                    if (value != expected) {
+                        return false;
+                    }
+                    removeAt(slots, index);
+                    return true;
+                }
+            }
+        }
+
+        private int size() {
+            return size;
+        }
+
+        /**
+         * Get the slots for iterating the values without locking.
+         * Values inserted or removed during the iteration might be missed or still be seen.
+         *
+         * @return Current slots.
+         */
+        private Slots slots() {
+            return slots;
+        }
+
+        private void removeAt(Slots slots, int index) {
+            slots.values.set(index, TOMBSTONE);
+            size--;
+            tombstones++;
+            if (tombstones > size && slots.capacity() > INITIAL_CAPACITY) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            Slots oldSlots = slots;
+            int capacity = oldSlots.capacity();
+            //Only grow if the table is mostly filled by values, otherwise we just get rid of the tombstones.
+            while (size * 4 > capacity) {
+                capacity <<= 1;
+            }
+            while (capacity > INITIAL_CAPACITY && size * 8 < capacity) {
+                capacity >>>= 1;
+            }
+            Slots newSlots = new Slots(capacity);
+            int mask = newSlots.mask;
+            for (int i = 0; i < oldSlots.capacity(); i++) {
+                Object value = oldSlots.values.get(i);
+                if (value != null && value != TOMBSTONE) {
+                    long key = oldSlots.keys[i];
+                    int index = hash(key) & mask;
+                    while (newSlots.values.get(index) != null) {
+                        index = (index + 1) & mask;
+                    }
+                    newSlots.keys[index] = key;
+                    newSlots.values.set(index, value);
+                }
+            }
+            tombstones = 0;
+            //Readers still probing the old slots see the values that were in them before the resize.
+            slots = newSlots;
+        }
+
+        private static int hash(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        private static final class Slots {
+            private final long[] keys;
+            private final AtomicReferenceArray<Object> values;
+            private final int mask;
+
+            private Slots(int capacity) {
+                keys = new long[capacity];
+                values = new AtomicReferenceArray<>(capacity);
+                mask = capacity - 1;
+            }
+
+            private int capacity() {
+                return values.length();
+            }
+
+            @Nullable
+            @SuppressWarnings("unchecked")
+            private <V> V valueAt(int index) {
+                Object value = values.get(index);
+                return value == TOMBSTONE ? null : (V) value;
+            }
+        }
+    }
+}